@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.benchmark;
+
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.util.BZip2;
+import net.runelite.cache.util.BZip2Codec;
+import net.runelite.cache.util.CompressionCodec;
+import net.runelite.cache.util.GZip;
+import net.runelite.cache.util.GZipCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Compares the container codecs against the stream based BZip2 and GZip
+ * utilities, by decompressing every archive of the vanilla cache which
+ * uses the compression type being measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class CompressionBenchmark
+{
+	@Param({"1", "2"})
+	public int compression;
+
+	@Param({"streams", "codec"})
+	public String implementation;
+
+	private final List<byte[]> archives = new ArrayList<>();
+
+	@Setup
+	public void setup() throws IOException
+	{
+		File folder = VanillaCache.extract();
+		try (Store store = new Store(folder))
+		{
+			store.load();
+
+			for (Index index : store.getIndexes())
+			{
+				for (Archive archive : index.getArchives())
+				{
+					byte[] data = store.getStorage().loadArchive(archive);
+					if (data != null && data[0] == compression)
+					{
+						archives.add(data);
+					}
+				}
+			}
+		}
+
+		CompressionType.setCodec(compression, createCodec());
+	}
+
+	private CompressionCodec createCodec()
+	{
+		if (implementation.equals("codec"))
+		{
+			return compression == CompressionType.BZ2 ? new BZip2Codec() : new GZipCodec();
+		}
+
+		return new CompressionCodec()
+		{
+			@Override
+			public byte[] compress(byte[] data) throws IOException
+			{
+				return compression == CompressionType.BZ2 ? BZip2.compress(data) : GZip.compress(data);
+			}
+
+			@Override
+			public byte[] decompress(InputStream in, int length) throws IOException
+			{
+				byte[] data = ByteStreams.toByteArray(in);
+				return compression == CompressionType.BZ2
+					? BZip2.decompress(data, data.length)
+					: GZip.decompress(data, data.length);
+			}
+		};
+	}
+
+	@Benchmark
+	public void decompress(Blackhole blackhole) throws IOException
+	{
+		for (byte[] data : archives)
+		{
+			blackhole.consume(Container.decompress(data, null));
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.region.RegionLoader;
+import net.runelite.cache.util.Djb2;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Loads the terrain and the encrypted locations of every region of the
+ * synthetic cache, which also exercises the archive lookups by name.
+ * The lookup benchmarks compare the name hash map of {@link Index} with
+ * the linear scan it replaced, for the names a full region load probes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class RegionLoaderBenchmark
+{
+	private static final int MAX_REGION = 32768; // regions probed by RegionLoader.loadRegions
+
+	private SyntheticCache cache;
+	private Store store;
+	private Index maps;
+	private int[] nameHashes;
+
+	@Setup
+	public void setup() throws IOException
+	{
+		cache = SyntheticCache.generate();
+		store = cache.load();
+		maps = store.getIndex(IndexType.MAPS);
+
+		nameHashes = new int[MAX_REGION * 2];
+		for (int i = 0; i < MAX_REGION; ++i)
+		{
+			int x = i >> 8;
+			int y = i & 0xFF;
+			nameHashes[i * 2] = Djb2.hash("m" + x + "_" + y);
+			nameHashes[i * 2 + 1] = Djb2.hash("l" + x + "_" + y);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		store.close();
+	}
+
+	@Benchmark
+	public RegionLoader loadRegions() throws IOException
+	{
+		RegionLoader loader = new RegionLoader(store, cache.getKeyManager());
+		loader.loadRegions();
+		return loader;
+	}
+
+	@Benchmark
+	public void findArchivesByNameHash(Blackhole blackhole)
+	{
+		for (int nameHash : nameHashes)
+		{
+			blackhole.consume(maps.findArchiveByNameHash(nameHash));
+		}
+	}
+
+	/**
+	 * The lookup as it was before the name hash map, for comparison
+	 */
+	@Benchmark
+	public void findArchivesLinearScan(Blackhole blackhole)
+	{
+		for (int nameHash : nameHashes)
+		{
+			blackhole.consume(linearScan(nameHash));
+		}
+	}
+
+	private Archive linearScan(int nameHash)
+	{
+		for (Archive a : maps.getArchives())
+		{
+			if (a.getNameHash() == nameHash)
+			{
+				return a;
+			}
+		}
+		return null;
+	}
+}
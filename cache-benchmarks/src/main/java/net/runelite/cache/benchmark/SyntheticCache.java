@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
+import java.util.Random;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.LocationsDefinition;
+import net.runelite.cache.definitions.MapDefinition;
+import net.runelite.cache.definitions.savers.ItemSaver;
+import net.runelite.cache.definitions.savers.LocationSaver;
+import net.runelite.cache.definitions.savers.MapSaver;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.index.FileData;
+import net.runelite.cache.io.OutputStream;
+import net.runelite.cache.region.Location;
+import net.runelite.cache.region.Position;
+import net.runelite.cache.util.Djb2;
+import net.runelite.cache.util.XteaKeyManager;
+
+/**
+ * Generates a small but structurally valid cache, so the benchmarks can run
+ * without network access or a copy of the game cache. The contents are
+ * generated from a fixed seed, so every run measures the same data.
+ */
+class SyntheticCache
+{
+	static final int ITEMS = 8192;
+	static final int MODELS = 512;
+
+	static final int REGION_BASE_X = 40;
+	static final int REGION_BASE_Y = 40;
+	static final int REGIONS_PER_SIDE = 16;
+
+	private static final int MODEL_SIZE = 24; // vertices per side of the model grid
+	private static final int LOCATIONS_PER_REGION = 512;
+
+	private final File folder;
+	private final XteaKeyManager keyManager = new XteaKeyManager();
+	private final Random random = new Random(42L);
+
+	private SyntheticCache(File folder)
+	{
+		this.folder = folder;
+	}
+
+	static SyntheticCache generate() throws IOException
+	{
+		File folder = Files.createTempDirectory("synthetic-cache").toFile();
+		folder.deleteOnExit();
+
+		SyntheticCache cache = new SyntheticCache(folder);
+		try (Store store = new Store(folder))
+		{
+			// the index ids of a cache are contiguous
+			for (int i = 0; i <= IndexType.MODELS.getNumber(); ++i)
+			{
+				store.addIndex(i);
+			}
+
+			cache.addItems(store);
+			cache.addModels(store);
+			cache.addRegions(store);
+			store.save();
+		}
+
+		for (File file : folder.listFiles())
+		{
+			file.deleteOnExit();
+		}
+
+		return cache;
+	}
+
+	File getFolder()
+	{
+		return folder;
+	}
+
+	XteaKeyManager getKeyManager()
+	{
+		return keyManager;
+	}
+
+	Store load() throws IOException
+	{
+		Store store = new Store(folder);
+		store.load();
+		return store;
+	}
+
+	private void addItems(Store store) throws IOException
+	{
+		Index index = store.getIndex(IndexType.CONFIGS);
+		Archive archive = index.addArchive(ConfigType.ITEM.getId());
+		archive.setFileData(new FileData[ITEMS]);
+
+		ItemSaver saver = new ItemSaver();
+		ArchiveFiles files = new ArchiveFiles();
+		for (int i = 0; i < ITEMS; ++i)
+		{
+			ItemDefinition item = new ItemDefinition(i);
+			item.name = "Item " + i;
+			item.inventoryModel = random.nextInt(MODELS);
+			item.cost = random.nextInt(100_000);
+			item.members = random.nextBoolean();
+			item.isTradeable = random.nextBoolean();
+			item.zoom2d = 500 + random.nextInt(2000);
+			item.xan2d = random.nextInt(2048);
+			item.yan2d = random.nextInt(2048);
+			item.maleModel0 = random.nextInt(MODELS);
+			item.femaleModel0 = random.nextInt(MODELS);
+			item.interfaceOptions[1] = "Wield";
+
+			FileData fileData = archive.getFileData()[i] = new FileData();
+			fileData.setId(i);
+
+			FSFile file = new FSFile(i);
+			file.setContents(saver.save(item));
+			files.addFile(file);
+		}
+
+		save(store, archive, CompressionType.GZ, files.saveContents(), null);
+	}
+
+	private void addModels(Store store) throws IOException
+	{
+		Index index = store.getIndex(IndexType.MODELS);
+		for (int i = 0; i < MODELS; ++i)
+		{
+			Archive archive = index.addArchive(i);
+			archive.setFileData(new FileData[]
+			{
+				new FileData()
+			});
+
+			// mix compression types like the game cache does
+			save(store, archive, i % 3, createModel(), null);
+		}
+	}
+
+	private void addRegions(Store store) throws IOException
+	{
+		Index index = store.getIndex(IndexType.MAPS);
+		index.setNamed(true);
+
+		MapSaver mapSaver = new MapSaver();
+		LocationSaver locationSaver = new LocationSaver();
+
+		int archiveId = 0;
+		for (int x = REGION_BASE_X; x < REGION_BASE_X + REGIONS_PER_SIDE; ++x)
+		{
+			for (int y = REGION_BASE_Y; y < REGION_BASE_Y + REGIONS_PER_SIDE; ++y)
+			{
+				int regionId = x << 8 | y;
+				int[] keys = new int[]
+				{
+					random.nextInt(), random.nextInt(), random.nextInt(), random.nextInt()
+				};
+				keyManager.setKeys(regionId, keys);
+
+				Archive map = addNamedArchive(index, archiveId++, "m" + x + "_" + y);
+				save(store, map, CompressionType.GZ, mapSaver.save(createMap(x, y)), null);
+
+				Archive land = addNamedArchive(index, archiveId++, "l" + x + "_" + y);
+				save(store, land, CompressionType.GZ, locationSaver.save(createLocations(x, y)), keys);
+			}
+		}
+	}
+
+	private static Archive addNamedArchive(Index index, int id, String name)
+	{
+		Archive archive = index.addArchive(id);
+		archive.setNameHash(Djb2.hash(name));
+		archive.setFileData(new FileData[]
+		{
+			new FileData()
+		});
+		return archive;
+	}
+
+	private static void save(Store store, Archive archive, int compression, byte[] data, int[] keys) throws IOException
+	{
+		Container container = new Container(compression, -1);
+		container.compress(data, keys);
+		store.getStorage().saveArchive(archive, container.data);
+	}
+
+	private MapDefinition createMap(int regionX, int regionY)
+	{
+		MapDefinition map = new MapDefinition();
+		map.setRegionX(regionX);
+		map.setRegionY(regionY);
+
+		MapDefinition.Tile[][][] tiles = map.getTiles();
+		for (int z = 0; z < MapDefinition.Z; ++z)
+		{
+			for (int x = 0; x < MapDefinition.X; ++x)
+			{
+				for (int y = 0; y < MapDefinition.Y; ++y)
+				{
+					MapDefinition.Tile tile = tiles[z][x][y] = new MapDefinition.Tile();
+					if (z > 0 && random.nextInt(4) != 0)
+					{
+						// upper planes are mostly empty
+						continue;
+					}
+
+					tile.height = random.nextInt(8) == 0 ? random.nextInt(64) : null;
+					tile.underlayId = (byte) (1 + random.nextInt(100));
+					if (random.nextInt(3) == 0)
+					{
+						tile.attrOpcode = 2 + random.nextInt(48);
+						tile.overlayId = (byte) (1 + random.nextInt(100));
+					}
+					if (random.nextInt(16) == 0)
+					{
+						tile.settings = (byte) (1 + random.nextInt(4));
+					}
+				}
+			}
+		}
+
+		return map;
+	}
+
+	private LocationsDefinition createLocations(int regionX, int regionY)
+	{
+		LocationsDefinition locations = new LocationsDefinition();
+		locations.setRegionX(regionX);
+		locations.setRegionY(regionY);
+
+		for (int i = 0; i < LOCATIONS_PER_REGION; ++i)
+		{
+			Position position = new Position(random.nextInt(64), random.nextInt(64), random.nextInt(4));
+			locations.getLocations().add(new Location(random.nextInt(30000), random.nextInt(23), random.nextInt(4), position));
+		}
+
+		// the saver stores positions as increasing deltas
+		locations.getLocations().sort(Comparator.comparingInt(l -> packPosition(l.getPosition())));
+
+		return locations;
+	}
+
+	private static int packPosition(Position position)
+	{
+		return position.getZ() << 12 | position.getX() << 6 | position.getY();
+	}
+
+	/**
+	 * Creates a model in the original model format, a flat grid of
+	 * vertices with two triangles per cell.
+	 */
+	private byte[] createModel()
+	{
+		int vertexCount = MODEL_SIZE * MODEL_SIZE;
+		int faceCount = (MODEL_SIZE - 1) * (MODEL_SIZE - 1) * 2;
+
+		OutputStream vertexFlags = new OutputStream(vertexCount);
+		OutputStream vertexX = new OutputStream();
+		OutputStream vertexY = new OutputStream();
+		OutputStream vertexZ = new OutputStream();
+
+		int lastX = 0, lastY = 0, lastZ = 0;
+		for (int i = 0; i < vertexCount; ++i)
+		{
+			int x = (i % MODEL_SIZE) * 16;
+			int y = random.nextInt(32) - 16;
+			int z = (i / MODEL_SIZE) * 16;
+
+			vertexFlags.writeByte(1 | 2 | 4);
+			writeSignedSmart(vertexX, x - lastX);
+			writeSignedSmart(vertexY, y - lastY);
+			writeSignedSmart(vertexZ, z - lastZ);
+
+			lastX = x;
+			lastY = y;
+			lastZ = z;
+		}
+
+		OutputStream faceTypes = new OutputStream(faceCount);
+		OutputStream faceIndices = new OutputStream();
+		OutputStream faceColors = new OutputStream(faceCount * 2);
+
+		int last = 0;
+		for (int row = 0; row < MODEL_SIZE - 1; ++row)
+		{
+			for (int column = 0; column < MODEL_SIZE - 1; ++column)
+			{
+				int v = row * MODEL_SIZE + column;
+				int[][] triangles =
+				{
+					{v, v + 1, v + MODEL_SIZE},
+					{v + 1, v + MODEL_SIZE + 1, v + MODEL_SIZE}
+				};
+
+				for (int[] triangle : triangles)
+				{
+					// face type 1 stores all three vertices as deltas
+					faceTypes.writeByte(1);
+					writeSignedSmart(faceIndices, triangle[0] - last);
+					writeSignedSmart(faceIndices, triangle[1] - triangle[0]);
+					writeSignedSmart(faceIndices, triangle[2] - triangle[1]);
+					last = triangle[2];
+
+					faceColors.writeShort(random.nextInt(0x10000));
+				}
+			}
+		}
+
+		byte[] vertexXData = vertexX.flip();
+		byte[] vertexYData = vertexY.flip();
+		byte[] vertexZData = vertexZ.flip();
+		byte[] faceIndexData = faceIndices.flip();
+
+		OutputStream out = new OutputStream();
+		out.writeBytes(vertexFlags.flip());
+		out.writeBytes(faceTypes.flip());
+		out.writeBytes(faceIndexData);
+		out.writeBytes(faceColors.flip());
+		out.writeBytes(vertexXData);
+		out.writeBytes(vertexYData);
+		out.writeBytes(vertexZData);
+
+		out.writeShort(vertexCount);
+		out.writeShort(faceCount);
+		out.writeByte(0); // texture triangles
+		out.writeByte(0); // face render types
+		out.writeByte(0); // model priority
+		out.writeByte(0); // face alphas
+		out.writeByte(0); // face skins
+		out.writeByte(0); // vertex skins
+		out.writeShort(vertexXData.length);
+		out.writeShort(vertexYData.length);
+		out.writeShort(vertexZData.length);
+		out.writeShort(faceIndexData.length);
+		return out.flip();
+	}
+
+	private static void writeSignedSmart(OutputStream out, int value)
+	{
+		if (value >= -64 && value < 64)
+		{
+			out.writeByte(value + 64);
+		}
+		else
+		{
+			out.writeShort(value + 0xc000);
+		}
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+
+/**
+ * Unpacks the cache shipped in the net.runelite.rs:cache artifact
+ */
+class VanillaCache
+{
+	private static final int NUM_INDEXES = 16;
+
+	static File extract() throws IOException
+	{
+		File folder = Files.createTempDirectory("cache-benchmark").toFile();
+		folder.deleteOnExit();
+
+		copy("main_file_cache.dat2", folder);
+		copy("main_file_cache.idx255", folder);
+		for (int i = 0; i <= NUM_INDEXES; ++i)
+		{
+			copy("main_file_cache.idx" + i, folder);
+		}
+
+		return folder;
+	}
+
+	private static void copy(String name, File folder) throws IOException
+	{
+		File file = new File(folder, name);
+		try (InputStream in = VanillaCache.class.getResourceAsStream("/" + name))
+		{
+			if (in == null)
+			{
+				throw new IOException("Missing cache resource " + name);
+			}
+
+			Files.copy(in, file.toPath());
+		}
+		file.deleteOnExit();
+	}
+}
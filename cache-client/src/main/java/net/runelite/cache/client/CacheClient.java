@@ -25,38 +25,28 @@
 package net.runelite.cache.client;
 
 import com.google.common.base.Stopwatch;
-import io.netty.bootstrap.Bootstrap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
-import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
-import io.netty.channel.ChannelInitializer;
-import io.netty.channel.ChannelOption;
-import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import java.io.IOException;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
-import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
 import net.runelite.cache.fs.Store;
 import net.runelite.cache.index.ArchiveData;
 import net.runelite.cache.index.IndexData;
-import net.runelite.protocol.update.decoders.HandshakeResponseDecoder;
-import net.runelite.protocol.update.encoders.ArchiveRequestEncoder;
-import net.runelite.protocol.update.encoders.EncryptionEncoder;
-import net.runelite.protocol.api.update.ArchiveRequestPacket;
 import net.runelite.protocol.api.login.HandshakeResponseType;
 import net.runelite.cache.util.Crc32;
-import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
-import net.runelite.protocol.handshake.UpdateHandshakeEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,20 +57,34 @@ public class CacheClient implements AutoCloseable
 	private static final String HOST = "oldschool1.runescape.com";
 	private static final int PORT = 43594;
 
-	private static final int MAX_REQUESTS = 19; // too many and the server closes the conncetion
+	static final int MAX_REQUESTS = 19; // per connection, too many and the server closes the conncetion
+
+	private static final int DEFAULT_CONNECTIONS = 4;
+	private static final int MAX_RECONNECTS = 8;
+	private static final long RECONNECT_DELAY = 1000L; // ms
+	private static final int MAX_ATTEMPTS = 3; // downloads of an archive with a bad crc
+	private static final int DEFAULT_EXPECTED_SIZE = 4096;
+	private static final int WORKER_THREADS = Runtime.getRuntime().availableProcessors();
 
 	private final Store store; // store cache will be written to
 	private final String host;
 	private final int clientRevision;
 	private DownloadWatcher watcher;
-
-	private ClientState state;
-
-	private final EventLoopGroup group = new NioEventLoopGroup(1);
-	private Channel channel;
-
-	private CompletableFuture<HandshakeResponseType> handshakeFuture;
-	private final Queue<PendingFileRequest> requests = new ArrayDeque<>();
+	private int connections = DEFAULT_CONNECTIONS;
+
+	private final EventLoopGroup group = new NioEventLoopGroup(DEFAULT_CONNECTIONS);
+	private CacheConnection primary;
+
+	// download state, guarded by this
+	private boolean downloading;
+	private ExecutorService workers;
+	private final List<CacheConnection> active = new ArrayList<>();
+	private final Deque<PendingFileRequest> queue = new ArrayDeque<>();
+	private final long[] receivedBytes = new long[256];
+	private final int[] receivedCount = new int[256];
+	private int remaining;
+	private int reconnects;
+	private CompletableFuture<Void> done;
 
 	public CacheClient(Store store, int clientRevision)
 	{
@@ -102,60 +106,27 @@ public class CacheClient implements AutoCloseable
 
 	public void connect()
 	{
-		Bootstrap b = new Bootstrap();
-		b.group(group)
-			.channel(NioSocketChannel.class)
-			.option(ChannelOption.TCP_NODELAY, true)
-			.handler(new ChannelInitializer<SocketChannel>()
-			{
-				@Override
-				public void initChannel(SocketChannel ch) throws Exception
-				{
-					ChannelPipeline p = ch.pipeline();
-
-					//p.addFirst(new HttpProxyHandler(new InetSocketAddress("runelite.net", 3128)));
-					p.addLast("decoder", new HandshakeResponseDecoder());
-
-					p.addLast(
-						new CacheClientHandler(),
-						new HandshakeResponseHandler(CacheClient.this),
-						new ArchiveResponseHandler(CacheClient.this)
-					);
-
-					p.addLast(
-						new UpdateHandshakeEncoder(),
-						new EncryptionEncoder(),
-						new ArchiveRequestEncoder()
-					);
-				}
-			});
-
-		// Start the client.
-		ChannelFuture f = b.connect(host, PORT).syncUninterruptibly();
-		channel = f.channel();
+		primary = new CacheConnection(this);
+		primary.connect(group, host, PORT);
 	}
 
 	public CompletableFuture<HandshakeResponseType> handshake()
 	{
-		UpdateHandshakePacket handshakePacket = new UpdateHandshakePacket();
-		handshakePacket.setRevision(getClientRevision());
-
-		state = ClientState.HANDSHAKING;
-
-		assert handshakeFuture == null;
-		handshakeFuture = new CompletableFuture<>();
-
-		channel.writeAndFlush(handshakePacket);
-
-		logger.info("Sent handshake with revision {}", handshakePacket.getRevision());
-
-		return handshakeFuture;
+		return primary.handshake(clientRevision);
 	}
 
 	@Override
 	public void close()
 	{
-		channel.close().syncUninterruptibly();
+		synchronized (this)
+		{
+			downloading = false;
+		}
+
+		if (primary != null)
+		{
+			primary.close().syncUninterruptibly();
+		}
 		group.shutdownGracefully();
 	}
 
@@ -166,24 +137,36 @@ public class CacheClient implements AutoCloseable
 
 	public ClientState getState()
 	{
-		return state;
+		return primary != null ? primary.getState() : null;
 	}
 
-	void setState(ClientState state)
+	public int getConnections()
 	{
-		this.state = state;
+		return connections;
 	}
 
-	CompletableFuture<HandshakeResponseType> getHandshakeFuture()
+	/**
+	 * Set the number of connections {@link #download()} spreads archive
+	 * requests across
+	 *
+	 * @param connections number of connections, including the one opened
+	 * by {@link #connect()}
+	 */
+	public void setConnections(int connections)
 	{
-		return handshakeFuture;
+		if (connections < 1)
+		{
+			throw new IllegalArgumentException("connections must be at least 1");
+		}
+
+		this.connections = connections;
 	}
 
 	public List<IndexInfo> requestIndexes() throws IOException
 	{
 		logger.info("Requesting indexes");
 
-		FileResult result = requestFile(255, 255, true).join();
+		FileResult result = join(requestFile(255, 255));
 		result.decompress(null);
 
 		ByteBuf buffer = Unpooled.wrappedBuffer(result.getContents());
@@ -200,255 +183,512 @@ public class CacheClient implements AutoCloseable
 		return indexInfo;
 	}
 
+	/**
+	 * Download every out of date archive. Requests are pipelined over
+	 * {@link #getConnections()} connections, and downloaded archives are
+	 * checked and saved on a worker pool. Requests in flight on a
+	 * connection which drops are sent again on the remaining connections
+	 * while a replacement connection is opened.
+	 *
+	 * @throws IOException
+	 */
 	public void download() throws IOException
 	{
 		Stopwatch stopwatch = Stopwatch.createStarted();
 
-		List<IndexInfo> indexes = requestIndexes();
-		for (IndexInfo indexInfo : indexes)
+		if (getState() != ClientState.CONNECTED)
+		{
+			throw new IllegalStateException("Can't request files until connected!");
+		}
+
+		synchronized (this)
 		{
-			int i = indexInfo.getId();
-			int crc = indexInfo.getCrc();
-			int revision = indexInfo.getRevision();
+			workers = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactoryBuilder()
+				.setNameFormat("cache-client-%d")
+				.setDaemon(true)
+				.build());
+			done = new CompletableFuture<>();
+			remaining = 0;
+			reconnects = 0;
+			downloading = true;
+			active.add(primary);
+
+			for (int i = 1; i < connections; ++i)
+			{
+				workers.execute(() -> openConnection(0L));
+			}
+		}
 
-			Index index = store.findIndex(i);
+		try
+		{
+			List<IndexInfo> indexes = requestIndexes();
 
-			if (index == null)
+			// request all of the indexes up front so their round trips overlap
+			List<CompletableFuture<FileResult>> indexFiles = new ArrayList<>();
+			for (IndexInfo indexInfo : indexes)
 			{
-				logger.info("Index {} does not exist, creating", i);
+				indexFiles.add(requestFile(255, indexInfo.getId()));
 			}
-			else if (index.getRevision() != revision)
+
+			for (IndexInfo indexInfo : indexes)
 			{
-				if (revision < index.getRevision())
-				{
-					logger.warn("Index {} revision is going BACKWARDS! (our revision {}, their revision {})", index.getId(), index.getRevision(), revision);
-				}
-				else
+				downloadIndex(indexInfo, indexFiles.get(indexInfo.getId()));
+			}
+
+			synchronized (this)
+			{
+				if (remaining == 0)
 				{
-					logger.info("Index {} has the wrong revision (our revision {}, their revision {})", index.getId(), index.getRevision(), revision);
+					done.complete(null);
 				}
 			}
-			else if (index.getCrc() != crc)
+
+			join(done);
+		}
+		finally
+		{
+			List<CacheConnection> extra;
+			synchronized (this)
+			{
+				downloading = false;
+				queue.clear();
+				extra = new ArrayList<>(active);
+				extra.remove(primary);
+				active.clear();
+			}
+
+			for (CacheConnection connection : extra)
+			{
+				connection.close().syncUninterruptibly();
+			}
+
+			workers.shutdownNow();
+		}
+
+		stopwatch.stop();
+		logger.info("Download completed in {}", stopwatch);
+	}
+
+	private void downloadIndex(IndexInfo indexInfo, CompletableFuture<FileResult> indexFile) throws IOException
+	{
+		int i = indexInfo.getId();
+		int crc = indexInfo.getCrc();
+		int revision = indexInfo.getRevision();
+
+		Index index = store.findIndex(i);
+
+		if (index == null)
+		{
+			logger.info("Index {} does not exist, creating", i);
+		}
+		else if (index.getRevision() != revision)
+		{
+			if (revision < index.getRevision())
 			{
-				logger.warn("Index {} CRC has changed! (our crc {}, their crc {})",
-					index.getCrc(), index.getCrc(), crc);
+				logger.warn("Index {} revision is going BACKWARDS! (our revision {}, their revision {})", index.getId(), index.getRevision(), revision);
 			}
 			else
 			{
-				// despite the index being up to date, not everything
-				// can be downloaded, eg. for tracks.
-				logger.info("Index {} is up to date", index.getId());
+				logger.info("Index {} has the wrong revision (our revision {}, their revision {})", index.getId(), index.getRevision(), revision);
 			}
+		}
+		else if (index.getCrc() != crc)
+		{
+			logger.warn("Index {} CRC has changed! (our crc {}, their crc {})",
+				index.getCrc(), index.getCrc(), crc);
+		}
+		else
+		{
+			// despite the index being up to date, not everything
+			// can be downloaded, eg. for tracks.
+			logger.info("Index {} is up to date", index.getId());
+		}
+
+		logger.info("Downloading index {}", i);
 
-			logger.info("Downloading index {}", i);
+		FileResult indexFileResult = join(indexFile);
+		indexFileResult.decompress(null);
 
-			FileResult indexFileResult = requestFile(255, i, true).join();
-			indexFileResult.decompress(null);
+		logger.info("Downloaded index {}", i);
 
-			logger.info("Downloaded index {}", i);
+		if (indexFileResult.getCrc() != crc)
+		{
+			logger.warn("Corrupted download for index {}", i);
+			return;
+		}
+
+		IndexData indexData = new IndexData();
+		indexData.load(indexFileResult.getContents());
+
+		if (index == null)
+		{
+			index = store.addIndex(i);
+		}
 
-			if (indexFileResult.getCrc() != crc)
+		// update index settings
+		index.setProtocol(indexData.getProtocol());
+		index.setNamed(indexData.isNamed());
+		index.setCrc(crc);
+		index.setRevision(revision);
+
+		logger.info("Index {} has {} archives", i, indexData.getArchives().length);
+
+		for (ArchiveData ad : indexData.getArchives())
+		{
+			Archive existing = index.getArchive(ad.getId());
+
+			if (existing != null && existing.getRevision() == ad.getRevision()
+				&& existing.getCrc() == ad.getCrc()
+				&& existing.getNameHash() == ad.getNameHash())
 			{
-				logger.warn("Corrupted download for index {}", i);
+				logger.debug("Archive {}/{} in index {} is up to date",
+					ad.getId(), indexData.getArchives().length, index.getId());
 				continue;
 			}
 
-			IndexData indexData = new IndexData();
-			indexData.load(indexFileResult.getContents());
-
-			if (index == null)
+			if (existing == null)
+			{
+				logger.info("Archive {}/{} in index {} is out of date, downloading",
+					ad.getId(), indexData.getArchives().length, index.getId());
+			}
+			else if (ad.getRevision() < existing.getRevision())
 			{
-				index = store.addIndex(i);
+				logger.warn("Archive {}/{} in index {} revision is going BACKWARDS! (our revision {}, their revision {})",
+					ad.getId(), indexData.getArchives().length, index.getId(),
+					existing.getRevision(), ad.getRevision());
 			}
+			else
+			{
+				logger.info("Archive {}/{} in index {} is out of date, downloading. " +
+					"revision: ours: {} theirs: {}, crc: ours: {} theirs {}, name: ours {} theirs {}",
+					ad.getId(), indexData.getArchives().length, index.getId(),
+					existing.getRevision(), ad.getRevision(),
+					existing.getCrc(), ad.getCrc(),
+					existing.getNameHash(), ad.getNameHash());
+			}
+
+			final Archive archive = existing == null
+				? index.addArchive(ad.getId())
+				: existing;
 
-			// update index settings
-			index.setProtocol(indexData.getProtocol());
-			index.setNamed(indexData.isNamed());
-			index.setCrc(crc);
-			index.setRevision(revision);
+			archive.setRevision(ad.getRevision());
+			archive.setCrc(ad.getCrc());
+			archive.setNameHash(ad.getNameHash());
 
-			logger.info("Index {} has {} archives", i, indexData.getArchives().length);
+			// Add files
+			archive.setFileData(ad.getFiles());
 
-			for (ArchiveData ad : indexData.getArchives())
+			synchronized (this)
 			{
-				Archive existing = index.getArchive(ad.getId());
+				++remaining;
+				enqueue(archive, 1, false);
+			}
+		}
 
-				if (existing != null && existing.getRevision() == ad.getRevision()
-					&& existing.getCrc() == ad.getCrc()
-					&& existing.getNameHash() == ad.getNameHash())
-				{
-					logger.debug("Archive {}/{} in index {} is up to date",
-						ad.getId(), indexData.getArchives().length, index.getId());
-					continue;
-				}
+		dispatch();
+	}
 
-				if (existing == null)
-				{
-					logger.info("Archive {}/{} in index {} is out of date, downloading",
-						ad.getId(), indexData.getArchives().length, index.getId());
-				}
-				else if (ad.getRevision() < existing.getRevision())
-				{
-					logger.warn("Archive {}/{} in index {} revision is going BACKWARDS! (our revision {}, their revision {})",
-						ad.getId(), indexData.getArchives().length, index.getId(),
-						existing.getRevision(), ad.getRevision());
-				}
-				else
-				{
-					logger.info("Archive {}/{} in index {} is out of date, downloading. " +
-						"revision: ours: {} theirs: {}, crc: ours: {} theirs {}, name: ours {} theirs {}",
-						ad.getId(), indexData.getArchives().length, index.getId(),
-						existing.getRevision(), ad.getRevision(),
-						existing.getCrc(), ad.getCrc(),
-						existing.getNameHash(), ad.getNameHash());
-				}
+	private synchronized CompletableFuture<FileResult> requestFile(int index, int fileId)
+	{
+		CompletableFuture<FileResult> future = new CompletableFuture<>();
+		PendingFileRequest pr = new PendingFileRequest(index, fileId, future);
+
+		if (downloading)
+		{
+			// ahead of the archives queued so far
+			queue.addFirst(pr);
+			dispatch();
+			return future;
+		}
 
-				final Archive archive = existing == null
-					? index.addArchive(ad.getId())
-					: existing;
+		if (getState() != ClientState.CONNECTED)
+		{
+			throw new IllegalStateException("Can't request files until connected!");
+		}
 
-				archive.setRevision(ad.getRevision());
-				archive.setCrc(ad.getCrc());
-				archive.setNameHash(ad.getNameHash());
+		primary.write(pr, true);
+		primary.flush();
+		return future;
+	}
 
-				// Add files
-				archive.setFileData(ad.getFiles());
+	private synchronized void enqueue(Archive archive, int attempt, boolean first)
+	{
+		CompletableFuture<FileResult> future = new CompletableFuture<>();
+		future.thenAcceptAsync(fr -> save(archive, fr, attempt), workers);
 
-				CompletableFuture<FileResult> future = requestFile(index.getId(), ad.getId(), false);
-				future.handle((fr, ex) ->
-				{
-					byte[] data = fr.getCompressedData();
-
-					Crc32 crc32 = new Crc32();
-					crc32.update(data, 0, data.length);
-					int hash = crc32.getHash();
-
-					if (hash != archive.getCrc())
-					{
-						logger.warn("crc mismatch on downloaded archive {}/{}: {} != {}",
-							archive.getIndex().getId(), archive.getArchiveId(),
-							hash, archive.getCrc());
-						throw new RuntimeException("crc mismatch");
-					}
-
-					if (watcher != null)
-					{
-						watcher.downloadComplete(archive, data);
-					}
-					else
-					{
-						try
-						{
-							Storage storage = store.getStorage();
-							storage.saveArchive(archive, data);
-						}
-						catch (IOException ex1)
-						{
-							logger.warn("unable to save archive data", ex1);
-						}
-					}
-					return null;
-				});
+		PendingFileRequest pr = new PendingFileRequest(archive.getIndex().getId(), archive.getArchiveId(), future);
+		if (first)
+		{
+			queue.addFirst(pr);
+		}
+		else
+		{
+			queue.add(pr);
+		}
+	}
+
+	/**
+	 * Fill the pipelines of the open connections from the queue. Each
+	 * request goes to the connection with the least expected data
+	 * outstanding, based on the average size of the archives downloaded
+	 * from the same index so far.
+	 */
+	private synchronized void dispatch()
+	{
+		while (!queue.isEmpty())
+		{
+			CacheConnection connection = selectConnection(active);
+			if (connection == null)
+			{
+				break;
 			}
+
+			PendingFileRequest pr = queue.poll();
+			pr.setExpectedSize(expectedSize(pr.getIndex()));
+			connection.write(pr, false);
 		}
 
-		// flush any pending requests
-		channel.flush();
+		for (CacheConnection c : active)
+		{
+			c.flush();
+		}
+	}
 
-		while (!requests.isEmpty())
+	/**
+	 * Pick the connection with the least expected data outstanding among
+	 * those with room in their pipeline
+	 *
+	 * @param connections connections to choose from
+	 * @return the connection, or null if every pipeline is full
+	 */
+	static CacheConnection selectConnection(List<CacheConnection> connections)
+	{
+		CacheConnection connection = null;
+		for (CacheConnection c : connections)
 		{
-			// wait for pending requests
-			synchronized (this)
+			if (c.getRequestCount() < MAX_REQUESTS
+				&& (connection == null || c.getPendingBytes() < connection.getPendingBytes()))
 			{
-				try
-				{
-					wait();
-				}
-				catch (InterruptedException ex)
+				connection = c;
+			}
+		}
+		return connection;
+	}
+
+	private int expectedSize(int index)
+	{
+		int count = receivedCount[index];
+		return count > 0 ? (int) (receivedBytes[index] / count) : DEFAULT_EXPECTED_SIZE;
+	}
+
+	private void save(Archive archive, FileResult fr, int attempt)
+	{
+		byte[] data = fr.getCompressedData();
+
+		Crc32 crc32 = new Crc32();
+		crc32.update(data, 0, data.length);
+		int hash = crc32.getHash();
+
+		if (hash != archive.getCrc())
+		{
+			logger.warn("crc mismatch on downloaded archive {}/{}: {} != {}",
+				archive.getIndex().getId(), archive.getArchiveId(),
+				hash, archive.getCrc());
+
+			if (attempt < MAX_ATTEMPTS)
+			{
+				synchronized (this)
 				{
-					logger.warn(null, ex);
+					enqueue(archive, attempt + 1, true);
+					dispatch();
 				}
+				return;
 			}
+
+			finish();
+			return;
 		}
 
-		stopwatch.stop();
-		logger.info("Download completed in {}", stopwatch);
+		try
+		{
+			if (watcher != null)
+			{
+				watcher.downloadComplete(archive, data);
+			}
+			else
+			{
+				Storage storage = store.getStorage();
+				storage.saveArchive(archive, data);
+			}
+		}
+		catch (IOException ex1)
+		{
+			logger.warn("unable to save archive data", ex1);
+		}
+		finally
+		{
+			finish();
+		}
 	}
 
-	private synchronized CompletableFuture<FileResult> requestFile(int index, int fileId, boolean flush)
+	private synchronized void finish()
 	{
-		if (state != ClientState.CONNECTED)
+		if (--remaining == 0)
 		{
-			throw new IllegalStateException("Can't request files until connected!");
+			done.complete(null);
+		}
+	}
+
+	private synchronized void fail(IOException ex)
+	{
+		for (PendingFileRequest pr : queue)
+		{
+			pr.getFuture().completeExceptionally(ex);
 		}
+		queue.clear();
 
-		if (!flush)
+		done.completeExceptionally(ex);
+	}
+
+	private void openConnection(long delay)
+	{
+		try
 		{
-			while (requests.size() >= MAX_REQUESTS)
-			{
-				channel.flush();
+			Thread.sleep(delay);
+		}
+		catch (InterruptedException ex)
+		{
+			return;
+		}
 
-				try
-				{
-					wait();
-				}
-				catch (InterruptedException ex)
+		CacheConnection connection = new CacheConnection(this);
+
+		try
+		{
+			connection.connect(group, host, PORT);
+		}
+		catch (Exception ex)
+		{
+			logger.warn("Unable to connect to {}", host, ex);
+
+			synchronized (this)
+			{
+				if (downloading)
 				{
-					logger.warn("interrupted while waiting for requests", ex);
+					reconnect();
 				}
 			}
+			return;
 		}
 
-		ArchiveRequestPacket archiveRequest = new ArchiveRequestPacket();
-		archiveRequest.setPriority(false);
-		archiveRequest.setIndex(index);
-		archiveRequest.setArchive(fileId);
-
-		CompletableFuture<FileResult> future = new CompletableFuture<>();
-		PendingFileRequest pf = new PendingFileRequest(index,
-			fileId, future);
+		connection.handshake(clientRevision)
+			.whenComplete((response, ex) -> onHandshake(connection, response, ex));
+	}
 
-		logger.trace("Sending request for {}/{}", index, fileId);
+	private synchronized void onHandshake(CacheConnection connection, HandshakeResponseType response, Throwable ex)
+	{
+		if (!downloading)
+		{
+			connection.close();
+			return;
+		}
 
-		requests.add(pf);
+		if (ex != null)
+		{
+			logger.warn("Connection closed during handshake");
+			reconnect();
+			return;
+		}
 
-		if (!flush)
+		if (response != HandshakeResponseType.RESPONSE_OK)
 		{
-			channel.write(archiveRequest);
+			// the connection is closed by the handshake handler
+			if (active.isEmpty())
+			{
+				fail(new IOException("Handshake failed: " + response));
+			}
+			return;
 		}
-		else
+
+		if (!active.contains(primary))
 		{
-			channel.writeAndFlush(archiveRequest);
+			primary = connection;
 		}
 
-		return future;
+		active.add(connection);
+		logger.info("Opened connection {}/{}", active.size(), connections);
+
+		dispatch();
 	}
 
-	private PendingFileRequest findRequest(int index, int file)
+	private void reconnect()
 	{
-		for (PendingFileRequest pr : requests)
+		if (reconnects >= MAX_RECONNECTS)
 		{
-			if (pr.getIndex() == index && pr.getArchive() == file)
+			if (active.isEmpty())
 			{
-				return pr;
+				fail(new IOException("Unable to reconnect to " + host));
 			}
+			return;
 		}
-		return null;
+
+		++reconnects;
+		workers.execute(() -> openConnection(RECONNECT_DELAY));
 	}
 
-	protected synchronized void onFileFinish(int index, int file, byte[] compressedData)
+	synchronized void onConnectionLost(CacheConnection connection)
 	{
-		PendingFileRequest pr = findRequest(index, file);
+		boolean wasActive = active.remove(connection);
+		List<PendingFileRequest> pending = connection.drain();
 
-		if (pr == null)
+		if (!downloading)
 		{
-			logger.warn("File download {}/{} with no pending request", index, file);
+			IOException ex = new IOException("Connection lost");
+			for (PendingFileRequest pr : pending)
+			{
+				pr.getFuture().completeExceptionally(ex);
+			}
 			return;
 		}
 
-		requests.remove(pr);
+		if (!pending.isEmpty())
+		{
+			logger.info("Connection lost with {} requests in flight, requeueing", pending.size());
+		}
+
+		// send them again before anything else, in their original order
+		for (int i = pending.size() - 1; i >= 0; --i)
+		{
+			queue.addFirst(pending.get(i));
+		}
+
+		if (wasActive)
+		{
+			reconnect();
+		}
+
+		dispatch();
+	}
+
+	void onFileFinish(CacheConnection connection, int index, int file, byte[] compressedData)
+	{
+		PendingFileRequest pr;
+
+		synchronized (this)
+		{
+			pr = connection.remove(index, file);
 
-		notify();
+			if (pr == null)
+			{
+				logger.warn("File download {}/{} with no pending request", index, file);
+				return;
+			}
+
+			receivedBytes[index] += compressedData.length;
+			++receivedCount[index];
+
+			dispatch();
+		}
 
 		FileResult result = new FileResult(index, file, compressedData);
 
@@ -456,4 +696,20 @@ public class CacheClient implements AutoCloseable
 
 		pr.getFuture().complete(result);
 	}
+
+	private static <T> T join(CompletableFuture<T> future) throws IOException
+	{
+		try
+		{
+			return future.join();
+		}
+		catch (CompletionException ex)
+		{
+			if (ex.getCause() instanceof IOException)
+			{
+				throw (IOException) ex.getCause();
+			}
+			throw ex;
+		}
+	}
 }
@@ -33,10 +33,18 @@ public class CacheClientHandler extends ChannelInboundHandlerAdapter
 {
 	private static final Logger logger = LoggerFactory.getLogger(CacheClientHandler.class);
 
+	private final CacheConnection connection;
+
+	public CacheClientHandler(CacheConnection connection)
+	{
+		this.connection = connection;
+	}
+
 	@Override
 	public void channelInactive(ChannelHandlerContext ctx) throws Exception
 	{
 		logger.warn("Channel has gone inactive");
+		connection.onInactive();
 	}
 
 	@Override
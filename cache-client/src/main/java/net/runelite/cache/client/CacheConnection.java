@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.client;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import net.runelite.protocol.api.handshake.UpdateHandshakePacket;
+import net.runelite.protocol.api.login.HandshakeResponseType;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import net.runelite.protocol.handshake.UpdateHandshakeEncoder;
+import net.runelite.protocol.update.decoders.HandshakeResponseDecoder;
+import net.runelite.protocol.update.encoders.ArchiveRequestEncoder;
+import net.runelite.protocol.update.encoders.EncryptionEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A single connection to an update server. The in-flight request
+ * bookkeeping is guarded by the owning {@link CacheClient}.
+ */
+public class CacheConnection
+{
+	private static final Logger logger = LoggerFactory.getLogger(CacheConnection.class);
+
+	private final CacheClient client;
+	private Channel channel;
+
+	private volatile ClientState state;
+	private CompletableFuture<HandshakeResponseType> handshakeFuture;
+
+	private final Map<Integer, PendingFileRequest> requests = new HashMap<>();
+	private long pendingBytes; // expected size of the in-flight requests
+	private boolean unflushed;
+
+	CacheConnection(CacheClient client)
+	{
+		this.client = client;
+	}
+
+	CacheConnection(CacheClient client, Channel channel)
+	{
+		this.client = client;
+		this.channel = channel;
+	}
+
+	void connect(EventLoopGroup group, String host, int port)
+	{
+		Bootstrap b = new Bootstrap();
+		b.group(group)
+			.channel(NioSocketChannel.class)
+			.option(ChannelOption.TCP_NODELAY, true)
+			.handler(new ChannelInitializer<SocketChannel>()
+			{
+				@Override
+				public void initChannel(SocketChannel ch) throws Exception
+				{
+					ChannelPipeline p = ch.pipeline();
+
+					//p.addFirst(new HttpProxyHandler(new InetSocketAddress("runelite.net", 3128)));
+					p.addLast("decoder", new HandshakeResponseDecoder());
+
+					p.addLast(
+						new CacheClientHandler(CacheConnection.this),
+						new HandshakeResponseHandler(CacheConnection.this),
+						new ArchiveResponseHandler(CacheConnection.this)
+					);
+
+					p.addLast(
+						new UpdateHandshakeEncoder(),
+						new EncryptionEncoder(),
+						new ArchiveRequestEncoder()
+					);
+				}
+			});
+
+		channel = b.connect(host, port).syncUninterruptibly().channel();
+	}
+
+	CompletableFuture<HandshakeResponseType> handshake(int revision)
+	{
+		UpdateHandshakePacket handshakePacket = new UpdateHandshakePacket();
+		handshakePacket.setRevision(revision);
+
+		state = ClientState.HANDSHAKING;
+
+		assert handshakeFuture == null;
+		handshakeFuture = new CompletableFuture<>();
+
+		channel.writeAndFlush(handshakePacket);
+
+		logger.info("Sent handshake with revision {}", handshakePacket.getRevision());
+
+		return handshakeFuture;
+	}
+
+	ChannelFuture close()
+	{
+		return channel.close();
+	}
+
+	ClientState getState()
+	{
+		return state;
+	}
+
+	void setState(ClientState state)
+	{
+		this.state = state;
+	}
+
+	CompletableFuture<HandshakeResponseType> getHandshakeFuture()
+	{
+		return handshakeFuture;
+	}
+
+	void write(PendingFileRequest pr, boolean priority)
+	{
+		ArchiveRequestPacket archiveRequest = new ArchiveRequestPacket();
+		archiveRequest.setPriority(priority);
+		archiveRequest.setIndex(pr.getIndex());
+		archiveRequest.setArchive(pr.getArchive());
+
+		logger.trace("Sending request for {}/{}", pr.getIndex(), pr.getArchive());
+
+		requests.put(key(pr.getIndex(), pr.getArchive()), pr);
+		pendingBytes += pr.getExpectedSize();
+
+		channel.write(archiveRequest);
+		unflushed = true;
+	}
+
+	void flush()
+	{
+		if (unflushed)
+		{
+			unflushed = false;
+			channel.flush();
+		}
+	}
+
+	PendingFileRequest remove(int index, int archive)
+	{
+		PendingFileRequest pr = requests.remove(key(index, archive));
+		if (pr != null)
+		{
+			pendingBytes -= pr.getExpectedSize();
+		}
+		return pr;
+	}
+
+	/**
+	 * Remove every in-flight request, in the order they were sent
+	 *
+	 * @return the removed requests
+	 */
+	List<PendingFileRequest> drain()
+	{
+		List<PendingFileRequest> pending = new ArrayList<>(requests.values());
+		pending.sort((r1, r2) -> Long.compare(r1.getSequence(), r2.getSequence()));
+		requests.clear();
+		pendingBytes = 0;
+		return pending;
+	}
+
+	int getRequestCount()
+	{
+		return requests.size();
+	}
+
+	long getPendingBytes()
+	{
+		return pendingBytes;
+	}
+
+	void onFileFinish(int index, int archive, byte[] compressedData)
+	{
+		client.onFileFinish(this, index, archive, compressedData);
+	}
+
+	void onInactive()
+	{
+		state = null;
+
+		if (handshakeFuture != null)
+		{
+			handshakeFuture.completeExceptionally(new IOException("Connection lost during handshake"));
+		}
+
+		client.onConnectionLost(this);
+	}
+
+	private static int key(int index, int archive)
+	{
+		return index << 16 | archive;
+	}
+}
@@ -25,12 +25,17 @@
 package net.runelite.cache.client;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class PendingFileRequest
 {
+	private static final AtomicLong nextSequence = new AtomicLong();
+
 	private final int index;
 	private final int archive;
 	private final CompletableFuture<FileResult> future;
+	private final long sequence = nextSequence.getAndIncrement();
+	private int expectedSize;
 
 	public PendingFileRequest(int index, int archive, CompletableFuture<FileResult> future)
 	{
@@ -53,4 +58,19 @@ public class PendingFileRequest
 	{
 		return future;
 	}
+
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	public int getExpectedSize()
+	{
+		return expectedSize;
+	}
+
+	public void setExpectedSize(int expectedSize)
+	{
+		this.expectedSize = expectedSize;
+	}
 }
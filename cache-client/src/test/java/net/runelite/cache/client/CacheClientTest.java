@@ -24,12 +24,16 @@
  */
 package net.runelite.cache.client;
 
+import io.netty.channel.embedded.EmbeddedChannel;
 import java.io.File;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
 import net.runelite.cache.CacheProperties;
 import net.runelite.cache.fs.Store;
 import net.runelite.protocol.api.login.HandshakeResponseType;
 import org.junit.Assert;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import org.junit.Before;
 import org.junit.Ignore;
 import org.junit.Test;
@@ -71,4 +75,48 @@ public class CacheClientTest
 			store.save();
 		}
 	}
+
+	@Test
+	public void testCloseWithoutConnect()
+	{
+		new CacheClient(null, 0).close();
+	}
+
+	@Test
+	public void testSelectConnection()
+	{
+		CacheClient client = new CacheClient(null, 0);
+		CacheConnection small = new CacheConnection(client, new EmbeddedChannel());
+		CacheConnection large = new CacheConnection(client, new EmbeddedChannel());
+
+		// more requests, but less data expected
+		write(small, 0, 0, 100);
+		write(small, 0, 1, 100);
+		write(large, 1, 0, 50_000);
+		assertSame(small, CacheClient.selectConnection(Arrays.asList(large, small)));
+
+		// a full pipeline is skipped however little it expects
+		for (int i = 2; i < CacheClient.MAX_REQUESTS; ++i)
+		{
+			write(small, 0, i, 100);
+		}
+		assertSame(large, CacheClient.selectConnection(Arrays.asList(large, small)));
+
+		for (int i = 1; i < CacheClient.MAX_REQUESTS; ++i)
+		{
+			write(large, 1, i, 100);
+		}
+		assertNull(CacheClient.selectConnection(Arrays.asList(large, small)));
+
+		// a response frees up room and its expected size
+		small.remove(0, 0);
+		assertSame(small, CacheClient.selectConnection(Arrays.asList(large, small)));
+	}
+
+	private static void write(CacheConnection connection, int index, int archive, int expectedSize)
+	{
+		PendingFileRequest pr = new PendingFileRequest(index, archive, new CompletableFuture<>());
+		pr.setExpectedSize(expectedSize);
+		connection.write(pr, false);
+	}
 }
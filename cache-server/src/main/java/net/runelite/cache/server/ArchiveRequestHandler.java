@@ -24,53 +24,223 @@
  */
 package net.runelite.cache.server;
 
-import com.google.common.primitives.Ints;
+import com.google.common.annotations.VisibleForTesting;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
 import io.netty.channel.SimpleChannelInboundHandler;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
-import net.runelite.cache.fs.Archive;
+import java.util.Deque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 import net.runelite.cache.fs.Container;
 import net.runelite.cache.fs.Index;
-import net.runelite.cache.fs.Storage;
 import net.runelite.cache.fs.Store;
 import net.runelite.cache.fs.jagex.CompressionType;
 import net.runelite.cache.fs.jagex.DiskStorage;
 import net.runelite.protocol.api.update.ArchiveRequestPacket;
 import net.runelite.protocol.api.update.ArchiveResponsePacket;
+import net.runelite.protocol.update.encoders.XorEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Serves archive requests for a connection. Requests are queued per
+ * connection, urgent requests ahead of prefetch requests, and served one
+ * at a time on the storage executor so disk reads never block the event
+ * loop. The executor runs urgent requests before prefetch requests and
+ * is otherwise first come first served, and since each connection has
+ * at most one request waiting on it, busy connections interleave fairly
+ * with everyone else.
+ */
 public class ArchiveRequestHandler extends SimpleChannelInboundHandler<ArchiveRequestPacket>
 {
 	private static final Logger logger = LoggerFactory.getLogger(ArchiveRequestHandler.class);
 
+	private static final AtomicLong sequence = new AtomicLong();
+
 	private final Store store;
+	private final ArchiveResponseCache responseCache;
+	private final Executor executor;
+
+	// only accessed from the channel's event loop
+	private final Deque<ArchiveRequestPacket> urgent = new ArrayDeque<>();
+	private final Deque<ArchiveRequestPacket> prefetch = new ArrayDeque<>();
+	private boolean serving;
 
-	public ArchiveRequestHandler(Store store)
+	public ArchiveRequestHandler(Store store, ArchiveResponseCache responseCache, Executor executor)
 	{
 		this.store = store;
+		this.responseCache = responseCache;
+		this.executor = executor;
 	}
 
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, ArchiveRequestPacket archiveRequest) throws Exception
 	{
-		if (archiveRequest.getIndex() == 255)
+		if (archiveRequest.isPriority())
 		{
-			handleRequest255(ctx, archiveRequest.getIndex(),
-				archiveRequest.getArchive());
+			urgent.add(archiveRequest);
 		}
 		else
 		{
-			handleRequest(ctx, archiveRequest.getIndex(),
-				archiveRequest.getArchive());
+			prefetch.add(archiveRequest);
+		}
+
+		serveNext(ctx);
+	}
+
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception
+	{
+		serveNext(ctx);
+		super.channelWritabilityChanged(ctx);
+	}
+
+	@Override
+	public void channelInactive(ChannelHandlerContext ctx) throws Exception
+	{
+		urgent.clear();
+		prefetch.clear();
+		super.channelInactive(ctx);
+	}
+
+	private void serveNext(ChannelHandlerContext ctx)
+	{
+		// wait for the outbound buffer to drain before reading more from disk
+		if (serving || !ctx.channel().isActive() || !ctx.channel().isWritable())
+		{
+			return;
+		}
+
+		ArchiveRequestPacket archiveRequest = urgent.poll();
+		if (archiveRequest == null)
+		{
+			archiveRequest = prefetch.poll();
+			if (archiveRequest == null)
+			{
+				return;
+			}
+		}
+
+		serving = true;
+		try
+		{
+			executor.execute(new RequestTask(ctx, archiveRequest, isEncrypted(ctx)));
+		}
+		catch (RejectedExecutionException ex)
+		{
+			// the server is shutting down
+			serving = false;
+			ctx.close();
+		}
+	}
+
+	private void serve(ChannelHandlerContext ctx, ArchiveRequestPacket archiveRequest, boolean encrypted)
+	{
+		Object response = null;
+		try
+		{
+			if (archiveRequest.getIndex() == 255)
+			{
+				response = handleRequest255(ctx, archiveRequest.getIndex(),
+					archiveRequest.getArchive());
+			}
+			else
+			{
+				response = handleRequest(ctx, archiveRequest.getIndex(),
+					archiveRequest.getArchive(), encrypted);
+			}
+		}
+		catch (Exception ex)
+		{
+			logger.warn("Unable to serve request {} from {}", archiveRequest, ctx.channel().remoteAddress(), ex);
+		}
+		finally
+		{
+			Object r = response;
+			ctx.executor().execute(() ->
+			{
+				serving = false;
+				write(ctx, archiveRequest, r);
+				serveNext(ctx);
+			});
+		}
+	}
+
+	/**
+	 * Write a response. This runs on the event loop, the same thread which
+	 * sets the encryption key, so the key can't change before the response
+	 * reaches the xor encoder.
+	 */
+	private void write(ChannelHandlerContext ctx, ArchiveRequestPacket archiveRequest, Object response)
+	{
+		if (response == null)
+		{
+			return;
+		}
+
+		if (response instanceof FileRegion && isEncrypted(ctx))
+		{
+			// encryption was enabled while the request was being served, and file
+			// regions bypass the xor encoder. Serve it again as an encrypted buffer.
+			((FileRegion) response).release();
+			(archiveRequest.isPriority() ? urgent : prefetch).addFirst(archiveRequest);
+			return;
 		}
+
+		ctx.writeAndFlush(response);
+	}
+
+	private static boolean isEncrypted(ChannelHandlerContext ctx)
+	{
+		XorEncoder xorEncoder = ctx.pipeline().get(XorEncoder.class);
+		return xorEncoder != null && xorEncoder.getKey() != 0;
 	}
 
-	private void handleRequest255(ChannelHandlerContext ctx, int index, int archiveId) throws IOException
+	@VisibleForTesting
+	class RequestTask implements Runnable, Comparable<RequestTask>
 	{
-		logger.info("Client {} requests 255: index {}, archive {}", ctx.channel().remoteAddress(), index, archiveId);
+		private final ChannelHandlerContext ctx;
+		private final ArchiveRequestPacket archiveRequest;
+		private final boolean encrypted;
+		private final long seq = sequence.getAndIncrement();
+
+		RequestTask(ChannelHandlerContext ctx, ArchiveRequestPacket archiveRequest, boolean encrypted)
+		{
+			this.ctx = ctx;
+			this.archiveRequest = archiveRequest;
+			this.encrypted = encrypted;
+		}
+
+		ArchiveRequestPacket getArchiveRequest()
+		{
+			return archiveRequest;
+		}
+
+		@Override
+		public void run()
+		{
+			serve(ctx, archiveRequest, encrypted);
+		}
+
+		@Override
+		public int compareTo(RequestTask other)
+		{
+			if (archiveRequest.isPriority() != other.archiveRequest.isPriority())
+			{
+				return archiveRequest.isPriority() ? -1 : 1;
+			}
+			return Long.compare(seq, other.seq);
+		}
+	}
+
+	private ArchiveResponsePacket handleRequest255(ChannelHandlerContext ctx, int index, int archiveId) throws IOException
+	{
+		logger.debug("Client {} requests 255: index {}, archive {}", ctx.channel().remoteAddress(), index, archiveId);
 
 		byte[] compressed;
 		if (archiveId == 255)
@@ -100,53 +270,32 @@ public class ArchiveRequestHandler extends SimpleChannelInboundHandler<ArchiveRe
 		response.setIndex(index);
 		response.setArchive(archiveId);
 		response.setData(compressed);
-
-		ctx.writeAndFlush(response);
+		return response;
 	}
 
-	private void handleRequest(ChannelHandlerContext ctx, int index, int archiveId) throws IOException
+	private Object handleRequest(ChannelHandlerContext ctx, int index, int archiveId, boolean encrypted) throws IOException
 	{
-		logger.info("Client {} requests index {} archive {}", ctx.channel().remoteAddress(), index, archiveId);
-
-		Index i = store.findIndex(index);
-		assert i != null;
-
-		Archive archive = i.getArchive(archiveId);
-		assert archive != null;
-
-		Storage storage = store.getStorage();
-		byte[] packed = storage.loadArchive(archive); // is compressed, includes length and type
+		logger.debug("Client {} requests index {} archive {}", ctx.channel().remoteAddress(), index, archiveId);
 
-		if (packed == null)
+		// file regions bypass the xor encoder, so can only be used without encryption.
+		// whether the connection is encrypted is checked again when writing.
+		if (!encrypted)
 		{
-			logger.warn("Missing archive {}/{}", index, archiveId);
-			return; // is it possible to notify the client of an error with this?
+			FileRegion region = responseCache.getFileRegion(index, archiveId);
+			if (region != null)
+			{
+				return region;
+			}
 		}
 
-		byte compression = packed[0];
-		int compressedSize = Ints.fromBytes(packed[1], packed[2],
-			packed[3], packed[4]);
-
-		// size the client expects the data to be
-		int expectedSize = 1 // compression type
-			+ 4 // compressed size
-			+ compressedSize
-			+ (compression != CompressionType.NONE ? 4 : 0);
-		if (packed.length != expectedSize)
+		ByteBuf response = responseCache.getResponse(index, archiveId);
+		if (response == null)
 		{
-			// It may have the archive revision appended at the end.
-			// The data the client writes will have it, but the data fetched from
-			// the update server will never have it
-			assert packed.length - expectedSize == 2 : "packed length != expected size";
-			packed = Arrays.copyOf(packed, packed.length - 2);
+			logger.warn("Missing archive {}/{}", index, archiveId);
+			return null; // is it possible to notify the client of an error with this?
 		}
 
-		ArchiveResponsePacket response = new ArchiveResponsePacket();
-		response.setIndex(index);
-		response.setArchive(archiveId);
-		response.setData(packed);
-
-		ctx.writeAndFlush(response);
+		return response;
 	}
 
 	private byte[] compress(int compression, byte[] data) throws IOException
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.primitives.Ints;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.util.IllegalReferenceCountException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.protocol.update.encoders.ArchiveResponseEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache of archive responses, framed exactly as they are sent to clients.
+ * Responses are framed into off heap buffers the first time they are
+ * requested, or can be framed up front into a file to be sent with
+ * {@link FileRegion}s. Entries are keyed by index and archive, and are
+ * rebuilt if the crc of the archive in the store changes. The buffers
+ * are bounded by their total size, and released when evicted.
+ */
+public class ArchiveResponseCache implements AutoCloseable
+{
+	private static final Logger logger = LoggerFactory.getLogger(ArchiveResponseCache.class);
+
+	private static final long DEFAULT_MAX_WEIGHT = 256L * 1024L * 1024L; // bytes
+
+	private final Store store;
+	private final Cache<Long, Response> responses;
+	private final Map<Long, Region> regions = new ConcurrentHashMap<>();
+	private File responseFile;
+
+	private static class Response
+	{
+		private final int crc;
+		private final ByteBuf buffer;
+
+		private Response(int crc, ByteBuf buffer)
+		{
+			this.crc = crc;
+			this.buffer = buffer;
+		}
+	}
+
+	private static class Region
+	{
+		private final int crc;
+		private final long position;
+		private final int length;
+
+		private Region(int crc, long position, int length)
+		{
+			this.crc = crc;
+			this.position = position;
+			this.length = length;
+		}
+	}
+
+	public ArchiveResponseCache(Store store)
+	{
+		this(store, DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * @param store store to serve archives from
+	 * @param maxWeight maximum total size of the response buffers, in bytes
+	 */
+	public ArchiveResponseCache(Store store, long maxWeight)
+	{
+		this.store = store;
+		// a single segment, so the bound applies to the whole cache
+		this.responses = CacheBuilder.newBuilder()
+			.concurrencyLevel(1)
+			.maximumWeight(maxWeight)
+			.weigher((Long key, Response response) -> response.buffer.capacity())
+			.removalListener((RemovalNotification<Long, Response> notification) -> notification.getValue().buffer.release())
+			.build();
+	}
+
+	/**
+	 * Get the framed response for an archive
+	 *
+	 * @param index index id
+	 * @param archiveId archive id
+	 * @return a retained buffer of the response, which the caller must
+	 * release, or null if there is no such archive
+	 * @throws IOException
+	 */
+	public ByteBuf getResponse(int index, int archiveId) throws IOException
+	{
+		Archive archive = findArchive(index, archiveId);
+		if (archive == null)
+		{
+			return null;
+		}
+
+		long key = key(index, archiveId);
+		ConcurrentMap<Long, Response> map = responses.asMap();
+		Response response = map.get(key);
+		if (response != null && response.crc == archive.getCrc())
+		{
+			try
+			{
+				return response.buffer.retainedDuplicate();
+			}
+			catch (IllegalReferenceCountException ex)
+			{
+				// evicted, or replaced after the archive changed, and released by another thread
+			}
+		}
+
+		ByteBuf buffer = frame(archive);
+		if (buffer == null)
+		{
+			return null;
+		}
+
+		// retain ours before it is published, it can be evicted and released at any time after
+		ByteBuf result = buffer.retainedDuplicate();
+
+		Response newResponse = new Response(archive.getCrc(), buffer);
+		boolean replaced = response == null
+			? map.putIfAbsent(key, newResponse) == null
+			: map.replace(key, response, newResponse);
+		if (!replaced)
+		{
+			// another thread got here first, leave theirs in the cache
+			buffer.release();
+		}
+
+		return result;
+	}
+
+	/**
+	 * Get a region of the response file for an archive
+	 *
+	 * @param index index id
+	 * @param archiveId archive id
+	 * @return the file region, or null if the archive is not in the
+	 * response file or has changed since it was written
+	 */
+	public FileRegion getFileRegion(int index, int archiveId)
+	{
+		File file = responseFile;
+		if (file == null)
+		{
+			return null;
+		}
+
+		Region region = regions.get(key(index, archiveId));
+		if (region == null)
+		{
+			return null;
+		}
+
+		Archive archive = findArchive(index, archiveId);
+		if (archive == null || archive.getCrc() != region.crc)
+		{
+			return null;
+		}
+
+		return new DefaultFileRegion(file, region.position, region.length);
+	}
+
+	/**
+	 * Frame the responses for every archive in the store into a file, to
+	 * be sent with {@link #getFileRegion(int, int)}
+	 *
+	 * @param file file to write
+	 * @throws IOException
+	 */
+	public void writeResponseFile(File file) throws IOException
+	{
+		responseFile = null;
+		regions.clear();
+
+		ByteBuf buffer = Unpooled.directBuffer();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"))
+		{
+			raf.setLength(0L);
+			FileChannel channel = raf.getChannel();
+
+			for (Index index : store.getIndexes())
+			{
+				for (Archive archive : index.getArchives())
+				{
+					byte[] packed = store.getStorage().loadArchive(archive);
+					if (packed == null)
+					{
+						continue;
+					}
+
+					buffer.clear();
+					ArchiveResponseEncoder.encode(index.getId(), archive.getArchiveId(), Unpooled.wrappedBuffer(packed, 0, stripRevision(packed)), buffer);
+
+					long position = channel.position();
+					int length = buffer.readableBytes();
+					while (buffer.isReadable())
+					{
+						buffer.readBytes(channel, buffer.readableBytes());
+					}
+
+					regions.put(key(index.getId(), archive.getArchiveId()), new Region(archive.getCrc(), position, length));
+				}
+			}
+		}
+		finally
+		{
+			buffer.release();
+		}
+
+		responseFile = file;
+		logger.info("Wrote {} responses to {}", regions.size(), file);
+	}
+
+	@Override
+	public void close()
+	{
+		// releases the buffers
+		responses.invalidateAll();
+		regions.clear();
+		responseFile = null;
+	}
+
+	private Archive findArchive(int index, int archiveId)
+	{
+		Index i = store.findIndex(index);
+		return i == null ? null : i.getArchive(archiveId);
+	}
+
+	private ByteBuf frame(Archive archive) throws IOException
+	{
+		byte[] packed = store.getStorage().loadArchive(archive); // is compressed, includes length and type
+		if (packed == null)
+		{
+			return null;
+		}
+
+		int length = stripRevision(packed);
+		ByteBuf buffer = Unpooled.directBuffer(ArchiveResponseEncoder.encodedSize(length));
+		ArchiveResponseEncoder.encode(archive.getIndex().getId(), archive.getArchiveId(), Unpooled.wrappedBuffer(packed, 0, length), buffer);
+		return buffer;
+	}
+
+	/**
+	 * Get the length of packed archive data without the archive revision.
+	 * The data the client writes will have it, but the data fetched from
+	 * the update server will never have it.
+	 */
+	private static int stripRevision(byte[] packed)
+	{
+		byte compression = packed[0];
+		int compressedSize = Ints.fromBytes(packed[1], packed[2],
+			packed[3], packed[4]);
+
+		// size the client expects the data to be
+		int expectedSize = 1 // compression type
+			+ 4 // compressed size
+			+ compressedSize
+			+ (compression != CompressionType.NONE ? 4 : 0);
+		if (packed.length != expectedSize)
+		{
+			assert packed.length - expectedSize == 2 : "packed length != expected size";
+		}
+		return expectedSize;
+	}
+
+	/**
+	 * Archive ids are not limited to 16 bits, so the key keeps each id in
+	 * its own 32 bits
+	 */
+	private static long key(int index, int archiveId)
+	{
+		return (long) index << 32 | (archiveId & 0xFFFFFFFFL);
+	}
+}
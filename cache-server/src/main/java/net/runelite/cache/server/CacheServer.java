@@ -24,6 +24,7 @@
  */
 package net.runelite.cache.server;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -31,6 +32,13 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import net.runelite.cache.fs.Store;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -41,23 +49,40 @@ public class CacheServer implements AutoCloseable
 
 	private static final int PORT = 43594;
 
-	private final EventLoopGroup group = new NioEventLoopGroup(1);
+	private static final int STORAGE_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+
+	private final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+	private final EventLoopGroup workerGroup = new NioEventLoopGroup(Runtime.getRuntime().availableProcessors());
+
+	// each connection has at most one request queued here at a time, see ArchiveRequestHandler
+	private final ExecutorService storageExecutor = new ThreadPoolExecutor(STORAGE_THREADS, STORAGE_THREADS,
+		0L, TimeUnit.MILLISECONDS,
+		new PriorityBlockingQueue<>(),
+		new ThreadFactoryBuilder()
+			.setNameFormat("cache-storage-%d")
+			.setDaemon(true)
+			.build());
 
 	private Channel channel;
+	private File responseFile;
 
 	private final Store store;
 	private final int revision;
+	private final ArchiveResponseCache responseCache;
 
 	public CacheServer(Store store, int revision)
 	{
 		this.store = store;
 		this.revision = revision;
+		this.responseCache = new ArchiveResponseCache(store);
 	}
 
 	public void start()
 	{
+		writeResponseFile();
+
 		ServerBootstrap b = new ServerBootstrap();
-		b.group(group)
+		b.group(bossGroup, workerGroup)
 			.channel(NioServerSocketChannel.class)
 			.option(ChannelOption.TCP_NODELAY, true)
 			.childHandler(new CacheServerInitializer(this));
@@ -76,8 +101,46 @@ public class CacheServer implements AutoCloseable
 	@Override
 	public void close()
 	{
-		channel.close().syncUninterruptibly();
-		group.shutdownGracefully();
+		if (channel != null)
+		{
+			channel.close().syncUninterruptibly();
+		}
+		bossGroup.shutdownGracefully();
+		workerGroup.shutdownGracefully().syncUninterruptibly();
+		storageExecutor.shutdown();
+		try
+		{
+			storageExecutor.awaitTermination(10, TimeUnit.SECONDS);
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+		responseCache.close();
+
+		if (responseFile != null && !responseFile.delete())
+		{
+			logger.warn("Unable to delete response file {}", responseFile);
+		}
+	}
+
+	/**
+	 * Frame every archive into a file up front, so unencrypted connections
+	 * can be served straight from it with sendfile
+	 */
+	private void writeResponseFile()
+	{
+		try
+		{
+			responseFile = File.createTempFile("cache-responses", ".dat");
+			responseFile.deleteOnExit();
+			responseCache.writeResponseFile(responseFile);
+		}
+		catch (IOException ex)
+		{
+			// the responses are framed on request instead
+			logger.warn("Unable to write response file", ex);
+		}
 	}
 
 	public int getRevision()
@@ -89,4 +152,14 @@ public class CacheServer implements AutoCloseable
 	{
 		return store;
 	}
+
+	public ArchiveResponseCache getResponseCache()
+	{
+		return responseCache;
+	}
+
+	public Executor getStorageExecutor()
+	{
+		return storageExecutor;
+	}
 }
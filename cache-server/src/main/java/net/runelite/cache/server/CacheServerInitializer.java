@@ -55,14 +55,16 @@ public class CacheServerInitializer extends ChannelInitializer<SocketChannel>
 			new ArchiveRequestDecoder()
 		);
 
+		// the archive response encoder does its own xor, so it goes
+		// after the xor encoder which handles pre-encoded responses
 		p.addLast(
 			new HandshakeResponseEncoder(),
-			new XorEncoder(),
-			new ArchiveResponseEncoder()
+			new ArchiveResponseEncoder(),
+			new XorEncoder()
 		);
 
 		p.addLast(
-			new ArchiveRequestHandler(server.getStore()),
+			new ArchiveRequestHandler(server.getStore(), server.getResponseCache(), server.getStorageExecutor()),
 			new EncryptionHandler(),
 			new HandshakeHandler(server)
 		);
@@ -27,6 +27,7 @@ package net.runelite.cache.server;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.SimpleChannelInboundHandler;
+import net.runelite.protocol.update.encoders.ArchiveResponseEncoder;
 import net.runelite.protocol.update.encoders.XorEncoder;
 import net.runelite.protocol.api.update.EncryptionPacket;
 
@@ -42,6 +43,12 @@ public class EncryptionHandler extends SimpleChannelInboundHandler<EncryptionPac
 		{
 			xorEncoder.setKey(encryptionPacket.getKey());
 		}
+
+		ArchiveResponseEncoder archiveResponseEncoder = p.get(ArchiveResponseEncoder.class);
+		if (archiveResponseEncoder != null)
+		{
+			archiveResponseEncoder.setKey(encryptionPacket.getKey());
+		}
 	}
 
 }
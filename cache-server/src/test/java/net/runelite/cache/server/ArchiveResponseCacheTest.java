@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.FileRegion;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.index.FileData;
+import net.runelite.protocol.update.encoders.ArchiveResponseEncoder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ArchiveResponseCacheTest
+{
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testGetResponse() throws IOException
+	{
+		try (Store store = new Store(folder.newFolder());
+			ArchiveResponseCache cache = new ArchiveResponseCache(store))
+		{
+			Archive archive = addArchive(store, new byte[2000]);
+
+			ByteBuf response = cache.getResponse(0, 0);
+			assertArrayEquals(expected(store, archive), toArray(response));
+			response.release();
+
+			// same crc, served from the cache
+			response = cache.getResponse(0, 0);
+			assertArrayEquals(expected(store, archive), toArray(response));
+			response.release();
+
+			assertNull(cache.getResponse(0, 1));
+			assertNull(cache.getResponse(1, 0));
+		}
+	}
+
+	@Test
+	public void testArchiveChanged() throws IOException
+	{
+		try (Store store = new Store(folder.newFolder());
+			ArchiveResponseCache cache = new ArchiveResponseCache(store))
+		{
+			Archive archive = addArchive(store, new byte[100]);
+
+			ByteBuf response = cache.getResponse(0, 0);
+			response.release();
+
+			byte[] data = new byte[600];
+			Arrays.fill(data, (byte) 1);
+			saveArchive(store, archive, data);
+
+			response = cache.getResponse(0, 0);
+			assertArrayEquals(expected(store, archive), toArray(response));
+			response.release();
+		}
+	}
+
+	@Test
+	public void testEviction() throws IOException
+	{
+		try (Store store = new Store(folder.newFolder());
+			ArchiveResponseCache cache = new ArchiveResponseCache(store, 3000))
+		{
+			// random, so each response is about 2000 bytes after compression
+			Random random = new Random(42L);
+			byte[] data = new byte[2000];
+			random.nextBytes(data);
+			Archive archive = addArchive(store, data);
+
+			random.nextBytes(data);
+			Archive archive2 = store.findIndex(0).addArchive(1);
+			archive2.setCompression(CompressionType.GZ);
+			archive2.setFileData(new FileData[]
+			{
+				new FileData()
+			});
+			saveArchive(store, archive2, data);
+
+			ByteBuf response = cache.getResponse(0, 0);
+			response.release();
+			assertEquals(1, response.refCnt());
+
+			// over the bound, so the first response is evicted and released
+			ByteBuf response2 = cache.getResponse(0, 1);
+			assertEquals(0, response.refCnt());
+			assertArrayEquals(expected(store, archive2), toArray(response2));
+			response2.release();
+
+			// and framed again on the next request
+			response = cache.getResponse(0, 0);
+			assertArrayEquals(expected(store, archive), toArray(response));
+			response.release();
+		}
+	}
+
+	@Test
+	public void testLargeArchiveId() throws IOException
+	{
+		try (Store store = new Store(folder.newFolder());
+			ArchiveResponseCache cache = new ArchiveResponseCache(store))
+		{
+			// the same data, so both have the same crc
+			byte[] data = new byte[100];
+			Archive archive = addArchive(store, store.addIndex(0), 65536, data);
+			Archive archive2 = addArchive(store, store.addIndex(1), 0, data);
+
+			ByteBuf response = cache.getResponse(0, 65536);
+			assertArrayEquals(expected(store, archive), toArray(response));
+			response.release();
+
+			response = cache.getResponse(1, 0);
+			assertArrayEquals(expected(store, archive2), toArray(response));
+			response.release();
+		}
+	}
+
+	@Test
+	public void testResponseFile() throws IOException
+	{
+		try (Store store = new Store(folder.newFolder());
+			ArchiveResponseCache cache = new ArchiveResponseCache(store))
+		{
+			Archive archive = addArchive(store, new byte[2000]);
+
+			assertNull(cache.getFileRegion(0, 0));
+
+			File file = folder.newFile();
+			cache.writeResponseFile(file);
+
+			byte[] expected = expected(store, archive);
+			assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+
+			FileRegion region = cache.getFileRegion(0, 0);
+			assertNotNull(region);
+			assertEquals(0, region.position());
+			assertEquals(expected.length, region.count());
+			region.release();
+
+			// stale once the archive changes
+			saveArchive(store, archive, new byte[10]);
+			assertNull(cache.getFileRegion(0, 0));
+		}
+	}
+
+	private static Archive addArchive(Store store, byte[] data) throws IOException
+	{
+		return addArchive(store, store.addIndex(0), 0, data);
+	}
+
+	private static Archive addArchive(Store store, Index index, int archiveId, byte[] data) throws IOException
+	{
+		Archive archive = index.addArchive(archiveId);
+		archive.setCompression(CompressionType.GZ);
+		archive.setFileData(new FileData[]
+		{
+			new FileData()
+		});
+		saveArchive(store, archive, data);
+		return archive;
+	}
+
+	private static void saveArchive(Store store, Archive archive, byte[] data) throws IOException
+	{
+		// with a revision, which is not sent to clients
+		Container container = new Container(archive.getCompression(), archive.getRevision() + 1);
+		container.compress(data, null);
+		archive.setRevision(archive.getRevision() + 1);
+		store.getStorage().saveArchive(archive, container.data);
+	}
+
+	private static byte[] expected(Store store, Archive archive) throws IOException
+	{
+		byte[] packed = store.getStorage().loadArchive(archive);
+		ByteBuf out = Unpooled.buffer();
+		ArchiveResponseEncoder.encode(archive.getIndex().getId(), archive.getArchiveId(), Unpooled.wrappedBuffer(packed, 0, packed.length - 2), out);
+		return toArray(out);
+	}
+
+	private static byte[] toArray(ByteBuf buf)
+	{
+		byte[] b = new byte[buf.readableBytes()];
+		buf.getBytes(buf.readerIndex(), b);
+		return b;
+	}
+}
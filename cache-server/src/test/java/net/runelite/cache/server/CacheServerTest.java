@@ -24,8 +24,26 @@
  */
 package net.runelite.cache.server;
 
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import net.runelite.cache.StoreLocation;
 import net.runelite.cache.client.CacheClient;
 import net.runelite.cache.fs.Archive;
@@ -34,8 +52,12 @@ import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
 import net.runelite.cache.fs.Store;
 import net.runelite.cache.index.FileData;
+import net.runelite.protocol.api.update.ArchiveRequestPacket;
+import net.runelite.protocol.api.update.ArchiveResponsePacket;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -44,7 +66,11 @@ import org.junit.rules.TemporaryFolder;
 public class CacheServerTest
 {
 	private static final String HOST = "localhost";
+	private static final int PORT = 43594; // the port the client connects to
 	private static final int REVISION = 154;
+	private static final int MAX_ATTEMPTS = 3; // downloads of an archive with a bad crc by the client
+
+	private final Multiset<Integer> requests = ConcurrentHashMultiset.create();
 
 	@Rule
 	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
@@ -104,6 +130,268 @@ public class CacheServerTest
 		}
 	}
 
+	@Test(timeout = 60_000L)
+	public void testConnectionLost() throws Exception
+	{
+		AtomicReference<Integer> dropped = new AtomicReference<>();
+
+		try (Store store = new Store(folder.newFolder());
+			CacheServer server = new CacheServer(store, REVISION))
+		{
+			addArchives(store, 64);
+			store.save();
+
+			// close the first connection to get its 5th archive request,
+			// leaving that request and maybe others unanswered
+			download(server, 2, () -> new RequestFilter(server)
+			{
+				private int count;
+
+				@Override
+				boolean filter(ChannelHandlerContext ctx, ArchiveRequestPacket request)
+				{
+					if (++count == 5 && dropped.compareAndSet(null, key(request.getIndex(), request.getArchive())))
+					{
+						ctx.close();
+						return false;
+					}
+					return true;
+				}
+			}, store2 ->
+			{
+				assertNotNull(dropped.get());
+				// requested again on another connection
+				assertEquals(2, requests.count(dropped.get()));
+				assertArchives(store, store2);
+			});
+		}
+	}
+
+	@Test(timeout = 60_000L)
+	public void testCrcMismatch() throws Exception
+	{
+		int once = key(0, 3);
+		int always = key(0, 5);
+
+		try (Store store = new Store(folder.newFolder());
+			CacheServer server = new CacheServer(store, REVISION))
+		{
+			addArchives(store, 16);
+			store.save();
+
+			// corrupt the first download of one archive, and every download of another
+			download(server, 2, () -> new RequestFilter(server)
+			{
+				@Override
+				boolean filter(ChannelHandlerContext ctx, ArchiveRequestPacket request) throws IOException
+				{
+					int key = key(request.getIndex(), request.getArchive());
+					if (key == always || (key == once && requests.count(once) == 1))
+					{
+						writeCorrupt(ctx, request);
+						return false;
+					}
+					return true;
+				}
+			}, store2 ->
+			{
+				assertEquals(2, requests.count(once));
+				assertEquals(MAX_ATTEMPTS, requests.count(always));
+
+				Archive archive = store2.findIndex(0).getArchive(5);
+				assertNull(store2.getStorage().loadArchive(archive));
+
+				store.findIndex(0).getArchives().stream()
+					.filter(a -> a.getArchiveId() != 5)
+					.forEach(a -> assertArchive(store, store2, a.getArchiveId()));
+			});
+		}
+	}
+
+	@Test
+	public void testRequestPriority()
+	{
+		ArchiveRequestHandler handler = new ArchiveRequestHandler(null, null, null);
+
+		// the order the storage executor takes tasks in
+		PriorityBlockingQueue<ArchiveRequestHandler.RequestTask> queue = new PriorityBlockingQueue<>();
+		queue.add(handler.new RequestTask(null, request(1, false), false));
+		queue.add(handler.new RequestTask(null, request(2, true), false));
+		queue.add(handler.new RequestTask(null, request(3, false), false));
+		queue.add(handler.new RequestTask(null, request(4, true), false));
+		queue.add(handler.new RequestTask(null, request(5, false), false));
+
+		// urgent requests first, each kind in the order they were made
+		for (int archive : new int[]{2, 4, 1, 3, 5})
+		{
+			assertEquals(archive, queue.poll().getArchiveRequest().getArchive());
+		}
+	}
+
+	private static ArchiveRequestPacket request(int archive, boolean priority)
+	{
+		ArchiveRequestPacket request = new ArchiveRequestPacket();
+		request.setIndex(0);
+		request.setArchive(archive);
+		request.setPriority(priority);
+		return request;
+	}
+
+	private interface StoreCheck
+	{
+		void check(Store store) throws IOException;
+	}
+
+	/**
+	 * Serve the store with a filter ahead of the archive request handler
+	 * of each connection, download it with a client with the given number
+	 * of connections, and check the downloaded store
+	 */
+	private void download(CacheServer server, int connections, Supplier<ChannelHandler> filter, StoreCheck check) throws Exception
+	{
+		EventLoopGroup group = new NioEventLoopGroup(2);
+		try
+		{
+			Channel channel = new ServerBootstrap()
+				.group(group)
+				.channel(NioServerSocketChannel.class)
+				.childHandler(new ChannelInitializer<SocketChannel>()
+				{
+					@Override
+					protected void initChannel(SocketChannel ch) throws Exception
+					{
+						new CacheServerInitializer(server).initChannel(ch);
+
+						ChannelPipeline p = ch.pipeline();
+						p.addBefore(p.context(ArchiveRequestHandler.class).name(), "filter", filter.get());
+					}
+				})
+				.bind(PORT).syncUninterruptibly().channel();
+
+			try (Store store2 = new Store(folder.newFolder());
+				CacheClient client = new CacheClient(store2, HOST, REVISION))
+			{
+				client.setConnections(connections);
+				client.connect();
+				client.handshake().get();
+				client.download();
+
+				check.check(store2);
+			}
+			finally
+			{
+				channel.close().syncUninterruptibly();
+			}
+		}
+		finally
+		{
+			group.shutdownGracefully().syncUninterruptibly();
+		}
+	}
+
+	/**
+	 * Counts the archive requests of a connection, and passes them on to
+	 * the archive request handler unless filtered
+	 */
+	private abstract class RequestFilter extends SimpleChannelInboundHandler<ArchiveRequestPacket>
+	{
+		private final CacheServer server;
+
+		RequestFilter(CacheServer server)
+		{
+			this.server = server;
+		}
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext ctx, ArchiveRequestPacket request) throws Exception
+		{
+			if (request.getIndex() != 255)
+			{
+				requests.add(key(request.getIndex(), request.getArchive()));
+
+				if (!filter(ctx, request))
+				{
+					return;
+				}
+			}
+
+			ctx.fireChannelRead(request);
+		}
+
+		/**
+		 * @return whether to pass the request on
+		 */
+		abstract boolean filter(ChannelHandlerContext ctx, ArchiveRequestPacket request) throws IOException;
+
+		void writeCorrupt(ChannelHandlerContext ctx, ArchiveRequestPacket request) throws IOException
+		{
+			Archive archive = server.getStore().findIndex(request.getIndex()).getArchive(request.getArchive());
+			byte[] data = server.getStore().getStorage().loadArchive(archive);
+			data = Arrays.copyOf(data, data.length);
+			data[data.length - 1] ^= 1;
+
+			ArchiveResponsePacket response = new ArchiveResponsePacket();
+			response.setIndex(request.getIndex());
+			response.setArchive(request.getArchive());
+			response.setData(data);
+			ctx.writeAndFlush(response);
+		}
+	}
+
+	private static int key(int index, int archive)
+	{
+		return index << 16 | archive;
+	}
+
+	private static void addArchives(Store store, int count) throws IOException
+	{
+		Random random = new Random(42L);
+		Storage storage = store.getStorage();
+		Index index = store.addIndex(0);
+
+		for (int i = 0; i < count; ++i)
+		{
+			Archive archive = index.addArchive(i);
+			archive.setFileData(new FileData[]
+			{
+				new FileData()
+			});
+
+			byte[] data = new byte[1000 + random.nextInt(8000)];
+			random.nextBytes(data);
+
+			Container container = new Container(archive.getCompression(), -1);
+			container.compress(data, null);
+			storage.saveArchive(archive, container.data);
+		}
+	}
+
+	private static void assertArchives(Store expected, Store actual)
+	{
+		for (Archive archive : expected.findIndex(0).getArchives())
+		{
+			assertArchive(expected, actual, archive.getArchiveId());
+		}
+	}
+
+	private static void assertArchive(Store expected, Store actual, int archiveId)
+	{
+		try
+		{
+			Archive expectedArchive = expected.findIndex(0).getArchive(archiveId);
+			Archive actualArchive = actual.findIndex(0).getArchive(archiveId);
+			assertEquals(expectedArchive.getCrc(), actualArchive.getCrc());
+
+			byte[] expectedData = expectedArchive.decompress(expected.getStorage().loadArchive(expectedArchive));
+			byte[] actualData = actualArchive.decompress(actual.getStorage().loadArchive(actualArchive));
+			assertArrayEquals(expectedData, actualData);
+		}
+		catch (IOException ex)
+		{
+			throw new AssertionError(ex);
+		}
+	}
+
 	private void addInitialFilesToStore(Store store) throws FileNotFoundException, IOException
 	{
 		Storage storage = store.getStorage();
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.updater;
+
+import java.util.HashMap;
+import java.util.Map;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.updater.beans.ArchiveEntry;
+import net.runelite.cache.updater.beans.ManifestEntry;
+
+/**
+ * The archives of a cache as stored in the database, keyed by index and
+ * archive id. Used to find the archive rows which can be reused for a new
+ * cache without querying for each archive.
+ */
+class ArchiveManifest
+{
+	private final Map<Integer, Map<Integer, ArchiveEntry>> indexes = new HashMap<>();
+	private int size;
+
+	void add(ManifestEntry manifestEntry)
+	{
+		ArchiveEntry entry = new ArchiveEntry();
+		entry.setId(manifestEntry.getId());
+		entry.setArchiveId(manifestEntry.getArchiveId());
+		entry.setNameHash(manifestEntry.getNameHash());
+		entry.setCrc(manifestEntry.getCrc());
+		entry.setRevision(manifestEntry.getRevision());
+		entry.setHash(manifestEntry.getHash());
+
+		indexes.computeIfAbsent(manifestEntry.getIndexId(), k -> new HashMap<>())
+			.put(entry.getArchiveId(), entry);
+		++size;
+	}
+
+	ArchiveEntry get(int indexId, int archiveId)
+	{
+		Map<Integer, ArchiveEntry> archives = indexes.get(indexId);
+		return archives != null ? archives.get(archiveId) : null;
+	}
+
+	/**
+	 * Find the entry for an archive, if it hasn't changed
+	 *
+	 * @param archive
+	 * @return the entry, or null if the archive is new or has changed
+	 */
+	ArchiveEntry find(Archive archive)
+	{
+		ArchiveEntry entry = get(archive.getIndex().getId(), archive.getArchiveId());
+		if (entry == null
+			|| entry.getCrc() != archive.getCrc()
+			|| entry.getRevision() != archive.getRevision()
+			|| entry.getNameHash() != archive.getNameHash())
+		{
+			return null;
+		}
+		return entry;
+	}
+
+	int size()
+	{
+		return size;
+	}
+}
@@ -26,15 +26,19 @@ package net.runelite.cache.updater;
 
 import java.time.Instant;
 import java.util.List;
+import net.runelite.cache.index.FileData;
 import net.runelite.cache.updater.beans.ArchiveEntry;
 import net.runelite.cache.updater.beans.CacheEntry;
 import net.runelite.cache.updater.beans.IndexEntry;
+import net.runelite.cache.updater.beans.ManifestEntry;
 import org.sql2o.Connection;
 import org.sql2o.Query;
 import org.sql2o.ResultSetIterable;
 
 class CacheDAO
 {
+	private static final int BATCH_SIZE = 1000;
+
 	// cache prepared statements for high volume queries
 	private Query associateArchive;
 	private Query findArchive, insertArchive;
@@ -53,14 +57,30 @@ class CacheDAO
 			.executeAndFetch(IndexEntry.class);
 	}
 
-	public ResultSetIterable<ArchiveEntry> findArchivesForIndex(Connection con, IndexEntry indexEntry)
+	/**
+	 * Find every archive of every index of a cache in one query, ordered
+	 * by index
+	 *
+	 * @param con
+	 * @param cache
+	 * @return
+	 */
+	public ResultSetIterable<ManifestEntry> findArchivesForCache(Connection con, CacheEntry cache)
+	{
+		return con.createQuery("select `index`.indexId, archive.id, archive.archiveId, archive.nameHash,"
+			+ " archive.crc, archive.revision, archive.hash from `index`"
+			+ " join index_archive on index_archive.index = `index`.id"
+			+ " join archive on index_archive.archive = archive.id"
+			+ " where `index`.cache = :cache"
+			+ " order by `index`.indexId")
+			.addParameter("cache", cache.getId())
+			.executeAndFetchLazy(ManifestEntry.class);
+	}
+
+	public List<byte[]> findArchiveHashes(Connection con)
 	{
-		return con.createQuery("select archive.id, archive.archiveId, archive.nameHash,"
-			+ " archive.crc, archive.revision, archive.hash from index_archive "
-			+ "join archive on index_archive.archive = archive.id "
-			+ "where index_archive.index = :id")
-			.addParameter("id", indexEntry.getId())
-			.executeAndFetchLazy(ArchiveEntry.class);
+		return con.createQuery("select distinct hash from archive where hash is not null")
+			.executeScalarList(byte[].class);
 	}
 
 	public CacheEntry createCache(Connection con, int revision, Instant date)
@@ -96,16 +116,31 @@ class CacheDAO
 		return entry;
 	}
 
-	public void associateArchiveToIndex(Connection con, ArchiveEntry archive, IndexEntry index)
+	public void associateArchivesToIndex(Connection con, List<ArchiveEntry> archives, IndexEntry index)
 	{
 		if (associateArchive == null)
 		{
 			associateArchive = con.createQuery("insert into index_archive (`index`, archive) values (:index, :archive)");
 		}
-		associateArchive
-			.addParameter("index", index.getId())
-			.addParameter("archive", archive.getId())
-			.executeUpdate();
+
+		int count = 0;
+		for (ArchiveEntry archive : archives)
+		{
+			associateArchive
+				.addParameter("index", index.getId())
+				.addParameter("archive", archive.getId())
+				.addToBatch();
+
+			if (++count % BATCH_SIZE == 0)
+			{
+				associateArchive.executeBatch();
+			}
+		}
+
+		if (count % BATCH_SIZE != 0)
+		{
+			associateArchive.executeBatch();
+		}
 	}
 
 	public ArchiveEntry findArchive(Connection con, IndexEntry index,
@@ -162,16 +197,26 @@ class CacheDAO
 		return entry;
 	}
 
-	public void associateFileToArchive(Connection con, ArchiveEntry archive, int fileId, int nameHash)
+	public void associateFilesToArchive(Connection con, ArchiveEntry archive, FileData[] files)
 	{
+		if (files.length == 0)
+		{
+			return;
+		}
+
 		if (associateFile == null)
 		{
 			associateFile = con.createQuery("insert into file (archive, fileId, nameHash) values (:archive, :fileId, :nameHash)");
 		}
-		associateFile
-			.addParameter("archive", archive.getId())
-			.addParameter("fileId", fileId)
-			.addParameter("nameHash", nameHash)
-			.executeUpdate();
+
+		for (FileData file : files)
+		{
+			associateFile
+				.addParameter("archive", archive.getId())
+				.addParameter("fileId", file.getId())
+				.addParameter("nameHash", file.getNameHash())
+				.addToBatch();
+		}
+		associateFile.executeBatch();
 	}
 }
@@ -25,23 +25,30 @@
 package net.runelite.cache.updater;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
 import net.runelite.cache.fs.Store;
-import net.runelite.cache.index.FileData;
 import net.runelite.cache.updater.beans.ArchiveEntry;
 import net.runelite.cache.updater.beans.CacheEntry;
 import net.runelite.cache.updater.beans.IndexEntry;
+import net.runelite.cache.updater.beans.ManifestEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.sql2o.Connection;
 import org.sql2o.ResultSetIterable;
 
 public class CacheStorage implements Storage
 {
+	private static final Logger logger = LoggerFactory.getLogger(CacheStorage.class);
+
 	private CacheEntry cacheEntry;
 	private final CacheDAO cacheDao;
 	private final Connection con;
+	private ArchiveManifest manifest = new ArchiveManifest();
 
 	public CacheStorage(CacheEntry cacheEntry, CacheDAO cacheDao, Connection con)
 	{
@@ -79,54 +86,96 @@ public class CacheStorage implements Storage
 			Index index = store.addIndex(indexEntry.getIndexId());
 			index.setCrc(indexEntry.getCrc());
 			index.setRevision(indexEntry.getRevision());
+		}
+
+		ArchiveManifest manifest = new ArchiveManifest();
+
+		try (ResultSetIterable<ManifestEntry> archives = cacheDao.findArchivesForCache(con, cacheEntry))
+		{
+			// rows are ordered by index, so each index is filled in one run
+			Index index = null;
+			BitSet archiveIds = new BitSet();
 
-			try (ResultSetIterable<ArchiveEntry> archives = cacheDao.findArchivesForIndex(con, indexEntry))
+			for (ManifestEntry archiveEntry : archives)
 			{
-				for (ArchiveEntry archiveEntry : archives)
+				if (index == null || index.getId() != archiveEntry.getIndexId())
 				{
-					if (index.getArchive(archiveEntry.getArchiveId()) != null)
+					index = store.findIndex(archiveEntry.getIndexId());
+					if (index == null)
 					{
-						throw new IOException("Duplicate archive " + archiveEntry + " on " + indexEntry);
+						throw new IOException("Archive " + archiveEntry + " has no index");
 					}
 
-					Archive archive = index.addArchive(archiveEntry.getArchiveId());
-					archive.setNameHash(archiveEntry.getNameHash());
-					archive.setCrc(archiveEntry.getCrc());
-					archive.setRevision(archiveEntry.getRevision());
-					archive.setHash(archiveEntry.getHash());
+					archiveIds.clear();
+				}
 
-					// File data is not necessary for cache updating
+				if (archiveIds.get(archiveEntry.getArchiveId()))
+				{
+					throw new IOException("Duplicate archive " + archiveEntry + " on index " + index.getId());
 				}
+				archiveIds.set(archiveEntry.getArchiveId());
+
+				Archive archive = index.addArchive(archiveEntry.getArchiveId());
+				archive.setNameHash(archiveEntry.getNameHash());
+				archive.setCrc(archiveEntry.getCrc());
+				archive.setRevision(archiveEntry.getRevision());
+				archive.setHash(archiveEntry.getHash());
+
+				// File data is not necessary for cache updating
+
+				manifest.add(archiveEntry);
 			}
 		}
+
+		this.manifest = manifest;
+		logger.info("Loaded {} archives from cache {}", manifest.size(), cacheEntry.getId());
 	}
 
+	/**
+	 * Save the store as the current cache. Archives which haven't changed
+	 * since the cache was loaded reuse their existing rows, so only changed
+	 * archives are looked up and inserted individually.
+	 *
+	 * @param store
+	 * @throws IOException
+	 */
 	@Override
 	public void save(Store store) throws IOException
 	{
+		int created = 0;
+
 		for (Index index : store.getIndexes())
 		{
 			IndexEntry entry = cacheDao.createIndex(con, cacheEntry, index.getId(), index.getCrc(), index.getRevision());
+			List<ArchiveEntry> archiveEntries = new ArrayList<>(index.getArchives().size());
 
 			for (Archive archive : index.getArchives())
 			{
-				ArchiveEntry archiveEntry = cacheDao.findArchive(con, entry, archive.getArchiveId(),
-					archive.getNameHash(), archive.getCrc(), archive.getRevision());
+				ArchiveEntry archiveEntry = manifest.find(archive);
+				if (archiveEntry == null)
+				{
+					// changed since the last cache, but may match an older one
+					archiveEntry = cacheDao.findArchive(con, entry, archive.getArchiveId(),
+						archive.getNameHash(), archive.getCrc(), archive.getRevision());
+				}
+
 				if (archiveEntry == null)
 				{
 					byte[] hash = archive.getHash();
 					archiveEntry = cacheDao.createArchive(con, entry, archive.getArchiveId(),
 						archive.getNameHash(), archive.getCrc(), archive.getRevision(), hash);
 
-					for (FileData file : archive.getFileData())
-					{
-						cacheDao.associateFileToArchive(con, archiveEntry, file.getId(), file.getNameHash());
-					}
+					cacheDao.associateFilesToArchive(con, archiveEntry, archive.getFileData());
+					++created;
 				}
 
-				cacheDao.associateArchiveToIndex(con, archiveEntry, entry);
+				archiveEntries.add(archiveEntry);
 			}
+
+			cacheDao.associateArchivesToIndex(con, archiveEntries, entry);
 		}
+
+		logger.info("Saved cache {} with {} new archives", cacheEntry.getId(), created);
 	}
 
 	@Override
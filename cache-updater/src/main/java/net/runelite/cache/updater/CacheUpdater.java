@@ -30,12 +30,8 @@ import io.minio.errors.InvalidPortException;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
 import net.runelite.cache.client.CacheClient;
 import net.runelite.cache.client.IndexInfo;
-import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Store;
 import net.runelite.cache.updater.beans.CacheEntry;
 import net.runelite.cache.updater.beans.IndexEntry;
@@ -92,45 +88,40 @@ public class CacheUpdater implements CommandLineRunner
 			Store store = new Store(storage);
 			store.load();
 
-			ExecutorService executor = Executors.newSingleThreadExecutor();
+			try (CacheUploader uploader = new CacheUploader(minioClient, minioBucket))
+			{
+				CacheClient client = new CacheClient(store, rsVersion, uploader);
 
-			CacheClient client = new CacheClient(store, rsVersion,
-				(Archive archive, byte[] data) -> executor.submit(new CacheUploader(minioClient, minioBucket, archive, data)));
+				client.connect();
+				HandshakeResponseType result = client.handshake().join();
 
-			client.connect();
-			HandshakeResponseType result = client.handshake().join();
+				if (result != HandshakeResponseType.RESPONSE_OK)
+				{
+					logger.warn("Out of date!");
+					return;
+				}
 
-			if (result != HandshakeResponseType.RESPONSE_OK)
-			{
-				logger.warn("Out of date!");
-				return;
-			}
+				List<IndexInfo> indexes = client.requestIndexes();
+				List<IndexEntry> entries = cacheDao.findIndexesForCache(con, cache);
 
-			List<IndexInfo> indexes = client.requestIndexes();
-			List<IndexEntry> entries = cacheDao.findIndexesForCache(con, cache);
+				if (!checkOutOfDate(indexes, entries))
+				{
+					logger.info("All up to date.");
+					return;
+				}
 
-			if (!checkOutOfDate(indexes, entries))
-			{
-				logger.info("All up to date.");
-				return;
-			}
-
-			client.download();
+				uploader.addKnownHashes(cacheDao.findArchiveHashes(con));
 
-			CacheEntry newCache = created ? cache : cacheDao.createCache(con, rsVersion, Instant.now());
+				client.download();
 
-			storage.setCacheEntry(newCache);
-			store.save();
+				CacheEntry newCache = created ? cache : cacheDao.createCache(con, rsVersion, Instant.now());
 
-			// ensure objects are added to the store before they become
-			// visible in the database
-			executor.shutdown();
-			while (!executor.awaitTermination(1, TimeUnit.SECONDS))
-			{
-				logger.debug("Waiting for termination of executor...");
+				storage.setCacheEntry(newCache);
+				store.save();
 			}
 
-			// commit database
+			// closing the uploader waits for the uploads, so objects are added
+			// to the store before they become visible in the database
 			con.commit();
 		}
 	}
@@ -24,73 +24,172 @@
  */
 package net.runelite.cache.updater;
 
+import com.google.common.hash.HashCode;
 import com.google.common.hash.Hashing;
 import com.google.common.io.BaseEncoding;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import io.minio.MinioClient;
-import io.minio.errors.ErrorResponseException;
-import io.minio.errors.InsufficientDataException;
-import io.minio.errors.InternalException;
-import io.minio.errors.InvalidArgumentException;
-import io.minio.errors.InvalidBucketNameException;
-import io.minio.errors.NoResponseException;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.runelite.cache.client.DownloadWatcher;
 import net.runelite.cache.fs.Archive;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.xmlpull.v1.XmlPullParserException;
 
-public class CacheUploader implements Runnable
+/**
+ * Uploads downloaded archives to the object store, keyed by the sha256 of
+ * their data. Data whose hash is already known to be stored is skipped
+ * without a request, and uploads run on a bounded pool which blocks the
+ * downloader once too many are pending. Failed uploads are retried a few
+ * times before being given up on.
+ */
+public class CacheUploader implements DownloadWatcher, AutoCloseable
 {
 	private static final Logger logger = LoggerFactory.getLogger(CacheUploader.class);
 
-	private final MinioClient minioClient;
-	private final String minioBucket;
-	private final Archive archive;
-	private final byte[] data;
+	private static final int UPLOAD_THREADS = 8;
+	private static final int MAX_PENDING = 64; // uploads queued or in progress
+	static final int MAX_ATTEMPTS = 3;
+
+	private final ObjectStore store;
+	private final int maxPending;
+
+	private final Set<HashCode> known = ConcurrentHashMap.newKeySet();
+	private final Semaphore pending;
+	private final ExecutorService executor;
+
+	private final AtomicInteger uploaded = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+
+	public CacheUploader(MinioClient minioClient, String minioBucket)
+	{
+		this(new MinioObjectStore(minioClient, minioBucket), UPLOAD_THREADS, MAX_PENDING);
+	}
+
+	CacheUploader(ObjectStore store, int threads, int maxPending)
+	{
+		this.store = store;
+		this.maxPending = maxPending;
+		this.pending = new Semaphore(maxPending);
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder()
+			.setNameFormat("cache-uploader-%d")
+			.setDaemon(true)
+			.build());
+	}
 
-	public CacheUploader(MinioClient minioClient, String minioBucket, Archive archive, byte[] data)
+	/**
+	 * Mark data as already being in the object store
+	 *
+	 * @param hashes sha256 hashes of the data
+	 */
+	public void addKnownHashes(Iterable<byte[]> hashes)
 	{
-		this.minioClient = minioClient;
-		this.minioBucket = minioBucket;
-		this.archive = archive;
-		this.data = data;
+		for (byte[] hash : hashes)
+		{
+			known.add(HashCode.fromBytes(hash));
+		}
 	}
 
 	@Override
-	public void run()
+	public void downloadComplete(Archive archive, byte[] data)
 	{
-		byte[] hash = Hashing.sha256().hashBytes(data).asBytes();
-		String hashStr = BaseEncoding.base16().encode(hash);
+		HashCode hash = Hashing.sha256().hashBytes(data);
+		archive.setHash(hash.asBytes());
 
-		archive.setHash(hash);
+		if (!known.add(hash))
+		{
+			return; // already stored, or being uploaded
+		}
 
-		String path = new StringBuilder()
-			.append(hashStr.substring(0, 2))
-			.append('/')
-			.append(hashStr.substring(2))
-			.toString();
+		pending.acquireUninterruptibly();
+
+		try
+		{
+			executor.execute(() -> upload(hash, data, 1));
+		}
+		catch (RejectedExecutionException ex)
+		{
+			pending.release();
+			known.remove(hash);
+			throw ex;
+		}
+	}
+
+	/**
+	 * Upload data to the store. The pending permit is held until the
+	 * upload either succeeds or runs out of attempts.
+	 */
+	private void upload(HashCode hash, byte[] data, int attempt)
+	{
+		String path = getPath(hash);
 
 		try
 		{
-			try (InputStream in = minioClient.getObject(minioBucket, path))
+			if (!store.exists(path))
 			{
-				return; // already exists
+				store.put(path, data);
+				uploaded.incrementAndGet();
 			}
-			catch (ErrorResponseException ex)
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			if (attempt < MAX_ATTEMPTS)
 			{
-				// doesn't exist
+				logger.debug("unable to upload {}, attempt {}/{}", path, attempt, MAX_ATTEMPTS, ex);
+
+				try
+				{
+					executor.execute(() -> upload(hash, data, attempt + 1));
+					return;
+				}
+				catch (RejectedExecutionException ex2)
+				{
+					// executor is shut down, give up
+				}
 			}
 
-			minioClient.putObject(minioBucket, path, new ByteArrayInputStream(data), data.length, "binary/octet-stream");
+			logger.warn("unable to upload {} to store", path, ex);
+			known.remove(hash);
+			failed.incrementAndGet();
 		}
-		catch (ErrorResponseException | InsufficientDataException | InternalException | InvalidArgumentException | InvalidBucketNameException | NoResponseException | IOException | InvalidKeyException | NoSuchAlgorithmException | XmlPullParserException ex)
+
+		pending.release();
+	}
+
+	static String getPath(HashCode hash)
+	{
+		String hashStr = BaseEncoding.base16().encode(hash.asBytes());
+
+		return new StringBuilder()
+			.append(hashStr.substring(0, 2))
+			.append('/')
+			.append(hashStr.substring(2))
+			.toString();
+	}
+
+	/**
+	 * Wait for all pending uploads, including retries, to finish
+	 *
+	 * @throws InterruptedException
+	 */
+	@Override
+	public void close() throws InterruptedException
+	{
+		pending.acquire(maxPending);
+
+		executor.shutdown();
+		while (!executor.awaitTermination(1, TimeUnit.SECONDS))
 		{
-			logger.warn("unable to upload data to store", ex);
+			logger.debug("Waiting for termination of executor...");
 		}
-	}
 
+		logger.info("Uploaded {} objects, {} failed", uploaded.get(), failed.get());
+	}
 }
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.updater;
+
+import com.google.common.collect.ConcurrentHashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheUploaderTest
+{
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private FileObjectStore store;
+
+	@Before
+	public void before() throws IOException
+	{
+		store = new FileObjectStore(folder.newFolder());
+	}
+
+	@Test
+	public void testDedup() throws Exception
+	{
+		byte[] data1 = "data 1".getBytes();
+		byte[] data2 = "data 2".getBytes();
+		byte[] data3 = "data 3".getBytes();
+
+		Index index = new Index(0);
+		Archive a1 = new Archive(index, 1);
+		Archive a2 = new Archive(index, 2);
+		Archive a3 = new Archive(index, 3);
+		Archive a4 = new Archive(index, 4);
+
+		try (CacheUploader uploader = new CacheUploader(store, 2, 4))
+		{
+			uploader.addKnownHashes(Collections.singletonList(sha256(data3).asBytes()));
+
+			uploader.downloadComplete(a1, data1);
+			uploader.downloadComplete(a2, data1);
+			uploader.downloadComplete(a3, data2);
+			uploader.downloadComplete(a4, data3);
+		}
+
+		assertArrayEquals(sha256(data1).asBytes(), a1.getHash());
+		assertArrayEquals(sha256(data1).asBytes(), a2.getHash());
+		assertArrayEquals(sha256(data2).asBytes(), a3.getHash());
+		assertArrayEquals(sha256(data3).asBytes(), a4.getHash());
+
+		assertEquals(2, store.puts.size());
+		assertArrayEquals(data1, store.get(path(data1)));
+		assertArrayEquals(data2, store.get(path(data2)));
+
+		// known hashes are never looked up
+		assertEquals(0, store.exists.count(path(data3)));
+		assertEquals(0, store.puts.count(path(data3)));
+		assertFalse(store.contains(path(data3)));
+	}
+
+	@Test
+	public void testExisting() throws Exception
+	{
+		byte[] data = "data".getBytes();
+		store.put(path(data), data);
+		store.puts.clear();
+
+		try (CacheUploader uploader = new CacheUploader(store, 1, 1))
+		{
+			uploader.downloadComplete(new Archive(new Index(0), 0), data);
+		}
+
+		assertEquals(1, store.exists.count(path(data)));
+		assertEquals(0, store.puts.size());
+	}
+
+	@Test
+	public void testRequeue() throws Exception
+	{
+		byte[] flaky = "flaky".getBytes();
+		byte[] broken = "broken".getBytes();
+
+		store.failures.add(path(flaky), CacheUploader.MAX_ATTEMPTS - 1);
+		store.failures.add(path(broken), Integer.MAX_VALUE / 2);
+
+		Archive a1 = new Archive(new Index(0), 1);
+		Archive a2 = new Archive(new Index(0), 2);
+		Archive a3 = new Archive(new Index(0), 3);
+
+		try (CacheUploader uploader = new CacheUploader(store, 2, 4))
+		{
+			uploader.downloadComplete(a1, flaky);
+			uploader.downloadComplete(a2, broken);
+		}
+
+		assertEquals(CacheUploader.MAX_ATTEMPTS, store.puts.count(path(flaky)));
+		assertArrayEquals(flaky, store.get(path(flaky)));
+
+		assertEquals(CacheUploader.MAX_ATTEMPTS, store.puts.count(path(broken)));
+		assertFalse(store.contains(path(broken)));
+
+		// a failed hash is forgotten, so seeing the data again retries it
+		store.failures.setCount(path(broken), 0);
+
+		try (CacheUploader uploader = new CacheUploader(store, 1, 1))
+		{
+			uploader.downloadComplete(a2, broken);
+			uploader.downloadComplete(a3, broken);
+		}
+
+		assertEquals(CacheUploader.MAX_ATTEMPTS + 1, store.puts.count(path(broken)));
+		assertArrayEquals(broken, store.get(path(broken)));
+	}
+
+	@Test
+	public void testBackpressure() throws Exception
+	{
+		CountDownLatch release = new CountDownLatch(1);
+		store.block = release;
+
+		CacheUploader uploader = new CacheUploader(store, 1, 2);
+
+		// fills both permits, one running and one queued
+		uploader.downloadComplete(new Archive(new Index(0), 1), "data 1".getBytes());
+		uploader.downloadComplete(new Archive(new Index(0), 2), "data 2".getBytes());
+
+		CountDownLatch done = new CountDownLatch(1);
+		Thread downloader = new Thread(() ->
+		{
+			uploader.downloadComplete(new Archive(new Index(0), 3), "data 3".getBytes());
+			done.countDown();
+		});
+		downloader.start();
+
+		assertFalse("downloader was not blocked", done.await(200, TimeUnit.MILLISECONDS));
+		assertTrue(store.puts.size() <= 1);
+
+		release.countDown();
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		downloader.join();
+
+		uploader.close();
+
+		assertEquals(3, store.puts.size());
+		assertTrue(store.contains(path("data 1".getBytes())));
+		assertTrue(store.contains(path("data 2".getBytes())));
+		assertTrue(store.contains(path("data 3".getBytes())));
+	}
+
+	private static HashCode sha256(byte[] data)
+	{
+		return Hashing.sha256().hashBytes(data);
+	}
+
+	private static String path(byte[] data)
+	{
+		return CacheUploader.getPath(sha256(data));
+	}
+
+	/**
+	 * Object store backed by a directory, which counts requests and can be
+	 * made to fail or block puts
+	 */
+	private static class FileObjectStore implements ObjectStore
+	{
+		private final File directory;
+
+		final Multiset<String> exists = ConcurrentHashMultiset.create();
+		final Multiset<String> puts = ConcurrentHashMultiset.create();
+		final Multiset<String> failures = ConcurrentHashMultiset.create();
+		volatile CountDownLatch block;
+
+		FileObjectStore(File directory)
+		{
+			this.directory = directory;
+		}
+
+		@Override
+		public boolean exists(String path) throws IOException
+		{
+			exists.add(path);
+			return contains(path);
+		}
+
+		@Override
+		public void put(String path, byte[] data) throws IOException
+		{
+			puts.add(path);
+
+			CountDownLatch latch = block;
+			if (latch != null)
+			{
+				try
+				{
+					latch.await();
+				}
+				catch (InterruptedException ex)
+				{
+					throw new IOException(ex);
+				}
+			}
+
+			if (failures.remove(path))
+			{
+				throw new IOException("failed to put " + path);
+			}
+
+			File file = new File(directory, path);
+			file.getParentFile().mkdirs();
+			Files.write(file.toPath(), data);
+		}
+
+		boolean contains(String path)
+		{
+			return new File(directory, path).exists();
+		}
+
+		byte[] get(String path) throws IOException
+		{
+			return Files.readAllBytes(new File(directory, path).toPath());
+		}
+	}
+}
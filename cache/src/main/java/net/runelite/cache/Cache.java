@@ -24,9 +24,15 @@
  */
 package net.runelite.cache;
 
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import javax.imageio.ImageIO;
+import net.runelite.cache.definitions.providers.DefinitionCache;
 import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.DiskStorage;
+import net.runelite.cache.fs.jagex.MappedDiskStorage;
+import net.runelite.cache.item.ItemSpriteFactory;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.DefaultParser;
@@ -41,10 +47,14 @@ public class Cache
 
 		options.addOption("c", "cache", true, "cache base");
 
+		options.addOption(null, "compact", false, "compact the cache data file");
+
 		options.addOption(null, "items", true, "directory to dump items to");
 		options.addOption(null, "npcs", true, "directory to dump npcs to");
 		options.addOption(null, "objects", true, "directory to dump objects to");
 		options.addOption(null, "sprites", true, "directory to dump sprites to");
+		options.addOption(null, "icons", true, "directory to dump item icons to");
+		options.addOption(null, "ids", true, "comma separated ids of the items to dump icons of");
 
 		CommandLineParser parser = new DefaultParser();
 		CommandLine cmd;
@@ -61,6 +71,13 @@ public class Cache
 
 		String cache = cmd.getOptionValue("cache");
 
+		if (cmd.hasOption("compact"))
+		{
+			System.out.println("Compacting " + cache);
+			compact(new File(cache));
+			return;
+		}
+
 		Store store = loadStore(cache);
 
 		if (cmd.hasOption("items"))
@@ -115,6 +132,20 @@ public class Cache
 			System.out.println("Dumping sprites to " + spritedir);
 			dumpSprites(store, new File(spritedir));
 		}
+		else if (cmd.hasOption("icons"))
+		{
+			String icondir = cmd.getOptionValue("icons");
+			String ids = cmd.getOptionValue("ids");
+
+			if (icondir == null || ids == null)
+			{
+				System.err.println("Icon directory and item ids must be specified");
+				return;
+			}
+
+			System.out.println("Dumping item icons to " + icondir);
+			dumpIcons(store, new File(icondir), ids);
+		}
 		else
 		{
 			System.err.println("Nothing to do");
@@ -123,11 +154,20 @@ public class Cache
 
 	private static Store loadStore(String cache) throws IOException
 	{
-		Store store = new Store(new File(cache));
+		Store store = new Store(new MappedDiskStorage(new File(cache)));
 		store.load();
 		return store;
 	}
 
+	private static void compact(File cache) throws IOException
+	{
+		DiskStorage storage = new DiskStorage(cache);
+		try (Store store = new Store(storage))
+		{
+			storage.compact();
+		}
+	}
+
 	private static void dumpItems(Store store, File itemdir) throws IOException
 	{
 		ItemManager dumper = new ItemManager(store);
@@ -158,4 +198,24 @@ public class Cache
 		dumper.load();
 		dumper.export(spritedir);
 	}
+
+	private static void dumpIcons(Store store, File icondir, String ids) throws IOException
+	{
+		icondir.mkdirs();
+
+		// only the definitions the requested items need are decoded
+		DefinitionCache cache = new DefinitionCache(store);
+		for (String id : ids.split(","))
+		{
+			int itemId = Integer.parseInt(id.trim());
+			BufferedImage image = ItemSpriteFactory.createSprite(cache, itemId, 1, 1, 3153952, false);
+			if (image == null)
+			{
+				System.err.println("Item " + itemId + " has no model");
+				continue;
+			}
+
+			ImageIO.write(image, "PNG", new File(icondir, itemId + ".png"));
+		}
+	}
 }
@@ -27,10 +27,21 @@ package net.runelite.cache;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Image;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+import javax.imageio.ImageIO;
 import lombok.Getter;
 import lombok.Setter;
 import net.runelite.cache.definitions.AreaDefinition;
@@ -65,6 +76,18 @@ public class MapImageDumper
 	private static final int MAPICON_MAX_HEIGHT = 6;
 	private static final int BLEND = 5; // number of surrounding tiles for ground blending
 
+	/**
+	 * Size of the tiles written by {@link #drawTiles(int, File, int, ForkJoinPool)}.
+	 * At this map scale one region covers exactly one tile.
+	 */
+	public static final int TILE_SIZE = Region.X * MAP_SCALE;
+
+	/**
+	 * Zoom level at which there is one tile per region. Region x and y
+	 * are 8 bits, so the whole world fits a 256x256 tile grid.
+	 */
+	public static final int MAX_ZOOM = 8;
+
 	private static int[] colorPalette = new ColorPalette(0.9d, 0, 512).getColorPalette();
 
 	private static int[][] TILE_SHAPE_2D = new int[][]{{0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0}, {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}, {1, 0, 0, 0, 1, 1, 0, 0, 1, 1, 1, 0, 1, 1, 1, 1}, {1, 1, 0, 0, 1, 1, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0}, {0, 0, 1, 1, 0, 0, 1, 1, 0, 0, 0, 1, 0, 0, 0, 1}, {0, 1, 1, 1, 0, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1}, {1, 1, 1, 0, 1, 1, 1, 0, 1, 1, 1, 1, 1, 1, 1, 1}, {1, 1, 0, 0, 1, 1, 0, 0, 1, 1, 0, 0, 1, 1, 0, 0}, {0, 0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 1, 1, 0, 0}, {1, 1, 1, 1, 1, 1, 1, 1, 0, 1, 1, 1, 0, 0, 1, 1}, {1, 1, 1, 1, 1, 1, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0}, {0, 0, 0, 0, 0, 0, 1, 1, 0, 1, 1, 1, 0, 1, 1, 1}, {0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 0, 1, 1, 1, 1}};
@@ -158,6 +181,174 @@ public class MapImageDumper
 		return image;
 	}
 
+	/**
+	 * Render plane z as {@link #TILE_SIZE} square png tiles, in a slippy map
+	 * zoom/x/y.png layout under outDir. Tiles at {@link #MAX_ZOOM} are
+	 * rendered one region at a time on the given pool and written out
+	 * straight away, and each lower zoom level down to minZoom is then built
+	 * from the four tiles beneath it on disk. Only one tile per worker
+	 * thread is ever held in memory, regardless of the size of the map.
+	 *
+	 * @param z plane to render
+	 * @param outDir directory to write the tiles to
+	 * @param minZoom lowest zoom level to generate
+	 * @param pool pool to render on
+	 * @throws IOException if a tile can not be written
+	 */
+	public void drawTiles(int z, File outDir, int minZoom, ForkJoinPool pool) throws IOException
+	{
+		drawTiles(regionLoader.getRegions(), region -> drawRegionTile(region, z), outDir, minZoom, pool);
+	}
+
+	/**
+	 * Write the tile pyramid for the given regions, with each region's
+	 * {@link #MAX_ZOOM} tile drawn by renderer
+	 */
+	static void drawTiles(Collection<Region> regions, Function<Region, BufferedImage> renderer, File outDir, int minZoom, ForkJoinPool pool) throws IOException
+	{
+		Set<Integer> regionTiles = ConcurrentHashMap.newKeySet();
+		List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+		for (Region region : regions)
+		{
+			int x = region.getRegionX();
+			int y = (1 << MAX_ZOOM) - 1 - region.getRegionY();
+
+			tasks.add(pool.submit(() ->
+			{
+				BufferedImage image = renderer.apply(region);
+				writeTile(outDir, MAX_ZOOM, x, y, image);
+				regionTiles.add(x << 16 | y);
+				return null;
+			}));
+		}
+
+		join(tasks);
+		logger.info("Wrote {} tiles at zoom level {}", regionTiles.size(), MAX_ZOOM);
+
+		Set<Integer> tiles = regionTiles;
+
+		for (int zoom = MAX_ZOOM - 1; zoom >= minZoom; --zoom)
+		{
+			Set<Integer> parents = ConcurrentHashMap.newKeySet();
+			for (int tile : tiles)
+			{
+				parents.add((tile >>> 17) << 16 | (tile & 0xFFFF) >> 1);
+			}
+
+			final Set<Integer> children = tiles;
+			final int childZoom = zoom + 1;
+			final int parentZoom = zoom;
+
+			tasks.clear();
+			for (int tile : parents)
+			{
+				int x = tile >>> 16;
+				int y = tile & 0xFFFF;
+
+				tasks.add(pool.submit(() ->
+				{
+					BufferedImage image = scaleTiles(outDir, childZoom, x << 1, y << 1, children);
+					writeTile(outDir, parentZoom, x, y, image);
+					return null;
+				}));
+			}
+
+			join(tasks);
+			logger.info("Wrote {} tiles at zoom level {}", parents.size(), zoom);
+
+			tiles = parents;
+		}
+	}
+
+	private BufferedImage drawRegionTile(Region region, int z)
+	{
+		BufferedImage image = drawRegion(region, z);
+
+		// icons are drawn from their top left corner, so the regions to the
+		// west and north of this one can have icons overlapping into it
+		Graphics2D graphics = image.createGraphics();
+		for (int dx = -1; dx <= 0; ++dx)
+		{
+			for (int dy = 0; dy <= 1; ++dy)
+			{
+				if (dx == 0 && dy == 0)
+				{
+					continue;
+				}
+
+				Region neighbour = regionLoader.findRegionForWorldCoordinates(region.getBaseX() + dx * Region.X, region.getBaseY() + dy * Region.Y);
+				if (neighbour != null)
+				{
+					drawMapIcons(graphics, neighbour, z, dx * Region.X, -dy * Region.Y);
+				}
+			}
+		}
+		graphics.dispose();
+
+		return image;
+	}
+
+	private static BufferedImage scaleTiles(File outDir, int zoom, int x, int y, Set<Integer> tiles) throws IOException
+	{
+		BufferedImage image = new BufferedImage(TILE_SIZE, TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+		int half = TILE_SIZE / 2;
+		for (int i = 0; i < 2; ++i)
+		{
+			for (int j = 0; j < 2; ++j)
+			{
+				if (!tiles.contains((x + i) << 16 | (y + j)))
+				{
+					continue;
+				}
+
+				BufferedImage child = ImageIO.read(tileFile(outDir, zoom, x + i, y + j));
+				graphics.drawImage(child, i * half, j * half, half, half, null);
+			}
+		}
+
+		graphics.dispose();
+		return image;
+	}
+
+	private static void writeTile(File outDir, int zoom, int x, int y, BufferedImage image) throws IOException
+	{
+		File file = tileFile(outDir, zoom, x, y);
+		file.getParentFile().mkdirs();
+		ImageIO.write(image, "png", file);
+	}
+
+	private static File tileFile(File outDir, int zoom, int x, int y)
+	{
+		return new File(outDir, zoom + File.separator + x + File.separator + y + ".png");
+	}
+
+	private static void join(List<ForkJoinTask<?>> tasks) throws IOException
+	{
+		for (ForkJoinTask<?> task : tasks)
+		{
+			try
+			{
+				task.join();
+			}
+			catch (RuntimeException ex)
+			{
+				// checked exceptions from the tasks come back wrapped
+				for (Throwable cause = ex.getCause(); cause != null; cause = cause.getCause())
+				{
+					if (cause instanceof IOException)
+					{
+						throw (IOException) cause;
+					}
+				}
+				throw ex;
+			}
+		}
+	}
+
 	private void drawMap(BufferedImage image, int drawBaseX, int drawBaseY, int z, Region region)
 	{
 		int[][] map = new int[Region.X * MAP_SCALE][Region.Y * MAP_SCALE];
@@ -974,8 +1165,13 @@ public class MapImageDumper
 					BufferedImage spriteImage = new BufferedImage(sprite.getWidth(), sprite.getHeight(), BufferedImage.TYPE_INT_ARGB);
 					spriteImage.setRGB(0, 0, sprite.getWidth(), sprite.getHeight(), sprite.getPixels(), 0, sprite.getWidth());
 
-					// scale image down so it fits
-					Image scaledImage = spriteImage.getScaledInstance(MAPICON_MAX_WIDTH, MAPICON_MAX_HEIGHT, 0);
+					// scale image down so it fits. Draw it into a buffered image up front
+					// so it can be shared between threads rendering tiles
+					Image scaledInstance = spriteImage.getScaledInstance(MAPICON_MAX_WIDTH, MAPICON_MAX_HEIGHT, 0);
+					BufferedImage scaledImage = new BufferedImage(MAPICON_MAX_WIDTH, MAPICON_MAX_HEIGHT, BufferedImage.TYPE_INT_ARGB);
+					Graphics2D graphics = scaledImage.createGraphics();
+					graphics.drawImage(scaledInstance, 0, 0, null);
+					graphics.dispose();
 
 					assert scaledMapIcons.containsKey(sprite.getFrame()) == false;
 					scaledMapIcons.put(sprite.getFrame(), scaledImage);
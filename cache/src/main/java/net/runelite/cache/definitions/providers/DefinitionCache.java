@@ -0,0 +1,216 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.definitions.providers;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+
+/**
+ * A size bounded cache of decompressed archives from a store, shared
+ * between the lazy providers. Only raw data is cached, the providers decode
+ * a new definition on each call as callers modify the definitions they are
+ * given. Entries are weighed by their size in bytes, and the least recently
+ * used entries are evicted once the total weight goes over the limit.
+ */
+public class DefinitionCache
+{
+	public static final long DEFAULT_MAX_WEIGHT = 64L * 1024 * 1024;
+
+	private static final Object ARCHIVE = new Object();
+	private static final Object ARCHIVE_FILES = new Object();
+
+	private final Store store;
+	private final Cache<Key, Weighted> cache;
+
+	public DefinitionCache(Store store)
+	{
+		this(store, DEFAULT_MAX_WEIGHT);
+	}
+
+	public DefinitionCache(Store store, long maxWeight)
+	{
+		this.store = store;
+		this.cache = CacheBuilder.newBuilder()
+			.maximumWeight(maxWeight)
+			.weigher((Key k, Weighted v) -> v.weight)
+			.build();
+	}
+
+	/**
+	 * Get the decompressed contents of an archive. The returned array is
+	 * shared and must not be modified.
+	 *
+	 * @param indexType index the archive is in
+	 * @param archiveId archive id
+	 * @return the archive contents, or null if there is no such archive
+	 * @throws IOException
+	 */
+	public byte[] getArchive(IndexType indexType, int archiveId) throws IOException
+	{
+		return get(ARCHIVE, indexType.getNumber(), archiveId, () ->
+		{
+			byte[] data = loadArchive(indexType, archiveId);
+			return new Weighted(data, data == null ? 0 : data.length);
+		});
+	}
+
+	/**
+	 * Get the contents of a file in an archive. The returned array is
+	 * shared and must not be modified.
+	 *
+	 * @param indexType index the archive is in
+	 * @param archiveId archive id
+	 * @param fileId file id
+	 * @return the file contents, or null if there is no such file
+	 * @throws IOException
+	 */
+	public byte[] getFile(IndexType indexType, int archiveId, int fileId) throws IOException
+	{
+		ArchiveFiles files = getArchiveFiles(indexType, archiveId);
+		FSFile file = files == null ? null : files.findFile(fileId);
+		return file == null ? null : file.getContents();
+	}
+
+	/**
+	 * Get the files of an archive, split out of its decompressed contents.
+	 * The returned files are shared and must not be modified.
+	 *
+	 * @param indexType index the archive is in
+	 * @param archiveId archive id
+	 * @return the archive files, or null if there is no such archive
+	 * @throws IOException
+	 */
+	public ArchiveFiles getArchiveFiles(IndexType indexType, int archiveId) throws IOException
+	{
+		return get(ARCHIVE_FILES, indexType.getNumber(), archiveId, () ->
+		{
+			byte[] data = loadArchive(indexType, archiveId);
+			if (data == null)
+			{
+				return new Weighted(null, 0);
+			}
+
+			// not cached as an archive too, the files hold a copy of the contents
+			Archive archive = store.getIndex(indexType).getArchive(archiveId);
+			return new Weighted(archive.loadFiles(data), data.length);
+		});
+	}
+
+	private byte[] loadArchive(IndexType indexType, int archiveId) throws IOException
+	{
+		Index index = store.getIndex(indexType);
+		Archive archive = index == null ? null : index.getArchive(archiveId);
+		if (archive == null)
+		{
+			return null;
+		}
+
+		return store.getStorage().loadArchiveContents(archive, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T get(Object type, int indexId, int archiveId, Callable<Weighted> loader) throws IOException
+	{
+		try
+		{
+			return (T) cache.get(new Key(type, indexId, archiveId), loader).value;
+		}
+		catch (ExecutionException | UncheckedExecutionException ex)
+		{
+			if (ex.getCause() instanceof IOException)
+			{
+				throw (IOException) ex.getCause();
+			}
+			throw new IOException(ex.getCause());
+		}
+	}
+
+	public void invalidateAll()
+	{
+		cache.invalidateAll();
+	}
+
+	public long size()
+	{
+		return cache.size();
+	}
+
+	/**
+	 * A cached value and its weight
+	 */
+	private static class Weighted
+	{
+		private final Object value;
+		private final int weight;
+
+		private Weighted(Object value, int weight)
+		{
+			this.value = value;
+			this.weight = weight;
+		}
+	}
+
+	private static class Key
+	{
+		private final Object type;
+		private final int indexId;
+		private final int archiveId;
+
+		private Key(Object type, int indexId, int archiveId)
+		{
+			this.type = type;
+			this.indexId = indexId;
+			this.archiveId = archiveId;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (type.hashCode() * 31 + indexId) * 31 + archiveId;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof Key))
+			{
+				return false;
+			}
+
+			Key other = (Key) obj;
+			return type.equals(other.type) && indexId == other.indexId && archiveId == other.archiveId;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.definitions.providers;
+
+import java.io.IOException;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.SpriteDefinition;
+import net.runelite.cache.definitions.loaders.SpriteLoader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Sprite provider which decodes sprite archives as they are requested,
+ * instead of loading every sprite up front. The sprites are decoded again
+ * on each call since they are normalized in place by the renderer.
+ */
+public class LazySpriteProvider implements SpriteProvider
+{
+	private static final Logger logger = LoggerFactory.getLogger(LazySpriteProvider.class);
+
+	private final DefinitionCache cache;
+
+	public LazySpriteProvider(DefinitionCache cache)
+	{
+		this.cache = cache;
+	}
+
+	@Override
+	public SpriteDefinition provide(int spriteId, int frameId)
+	{
+		byte[] data;
+		try
+		{
+			data = cache.getArchive(IndexType.SPRITES, spriteId);
+		}
+		catch (IOException ex)
+		{
+			logger.warn("unable to load sprite {}", spriteId, ex);
+			return null;
+		}
+
+		if (data == null)
+		{
+			return null;
+		}
+
+		for (SpriteDefinition sprite : new SpriteLoader().load(spriteId, data))
+		{
+			if (sprite.getFrame() == frameId)
+			{
+				return sprite;
+			}
+		}
+		return null;
+	}
+}
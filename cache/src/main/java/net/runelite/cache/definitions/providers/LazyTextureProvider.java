@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.definitions.providers;
+
+import java.io.IOException;
+import java.util.List;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.TextureDefinition;
+import net.runelite.cache.definitions.loaders.TextureLoader;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Texture provider which loads the texture archive the first time it is
+ * needed. The textures are decoded again on each call since the renderer
+ * builds their pixels in place.
+ */
+public class LazyTextureProvider implements TextureProvider
+{
+	private static final Logger logger = LoggerFactory.getLogger(LazyTextureProvider.class);
+
+	private final DefinitionCache cache;
+
+	public LazyTextureProvider(DefinitionCache cache)
+	{
+		this.cache = cache;
+	}
+
+	@Override
+	public TextureDefinition[] provide()
+	{
+		ArchiveFiles files;
+		try
+		{
+			files = cache.getArchiveFiles(IndexType.TEXTURES, 0);
+		}
+		catch (IOException ex)
+		{
+			logger.warn("unable to load textures", ex);
+			return null;
+		}
+
+		if (files == null)
+		{
+			return null;
+		}
+
+		TextureLoader loader = new TextureLoader();
+		List<FSFile> fileList = files.getFiles();
+		TextureDefinition[] textures = new TextureDefinition[fileList.size()];
+		for (int i = 0; i < textures.length; ++i)
+		{
+			FSFile file = fileList.get(i);
+			textures[i] = loader.load(file.getFileId(), file.getContents());
+		}
+		return textures;
+	}
+}
@@ -25,7 +25,9 @@
 package net.runelite.cache.fs;
 
 import java.io.IOException;
+import java.io.InputStream;
 import net.runelite.cache.index.FileData;
+import net.runelite.cache.util.Xtea;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,6 +44,7 @@ public class Archive
 	private int compression;
 	private FileData[] fileData;
 	private byte[] hash; // used by webservice, sha256 hash of content
+	private boolean dirty = true; // index data for this archive changed since it was loaded or saved
 
 	public Archive(Index index, int id)
 	{
@@ -106,6 +109,26 @@ public class Archive
 		byte[] encryptedData = data;
 
 		Container container = Container.decompress(encryptedData, keys);
+		return checkContainer(container);
+	}
+
+	/**
+	 * Decompress archive data as it is read from a stream
+	 *
+	 * @param in compressed archive data
+	 * @param length length of the compressed archive data
+	 * @param xtea cipher to decrypt with, or null
+	 * @return
+	 * @throws IOException
+	 */
+	public byte[] decompress(InputStream in, int length, Xtea xtea) throws IOException
+	{
+		Container container = Container.decompress(in, length, xtea);
+		return checkContainer(container);
+	}
+
+	private byte[] checkContainer(Container container) throws IOException
+	{
 		if (container == null)
 		{
 			logger.warn("Unable to decrypt archive {}", this);
@@ -145,7 +168,17 @@ public class Archive
 	public ArchiveFiles getFiles(byte[] data, int[] keys) throws IOException
 	{
 		byte[] decompressedData = decompress(data, keys);
+		return loadFiles(decompressedData);
+	}
 
+	/**
+	 * Split decompressed archive data into its files
+	 *
+	 * @param decompressedData decompressed archive data
+	 * @return
+	 */
+	public ArchiveFiles loadFiles(byte[] decompressedData)
+	{
 		ArchiveFiles files = new ArchiveFiles();
 		for (FileData fileEntry : fileData)
 		{
@@ -169,7 +202,12 @@ public class Archive
 
 	public void setNameHash(int nameHash)
 	{
-		this.nameHash = nameHash;
+		if (this.nameHash != nameHash)
+		{
+			this.nameHash = nameHash;
+			index.archiveNameChanged();
+			dirty = true;
+		}
 	}
 
 	public int getCrc()
@@ -179,7 +217,11 @@ public class Archive
 
 	public void setCrc(int crc)
 	{
-		this.crc = crc;
+		if (this.crc != crc)
+		{
+			this.crc = crc;
+			dirty = true;
+		}
 	}
 
 	public int getRevision()
@@ -189,7 +231,11 @@ public class Archive
 
 	public void setRevision(int revision)
 	{
-		this.revision = revision;
+		if (this.revision != revision)
+		{
+			this.revision = revision;
+			dirty = true;
+		}
 	}
 
 	public int getCompression()
@@ -210,6 +256,17 @@ public class Archive
 	public void setFileData(FileData[] fileData)
 	{
 		this.fileData = fileData;
+		dirty = true;
+	}
+
+	public boolean isDirty()
+	{
+		return dirty;
+	}
+
+	public void setDirty(boolean dirty)
+	{
+		this.dirty = dirty;
 	}
 
 	public byte[] getHash()
@@ -25,15 +25,18 @@
 package net.runelite.cache.fs;
 
 import static com.google.common.primitives.Bytes.concat;
+import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Ints;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
 import net.runelite.cache.fs.jagex.CompressionType;
-import net.runelite.cache.io.InputStream;
 import net.runelite.cache.io.OutputStream;
-import net.runelite.cache.util.BZip2;
-import net.runelite.cache.util.Crc32;
-import net.runelite.cache.util.GZip;
 import net.runelite.cache.util.Xtea;
+import net.runelite.cache.util.XteaInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,11 +68,8 @@ public class Container
 				length = compressedData.length;
 				break;
 			case CompressionType.BZ2:
-				compressedData = concat(Ints.toByteArray(data.length), BZip2.compress(data));
-				length = compressedData.length - 4;
-				break;
 			case CompressionType.GZ:
-				compressedData = concat(Ints.toByteArray(data.length), GZip.compress(data));
+				compressedData = concat(Ints.toByteArray(data.length), CompressionType.getCodec(compression).compress(data));
 				length = compressedData.length - 4;
 				break;
 			default:
@@ -92,7 +92,24 @@ public class Container
 
 	public static Container decompress(byte[] b, int[] keys) throws IOException
 	{
-		InputStream stream = new InputStream(b);
+		return decompress(new ByteArrayInputStream(b), b.length, keys != null ? new Xtea(keys) : null);
+	}
+
+	/**
+	 * Decompress a container as it is read from a stream. The data is
+	 * decrypted and decompressed on the fly, so the only sizable allocation
+	 * is the decompressed data itself.
+	 *
+	 * @param in stream positioned at the start of the container
+	 * @param length length of the container, including the revision if present
+	 * @param xtea cipher to decrypt with, or null if the container is not encrypted
+	 * @return
+	 * @throws IOException
+	 */
+	public static Container decompress(InputStream in, int length, Xtea xtea) throws IOException
+	{
+		CRC32 crc32 = new CRC32();
+		DataInputStream stream = new DataInputStream(new CheckedInputStream(in, crc32));
 
 		int compression = stream.readUnsignedByte();
 		int compressedLength = stream.readInt();
@@ -101,106 +118,53 @@ public class Container
 			throw new RuntimeException("Invalid data");
 		}
 
-		Crc32 crc32 = new Crc32();
-		crc32.update(b, 0, 5); // compression + length
+		// the decompressed length of compressed containers is encrypted too
+		int encryptedLength = compression == CompressionType.NONE ? compressedLength : compressedLength + 4;
+		InputStream encryptedStream = ByteStreams.limit(stream, encryptedLength);
+		DataInputStream decryptedStream = new DataInputStream(xtea != null
+			? new XteaInputStream(encryptedStream, xtea)
+			: encryptedStream);
 
 		byte[] data;
-		int revision = -1;
 		switch (compression)
 		{
 			case CompressionType.NONE:
 			{
-				byte[] encryptedData = new byte[compressedLength];
-				stream.readBytes(encryptedData, 0, compressedLength);
-
-				crc32.update(encryptedData, 0, compressedLength);
-				byte[] decryptedData = decrypt(encryptedData, encryptedData.length, keys);
-
-				if (stream.remaining() >= 2)
-				{
-					revision = stream.readUnsignedShort();
-					assert revision != -1;
-				}
-
-				data = decryptedData;
-
+				data = new byte[compressedLength];
+				decryptedStream.readFully(data);
 				break;
 			}
 			case CompressionType.BZ2:
-			{
-				byte[] encryptedData = new byte[compressedLength + 4];
-				stream.readBytes(encryptedData);
-
-				crc32.update(encryptedData, 0, encryptedData.length);
-				byte[] decryptedData = decrypt(encryptedData, encryptedData.length, keys);
-
-				if (stream.remaining() >= 2)
-				{
-					revision = stream.readUnsignedShort();
-					assert revision != -1;
-				}
-
-				stream = new InputStream(decryptedData);
-
-				int decompressedLength = stream.readInt();
-				data = BZip2.decompress(stream.getRemaining(), compressedLength);
-
-				if (data == null)
-				{
-					return null;
-				}
-
-				assert data.length == decompressedLength;
-
-				break;
-			}
 			case CompressionType.GZ:
 			{
-				byte[] encryptedData = new byte[compressedLength + 4];
-				stream.readBytes(encryptedData);
-
-				crc32.update(encryptedData, 0, encryptedData.length);
-				byte[] decryptedData = decrypt(encryptedData, encryptedData.length, keys);
-
-				if (stream.remaining() >= 2)
-				{
-					revision = stream.readUnsignedShort();
-					assert revision != -1;
-				}
-
-				stream = new InputStream(decryptedData);
-
-				int decompressedLength = stream.readInt();
-				data = GZip.decompress(stream.getRemaining(), compressedLength);
-
-				if (data == null)
+				int decompressedLength = decryptedStream.readInt();
+				if (decompressedLength < 0)
 				{
-					return null;
+					throw new IOException("Invalid decompressed length " + decompressedLength);
 				}
 
-				assert data.length == decompressedLength;
-
+				data = CompressionType.getCodec(compression).decompress(decryptedStream, decompressedLength);
 				break;
 			}
 			default:
 				throw new RuntimeException("Unknown decompression type");
 		}
 
-		Container container = new Container(compression, revision);
-		container.data = data;
-		container.crc = crc32.getHash();
-		return container;
-	}
+		// the crc covers all of the compressed data, even if the
+		// decompressor did not need all of it
+		ByteStreams.exhaust(encryptedStream);
 
-	private static byte[] decrypt(byte[] data, int length, int[] keys)
-	{
-		if (keys == null)
+		int revision = -1;
+		if (length - 5 - encryptedLength >= 2)
 		{
-			return data;
+			// the revision is not included in the crc
+			revision = new DataInputStream(in).readUnsignedShort();
 		}
 
-		Xtea xtea = new Xtea(keys);
-		return xtea.decrypt(data, length);
+		Container container = new Container(compression, revision);
+		container.data = data;
+		container.crc = (int) crc32.getValue();
+		return container;
 	}
 
 	private static byte[] encrypt(byte[] data, int length, int[] keys)
@@ -25,7 +25,10 @@
 package net.runelite.cache.fs;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import net.runelite.cache.index.ArchiveData;
 import net.runelite.cache.index.FileData;
@@ -47,6 +50,9 @@ public class Index
 	private int compression; // compression method of this index's data in 255
 
 	private final List<Archive> archives = new ArrayList<>();
+	private final Map<Integer, Archive> archiveMap = new HashMap<>();
+	private volatile Map<Integer, Archive> nameHashMap; // built on first lookup by name
+	private boolean dirty = true; // index data changed since it was loaded or saved
 
 	public Index(int id)
 	{
@@ -102,7 +108,11 @@ public class Index
 
 	public void setProtocol(int protocol)
 	{
-		this.protocol = protocol;
+		if (this.protocol != protocol)
+		{
+			this.protocol = protocol;
+			dirty = true;
+		}
 	}
 
 	public boolean isNamed()
@@ -112,7 +122,11 @@ public class Index
 
 	public void setNamed(boolean named)
 	{
-		this.named = named;
+		if (this.named != named)
+		{
+			this.named = named;
+			dirty = true;
+		}
 	}
 
 	public int getRevision()
@@ -122,7 +136,11 @@ public class Index
 
 	public void setRevision(int revision)
 	{
-		this.revision = revision;
+		if (this.revision != revision)
+		{
+			this.revision = revision;
+			dirty = true;
+		}
 	}
 
 	public int getCrc()
@@ -142,44 +160,107 @@ public class Index
 
 	public void setCompression(int compression)
 	{
-		this.compression = compression;
+		if (this.compression != compression)
+		{
+			this.compression = compression;
+			dirty = true;
+		}
+	}
+
+	/**
+	 * Check if the index data needs to be saved, because the index or any
+	 * of its archives changed since it was loaded or last saved. Changes
+	 * made directly to the {@link FileData} of an archive are not tracked.
+	 *
+	 * @return
+	 */
+	public boolean isDirty()
+	{
+		if (dirty)
+		{
+			return true;
+		}
+
+		for (Archive archive : archives)
+		{
+			if (archive.isDirty())
+			{
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Mark the index data as changed or unchanged. Marking the index
+	 * unchanged also marks all of its archives unchanged.
+	 *
+	 * @param dirty
+	 */
+	public void setDirty(boolean dirty)
+	{
+		this.dirty = dirty;
+
+		if (!dirty)
+		{
+			for (Archive archive : archives)
+			{
+				archive.setDirty(false);
+			}
+		}
 	}
 
 	public List<Archive> getArchives()
 	{
-		return archives;
+		return Collections.unmodifiableList(archives);
 	}
 
 	public Archive addArchive(int id)
 	{
 		Archive archive = new Archive(this, id);
 		this.archives.add(archive);
+		archiveMap.putIfAbsent(id, archive);
+		nameHashMap = null;
+		dirty = true;
 		return archive;
 	}
 
 	public Archive getArchive(int id)
 	{
-		for (Archive a : archives)
-		{
-			if (a.getArchiveId() == id)
-			{
-				return a;
-			}
-		}
-		return null;
+		return archiveMap.get(id);
 	}
 
 	public Archive findArchiveByName(String name)
 	{
 		int hash = Djb2.hash(name);
-		for (Archive a : archives)
+		return findArchiveByNameHash(hash);
+	}
+
+	public Archive findArchiveByNameHash(int nameHash)
+	{
+		// read the field once, archiveNameChanged() may clear it at any time
+		Map<Integer, Archive> map = nameHashMap;
+		if (map == null)
 		{
-			if (a.getNameHash() == hash)
+			map = new HashMap<>(archives.size());
+			for (Archive a : archives)
 			{
-				return a;
+				// first archive with a given name wins, same as a linear scan
+				map.putIfAbsent(a.getNameHash(), a);
 			}
+			nameHashMap = map;
 		}
-		return null;
+
+		return map.get(nameHash);
+	}
+
+	/**
+	 * Called when the name hash of one of this index's archives changes
+	 */
+	void archiveNameChanged()
+	{
+		nameHashMap = null;
 	}
 
 	public IndexData toIndexData()
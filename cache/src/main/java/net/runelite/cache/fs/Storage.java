@@ -24,7 +24,9 @@
  */
 package net.runelite.cache.fs;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import net.runelite.cache.util.Xtea;
 
 public interface Storage extends AutoCloseable
 {
@@ -39,5 +41,19 @@ public interface Storage extends AutoCloseable
 
 	byte[] loadArchive(Archive archive) throws IOException;
 
+	/**
+	 * Load and decompress an archive
+	 *
+	 * @param archive archive to load
+	 * @param xtea cipher to decrypt with, or null if the archive is not encrypted
+	 * @return the decompressed archive data, or null if the archive does not exist
+	 * @throws IOException
+	 */
+	default byte[] loadArchiveContents(Archive archive, Xtea xtea) throws IOException
+	{
+		byte[] data = loadArchive(archive);
+		return data != null ? archive.decompress(new ByteArrayInputStream(data), data.length, xtea) : null;
+	}
+
 	void saveArchive(Archive archive, byte[] data) throws IOException;
 }
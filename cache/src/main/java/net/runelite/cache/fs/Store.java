@@ -28,11 +28,17 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.fs.jagex.DiskStorage;
+import net.runelite.cache.util.Xtea;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -126,6 +132,83 @@ public final class Store implements Closeable
 		storage.save(this);
 	}
 
+	/**
+	 * Load, decrypt and decompress every archive of an index, spreading the
+	 * work over the given executor. The storage must support concurrent
+	 * calls to {@link Storage#loadArchive(Archive)}.
+	 *
+	 * @param index index to load
+	 * @param executor executor to run the loads on
+	 * @return the files of each archive, in the same order as
+	 * {@link Index#getArchives()}. Archives which are missing from the
+	 * storage are null.
+	 * @throws IOException
+	 */
+	public List<ArchiveFiles> loadArchivesParallel(Index index, Executor executor) throws IOException
+	{
+		return loadArchivesParallel(index, executor, archive -> null);
+	}
+
+	/**
+	 * Load, decrypt and decompress every archive of an index, spreading the
+	 * work over the given executor.
+	 *
+	 * @param index index to load
+	 * @param executor executor to run the loads on
+	 * @param ciphers function returning the cipher for an archive, or null
+	 * if the archive is not encrypted
+	 * @return the files of each archive, in the same order as
+	 * {@link Index#getArchives()}. Archives which are missing from the
+	 * storage are null.
+	 * @throws IOException
+	 */
+	public List<ArchiveFiles> loadArchivesParallel(Index index, Executor executor, Function<Archive, Xtea> ciphers) throws IOException
+	{
+		List<Archive> archives = index.getArchives();
+		List<CompletableFuture<ArchiveFiles>> futures = new ArrayList<>(archives.size());
+
+		for (Archive archive : archives)
+		{
+			futures.add(CompletableFuture.supplyAsync(() ->
+			{
+				try
+				{
+					byte[] data = storage.loadArchiveContents(archive, ciphers.apply(archive));
+					if (data == null)
+					{
+						return null;
+					}
+
+					return archive.loadFiles(data);
+				}
+				catch (IOException ex)
+				{
+					throw new UncheckedIOException(ex);
+				}
+			}, executor));
+		}
+
+		List<ArchiveFiles> files = new ArrayList<>(archives.size());
+		for (CompletableFuture<ArchiveFiles> future : futures)
+		{
+			try
+			{
+				files.add(future.join());
+			}
+			catch (CompletionException ex)
+			{
+				if (ex.getCause() instanceof UncheckedIOException)
+				{
+					throw ((UncheckedIOException) ex.getCause()).getCause();
+				}
+				throw ex;
+			}
+		}
+
+		logger.debug("Loaded {} archives of index {}", files.size(), index.getId());
+		return files;
+	}
+
 	public List<Index> getIndexes()
 	{
 		return indexes;
@@ -24,9 +24,51 @@
  */
 package net.runelite.cache.fs.jagex;
 
+import net.runelite.cache.util.BZip2Codec;
+import net.runelite.cache.util.CompressionCodec;
+import net.runelite.cache.util.GZipCodec;
+
 public class CompressionType
 {
 	public static final int NONE = 0;
 	public static final int BZ2  = 1;
 	public static final int GZ   = 2;
+
+	private static final CompressionCodec[] codecs = new CompressionCodec[]
+	{
+		null, new BZip2Codec(), new GZipCodec()
+	};
+
+	/**
+	 * Get the codec used for a compression type
+	 *
+	 * @param compression compression type
+	 * @return the codec, or null for {@link #NONE}
+	 */
+	public static CompressionCodec getCodec(int compression)
+	{
+		if (compression < 0 || compression >= codecs.length)
+		{
+			throw new IllegalArgumentException("Unknown compression type " + compression);
+		}
+
+		return codecs[compression];
+	}
+
+	/**
+	 * Replace the codec used for a compression type. This should be done
+	 * before any containers are compressed or decompressed.
+	 *
+	 * @param compression compression type
+	 * @param codec codec to use
+	 */
+	public static void setCodec(int compression, CompressionCodec codec)
+	{
+		if (compression <= NONE || compression >= codecs.length)
+		{
+			throw new IllegalArgumentException("Unknown compression type " + compression);
+		}
+
+		codecs[compression] = codec;
+	}
 }
@@ -24,12 +24,15 @@
  */
 package net.runelite.cache.fs.jagex;
 
+import com.google.common.primitives.Ints;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NavigableSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,10 +43,12 @@ public class DataFile implements Closeable
 	private static final int SECTOR_SIZE = 520;
 
 	private final RandomAccessFile dat;
+	private final FileChannel channel;
 
 	public DataFile(File file) throws FileNotFoundException
 	{
 		this.dat = new RandomAccessFile(file, "rw");
+		this.channel = dat.getChannel();
 	}
 
 	@Override
@@ -52,7 +57,7 @@ public class DataFile implements Closeable
 		dat.close();
 	}
 
-	public void clear() throws IOException
+	public synchronized void clear() throws IOException
 	{
 		dat.setLength(0L);
 	}
@@ -68,13 +73,17 @@ public class DataFile implements Closeable
 	 */
 	public byte[] read(int indexId, int archiveId, int sector, int size) throws IOException
 	{
-		if (sector <= 0L || dat.length() / SECTOR_SIZE < (long) sector)
+		// reads use positional channel reads rather than seek(), so they
+		// are safe to run concurrently with each other
+		long length = channel.size();
+		if (sector <= 0L || length / SECTOR_SIZE < (long) sector)
 		{
-			logger.warn("bad read, dat length {}, requested sector {}", dat.length(), sector);
+			logger.warn("bad read, dat length {}, requested sector {}", length, sector);
 			return null;
 		}
 
 		byte[] readBuffer = new byte[SECTOR_SIZE];
+		ByteBuffer sectorBuffer = ByteBuffer.wrap(readBuffer);
 		ByteBuffer buffer = ByteBuffer.allocate(size);
 
 		for (int part = 0, readBytesCount = 0, nextSector;
@@ -87,7 +96,7 @@ public class DataFile implements Closeable
 				return null;
 			}
 
-			dat.seek(SECTOR_SIZE * sector);
+			long position = (long) SECTOR_SIZE * sector;
 
 			int dataBlockSize = size - readBytesCount;
 			byte headerSize;
@@ -102,7 +111,7 @@ public class DataFile implements Closeable
 					dataBlockSize = SECTOR_SIZE - headerSize;
 				}
 
-				int i = dat.read(readBuffer, 0, headerSize + dataBlockSize);
+				int i = readFully(sectorBuffer, position, headerSize + dataBlockSize);
 				if (i != headerSize + dataBlockSize)
 				{
 					logger.warn("Short read when reading file data for {}/{}", indexId, archiveId);
@@ -127,7 +136,7 @@ public class DataFile implements Closeable
 					dataBlockSize = SECTOR_SIZE - headerSize;
 				}
 
-				int i = dat.read(readBuffer, 0, headerSize + dataBlockSize);
+				int i = readFully(sectorBuffer, position, headerSize + dataBlockSize);
 				if (i != headerSize + dataBlockSize)
 				{
 					logger.warn("short read");
@@ -153,7 +162,7 @@ public class DataFile implements Closeable
 				return null;
 			}
 
-			if (nextSector < 0 || dat.length() / SECTOR_SIZE < (long) nextSector)
+			if (nextSector < 0 || length / SECTOR_SIZE < (long) nextSector)
 			{
 				logger.warn("Invalid next sector");
 				return null;
@@ -169,7 +178,24 @@ public class DataFile implements Closeable
 		return buffer.array();
 	}
 
-	public DataFileWriteResult write(int indexId, int archiveId, byte[] compressedData) throws IOException
+	private int readFully(ByteBuffer buffer, long position, int len) throws IOException
+	{
+		buffer.clear();
+		buffer.limit(len);
+
+		while (buffer.hasRemaining())
+		{
+			int i = channel.read(buffer, position + buffer.position());
+			if (i == -1)
+			{
+				break;
+			}
+		}
+
+		return buffer.position();
+	}
+
+	public synchronized DataFileWriteResult write(int indexId, int archiveId, byte[] compressedData) throws IOException
 	{
 		int sector;
 		int startSector;
@@ -264,4 +290,148 @@ public class DataFile implements Closeable
 		res.compressedLength = compressedData.length;
 		return res;
 	}
+
+	/**
+	 * Write an archive into sectors which are no longer in use, appending
+	 * whatever doesn't fit to the end of the data file. The sectors must not
+	 * be part of a chain an index file still points to, so the existing data
+	 * stays intact until its index entry is pointed at the new chain.
+	 *
+	 * @param indexId index of the archive
+	 * @param archiveId archive being written
+	 * @param compressedData data to write
+	 * @param freeSectors unused sectors, the sectors used are removed from it
+	 * @return
+	 * @throws IOException
+	 */
+	public synchronized DataFileWriteResult write(int indexId, int archiveId, byte[] compressedData, NavigableSet<Integer> freeSectors) throws IOException
+	{
+		int headerSize = archiveId > 0xFFFF ? 10 : 8;
+		int blockSize = SECTOR_SIZE - headerSize;
+		int sectors = (compressedData.length + blockSize - 1) / blockSize;
+		if (sectors == 0 || freeSectors.isEmpty())
+		{
+			return write(indexId, archiveId, compressedData);
+		}
+
+		int end = (int) ((dat.length() + (long) (SECTOR_SIZE - 1)) / (long) SECTOR_SIZE);
+		if (end == 0)
+		{
+			end = 1;
+		}
+
+		int[] chain = new int[sectors];
+		for (int part = 0; part < sectors; ++part)
+		{
+			Integer sector = freeSectors.pollFirst();
+			chain[part] = sector != null ? sector : end++;
+		}
+
+		byte[] writeBuffer = new byte[SECTOR_SIZE];
+		for (int part = 0; part < sectors; ++part)
+		{
+			int nextSector = part + 1 < sectors ? chain[part + 1] : 0;
+			int offset = part * blockSize;
+			int dataToWrite = Math.min(blockSize, compressedData.length - offset);
+
+			writeHeader(writeBuffer, indexId, archiveId, part, nextSector);
+			System.arraycopy(compressedData, offset, writeBuffer, headerSize, dataToWrite);
+
+			dat.seek((long) SECTOR_SIZE * chain[part]);
+			dat.write(writeBuffer, 0, headerSize + dataToWrite);
+		}
+
+		DataFileWriteResult res = new DataFileWriteResult();
+		res.sector = chain[0];
+		res.compressedLength = compressedData.length;
+		return res;
+	}
+
+	/**
+	 * Follow the chain of an archive, checking each sector belongs to it
+	 *
+	 * @param indexId index of the archive
+	 * @param archiveId archive the chain belongs to
+	 * @param sector first sector of the chain
+	 * @param size size of the data stored in the chain
+	 * @return the sectors of the chain, or null if the chain is broken
+	 * @throws IOException
+	 */
+	synchronized int[] readChain(int indexId, int archiveId, int sector, int size) throws IOException
+	{
+		int headerSize = archiveId > 0xFFFF ? 10 : 8;
+		int sectors = (size + SECTOR_SIZE - headerSize - 1) / (SECTOR_SIZE - headerSize);
+		long length = channel.size();
+		byte[] readBuffer = new byte[headerSize];
+		ByteBuffer headerBuffer = ByteBuffer.wrap(readBuffer);
+		int[] chain = new int[sectors];
+
+		for (int part = 0; part < sectors; ++part)
+		{
+			if (sector <= 0 || length / SECTOR_SIZE < (long) sector)
+			{
+				return null;
+			}
+
+			if (readFully(headerBuffer, (long) SECTOR_SIZE * sector, headerSize) != headerSize)
+			{
+				return null;
+			}
+
+			int currentArchive, currentPart, nextSector, currentIndex;
+			if (headerSize == 10)
+			{
+				currentArchive = Ints.fromBytes(readBuffer[0], readBuffer[1], readBuffer[2], readBuffer[3]);
+				currentPart = ((readBuffer[4] & 0xFF) << 8) | (readBuffer[5] & 0xFF);
+				nextSector = ((readBuffer[6] & 0xFF) << 16) | ((readBuffer[7] & 0xFF) << 8) | (readBuffer[8] & 0xFF);
+				currentIndex = readBuffer[9] & 0xFF;
+			}
+			else
+			{
+				currentArchive = ((readBuffer[0] & 0xFF) << 8) | (readBuffer[1] & 0xFF);
+				currentPart = ((readBuffer[2] & 0xFF) << 8) | (readBuffer[3] & 0xFF);
+				nextSector = ((readBuffer[4] & 0xFF) << 16) | ((readBuffer[5] & 0xFF) << 8) | (readBuffer[6] & 0xFF);
+				currentIndex = readBuffer[7] & 0xFF;
+			}
+
+			if (archiveId != currentArchive || currentPart != part || indexId != currentIndex)
+			{
+				logger.debug("Chain of {}/{} doesn't match at part {}", indexId, archiveId, part);
+				return null;
+			}
+
+			chain[part] = sector;
+			sector = nextSector;
+		}
+
+		return chain;
+	}
+
+	private static void writeHeader(byte[] writeBuffer, int indexId, int archiveId, int part, int nextSector)
+	{
+		if (archiveId > 0xFFFF)
+		{
+			writeBuffer[0] = (byte) (archiveId >> 24);
+			writeBuffer[1] = (byte) (archiveId >> 16);
+			writeBuffer[2] = (byte) (archiveId >> 8);
+			writeBuffer[3] = (byte) archiveId;
+			writeBuffer[4] = (byte) (part >> 8);
+			writeBuffer[5] = (byte) part;
+			writeBuffer[6] = (byte) (nextSector >> 16);
+			writeBuffer[7] = (byte) (nextSector >> 8);
+			writeBuffer[8] = (byte) nextSector;
+			writeBuffer[9] = (byte) indexId;
+		}
+		else
+		{
+			writeBuffer[0] = (byte) (archiveId >> 8);
+			writeBuffer[1] = (byte) archiveId;
+			writeBuffer[2] = (byte) (part >> 8);
+			writeBuffer[3] = (byte) part;
+			writeBuffer[4] = (byte) (nextSector >> 16);
+			writeBuffer[5] = (byte) (nextSector >> 8);
+			writeBuffer[6] = (byte) nextSector;
+			writeBuffer[7] = (byte) indexId;
+		}
+	}
 }
@@ -28,8 +28,14 @@ import com.google.common.primitives.Ints;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Container;
 import net.runelite.cache.fs.Index;
@@ -45,19 +51,27 @@ public class DiskStorage implements Storage
 {
 	private static final Logger logger = LoggerFactory.getLogger(DiskStorage.class);
 
-	private static final String MAIN_FILE_CACHE_DAT = "main_file_cache.dat2";
-	private static final String MAIN_FILE_CACHE_IDX = "main_file_cache.idx";
+	static final String MAIN_FILE_CACHE_DAT = "main_file_cache.dat2";
+	static final String MAIN_FILE_CACHE_IDX = "main_file_cache.idx";
+	static final String COMPACT_FILE = "main_file_cache.compact";
+	static final String TMP_SUFFIX = ".tmp";
 
 	private final File folder;
 
-	private final DataFile data;
-	private final IndexFile index255;
+	// data and index files are replaced by compact()
+	private volatile DataFile data;
+	private volatile IndexFile index255;
 	private final List<IndexFile> indexFiles = new ArrayList<>();
 
+	// sectors of chains which were replaced by a newer copy of their archive
+	private final NavigableSet<Integer> freeSectors = new TreeSet<>();
+
 	public DiskStorage(File folder) throws IOException
 	{
 		this.folder = folder;
 
+		finishCompact(folder);
+
 		this.data = new DataFile(new File(folder, MAIN_FILE_CACHE_DAT));
 		this.index255 = new IndexFile(255, new File(folder, MAIN_FILE_CACHE_IDX + "255"));
 	}
@@ -85,7 +99,7 @@ public class DiskStorage implements Storage
 		}
 	}
 
-	private IndexFile getIndex(int i) throws FileNotFoundException
+	private synchronized IndexFile getIndex(int i) throws FileNotFoundException
 	{
 		for (IndexFile indexFile : indexFiles)
 		{
@@ -121,6 +135,11 @@ public class DiskStorage implements Storage
 		logger.trace("Loading index {}", index.getId());
 
 		byte[] indexData = readIndex(index.getId());
+		loadIndex(index, indexData);
+	}
+
+	static void loadIndex(Index index, byte[] indexData) throws IOException
+	{
 		Container res = Container.decompress(indexData, null);
 		byte[] data = res.data;
 
@@ -145,6 +164,8 @@ public class DiskStorage implements Storage
 		index.setCrc(res.crc);
 		index.setCompression(res.compression);
 		assert res.revision == -1;
+
+		index.setDirty(false);
 	}
 
 	@Override
@@ -172,13 +193,20 @@ public class DiskStorage implements Storage
 	}
 
 	@Override
-	public void save(Store store) throws IOException
+	public synchronized void save(Store store) throws IOException
 	{
 		logger.debug("Saving store");
 
 		for (Index i : store.getIndexes())
 		{
+			if (!i.isDirty())
+			{
+				logger.trace("Index {} is unchanged, not saving", i.getId());
+				continue;
+			}
+
 			saveIndex(i);
+			i.setDirty(false);
 		}
 	}
 
@@ -190,9 +218,7 @@ public class DiskStorage implements Storage
 		Container container = new Container(index.getCompression(), -1); // index data revision is always -1
 		container.compress(data, null);
 		byte[] compressedData = container.data;
-		DataFileWriteResult res = this.data.write(index255.getIndexFileId(), index.getId(), compressedData);
-
-		index255.write(new IndexEntry(index255, index.getId(), res.sector, res.compressedLength));
+		DataFileWriteResult res = write(index255, index.getId(), compressedData);
 
 		Crc32 crc = new Crc32();
 		crc.update(compressedData, 0, compressedData.length);
@@ -200,14 +226,13 @@ public class DiskStorage implements Storage
 	}
 
 	@Override
-	public void saveArchive(Archive a, byte[] archiveData) throws IOException
+	public synchronized void saveArchive(Archive a, byte[] archiveData) throws IOException
 	{
 		Index index = a.getIndex();
 		IndexFile indexFile = getIndex(index.getId());
 		assert indexFile.getIndexFileId() == index.getId();
 
-		DataFileWriteResult res = data.write(index.getId(), a.getArchiveId(), archiveData);
-		indexFile.write(new IndexEntry(indexFile, a.getArchiveId(), res.sector, res.compressedLength));
+		DataFileWriteResult res = write(indexFile, a.getArchiveId(), archiveData);
 
 		byte compression = archiveData[0];
 		int compressedSize = Ints.fromBytes(archiveData[1], archiveData[2],
@@ -226,4 +251,185 @@ public class DiskStorage implements Storage
 		logger.trace("Saved archive {}/{} at sector {}, compressed length {}",
 			index.getId(), a.getArchiveId(), res.sector, res.compressedLength);
 	}
+
+	/**
+	 * Write an archive and point its index entry at it. The data is written
+	 * to sectors which aren't in use, so the old copy stays intact until the
+	 * index entry is updated, after which its sectors are free to reuse.
+	 * Sectors freed by an earlier session are only reclaimed by
+	 * {@link #compact()}.
+	 */
+	private DataFileWriteResult write(IndexFile indexFile, int archiveId, byte[] compressedData) throws IOException
+	{
+		int indexId = indexFile.getIndexFileId();
+		IndexEntry old = indexFile.read(archiveId);
+
+		DataFileWriteResult res = data.write(indexId, archiveId, compressedData, freeSectors);
+		indexFile.write(new IndexEntry(indexFile, archiveId, res.sector, res.compressedLength));
+
+		if (old != null)
+		{
+			int[] chain = data.readChain(indexId, archiveId, old.getSector(), old.getLength());
+			if (chain != null)
+			{
+				for (int sector : chain)
+				{
+					freeSectors.add(sector);
+				}
+			}
+		}
+
+		return res;
+	}
+
+	/**
+	 * Rewrite the data file so every archive is stored contiguously, dropping
+	 * sectors which are no longer referenced. Archives whose data can't be
+	 * read are removed from their index file.
+	 * <p>
+	 * The new data and index files are written next to the old ones, and are
+	 * only moved over them once all of them are complete. The compact file
+	 * marks that point, so that if the moves are interrupted the next
+	 * DiskStorage opened on the folder finishes them.
+	 *
+	 * @throws IOException
+	 */
+	public synchronized void compact() throws IOException
+	{
+		File file = new File(folder, MAIN_FILE_CACHE_DAT);
+		long before = file.length();
+
+		List<IndexFile> all = new ArrayList<>();
+		all.add(index255);
+		all.addAll(indexFiles);
+
+		List<File> files = new ArrayList<>();
+		files.add(file);
+		for (IndexFile indexFile : all)
+		{
+			files.add(new File(folder, MAIN_FILE_CACHE_IDX + indexFile.getIndexFileId()));
+		}
+
+		try
+		{
+			try (DataFile compacted = new DataFile(tmp(file)))
+			{
+				compacted.clear();
+
+				for (int i = 0; i < all.size(); ++i)
+				{
+					try (IndexFile compactedIndex = new IndexFile(all.get(i).getIndexFileId(), tmp(files.get(i + 1))))
+					{
+						compactedIndex.clear();
+						compact(all.get(i), compactedIndex, compacted);
+					}
+				}
+			}
+
+			for (File f : files)
+			{
+				sync(tmp(f));
+			}
+
+			Files.createFile(new File(folder, COMPACT_FILE).toPath());
+		}
+		catch (IOException ex)
+		{
+			for (File f : files)
+			{
+				Files.deleteIfExists(tmp(f).toPath());
+			}
+			throw ex;
+		}
+
+		data.close();
+		for (IndexFile indexFile : all)
+		{
+			indexFile.close();
+		}
+
+		finishCompact(folder);
+
+		data = new DataFile(file);
+		index255 = new IndexFile(255, files.get(1));
+		for (int i = 0; i < indexFiles.size(); ++i)
+		{
+			indexFiles.set(i, new IndexFile(indexFiles.get(i).getIndexFileId(), files.get(i + 2)));
+		}
+		freeSectors.clear();
+
+		logger.info("Compacted {} from {} to {} bytes", file, before, file.length());
+	}
+
+	private void compact(IndexFile indexFile, IndexFile compactedIndex, DataFile compacted) throws IOException
+	{
+		int indexId = indexFile.getIndexFileId();
+		int count = indexFile.getIndexCount();
+
+		for (int id = 0; id < count; ++id)
+		{
+			IndexEntry entry = indexFile.read(id);
+			if (entry == null)
+			{
+				compactedIndex.write(new IndexEntry(compactedIndex, id, 0, 0));
+				continue;
+			}
+
+			byte[] archiveData = data.read(indexId, id, entry.getSector(), entry.getLength());
+			if (archiveData == null)
+			{
+				logger.warn("Unable to read archive {}/{}, dropping it", indexId, id);
+				compactedIndex.write(new IndexEntry(compactedIndex, id, 0, 0));
+				continue;
+			}
+
+			DataFileWriteResult res = compacted.write(indexId, id, archiveData);
+			compactedIndex.write(new IndexEntry(compactedIndex, id, res.sector, res.compressedLength));
+		}
+	}
+
+	/**
+	 * Move the files of a complete compaction into place, or remove those
+	 * of an incomplete one
+	 */
+	private static void finishCompact(File folder) throws IOException
+	{
+		File marker = new File(folder, COMPACT_FILE);
+		File[] files = folder.listFiles((dir, name) -> name.startsWith("main_file_cache.") && name.endsWith(TMP_SUFFIX));
+		if (files == null)
+		{
+			return;
+		}
+
+		boolean complete = marker.exists();
+		for (File f : files)
+		{
+			if (complete)
+			{
+				String name = f.getName();
+				File target = new File(folder, name.substring(0, name.length() - TMP_SUFFIX.length()));
+				Files.move(f.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			else
+			{
+				logger.info("Removing {} left by an incomplete compaction", f);
+				Files.delete(f.toPath());
+			}
+		}
+
+		Files.deleteIfExists(marker.toPath());
+	}
+
+	private static File tmp(File file)
+	{
+		return new File(file.getParentFile(), file.getName() + TMP_SUFFIX);
+	}
+
+	private static void sync(File file) throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE))
+		{
+			channel.force(true);
+		}
+	}
 }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import com.google.common.io.ByteStreams;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read only view of a data file backed by memory mapped segments. Reads do
+ * not share any position state, so they may be issued concurrently.
+ */
+public class MappedDataFile implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(MappedDataFile.class);
+
+	private static final int SECTOR_SIZE = 520;
+
+	// each segment holds a whole number of sectors so no sector straddles two mappings
+	private static final int SECTORS_PER_SEGMENT = Integer.MAX_VALUE / SECTOR_SIZE;
+	private static final long SEGMENT_SIZE = (long) SECTORS_PER_SEGMENT * SECTOR_SIZE;
+
+	private final RandomAccessFile dat;
+	private final long length;
+	private final MappedByteBuffer[] segments;
+
+	public MappedDataFile(File file) throws IOException
+	{
+		this.dat = new RandomAccessFile(file, "r");
+		this.length = dat.length();
+
+		FileChannel channel = dat.getChannel();
+		int numSegments = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+		segments = new MappedByteBuffer[numSegments];
+		for (int i = 0; i < numSegments; ++i)
+		{
+			long position = i * SEGMENT_SIZE;
+			segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+		}
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		dat.close();
+	}
+
+	public long getLength()
+	{
+		return length;
+	}
+
+	/**
+	 *
+	 * @param indexId expected index of archive of contents being read
+	 * @param archiveId expected archive of contents being read
+	 * @param sector sector to start reading at
+	 * @param size size of file
+	 * @return
+	 */
+	public byte[] read(int indexId, int archiveId, int sector, int size)
+	{
+		InputStream in = open(indexId, archiveId, sector, size);
+		if (in == null)
+		{
+			return null;
+		}
+
+		byte[] data = new byte[size];
+		try
+		{
+			ByteStreams.readFully(in, data);
+		}
+		catch (IOException ex)
+		{
+			logger.warn("Unable to read {}/{}: {}", indexId, archiveId, ex.getMessage());
+			return null;
+		}
+		return data;
+	}
+
+	/**
+	 * Open a stream over the data of a file. The stream reads directly from
+	 * the mapping, and checks each sector header as it goes.
+	 *
+	 * @param indexId expected index of archive of contents being read
+	 * @param archiveId expected archive of contents being read
+	 * @param sector sector to start reading at
+	 * @param size size of file
+	 * @return
+	 */
+	public InputStream open(int indexId, int archiveId, int sector, int size)
+	{
+		if (sector <= 0L || length / SECTOR_SIZE < (long) sector)
+		{
+			logger.warn("bad read, dat length {}, requested sector {}", length, sector);
+			return null;
+		}
+
+		return new SectorInputStream(segments, SECTORS_PER_SEGMENT, length / SECTOR_SIZE,
+			indexId, archiveId, sector, size);
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import static net.runelite.cache.fs.jagex.DiskStorage.MAIN_FILE_CACHE_DAT;
+import static net.runelite.cache.fs.jagex.DiskStorage.MAIN_FILE_CACHE_IDX;
+import net.runelite.cache.util.Xtea;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Storage which memory maps the data and index files of a cache. Archives
+ * may be loaded concurrently from multiple threads once the store has been
+ * initialized. Writes go through a {@link DiskStorage} over the same files,
+ * after which the files are mapped again on the next load. Writes must not
+ * be made concurrently with loads.
+ */
+public class MappedDiskStorage implements Storage
+{
+	private static final Logger logger = LoggerFactory.getLogger(MappedDiskStorage.class);
+
+	private final File folder;
+
+	// replaced when the files are mapped again after a write
+	private volatile MappedDataFile data;
+	private volatile MappedIndexFile index255;
+	private volatile MappedIndexFile[] indexFiles = new MappedIndexFile[0];
+
+	private DiskStorage writer; // opened by the first write
+	private volatile boolean stale; // whether the files were written since they were mapped
+
+	public MappedDiskStorage(File folder) throws IOException
+	{
+		this.folder = folder;
+
+		this.data = new MappedDataFile(new File(folder, MAIN_FILE_CACHE_DAT));
+		this.index255 = new MappedIndexFile(255, new File(folder, MAIN_FILE_CACHE_IDX + "255"));
+	}
+
+	@Override
+	public void init(Store store) throws IOException
+	{
+		indexFiles = mapIndexFiles(index255);
+
+		for (int i = 0; i < indexFiles.length; ++i)
+		{
+			store.addIndex(i);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		close(data, index255, indexFiles);
+
+		if (writer != null)
+		{
+			writer.close();
+			writer = null;
+		}
+	}
+
+	private MappedIndexFile[] mapIndexFiles(MappedIndexFile index255) throws IOException
+	{
+		int count = index255.getIndexCount();
+		MappedIndexFile[] indexFiles = new MappedIndexFile[count];
+
+		for (int i = 0; i < count; ++i)
+		{
+			File file = new File(folder, MAIN_FILE_CACHE_IDX + i);
+			if (file.exists())
+			{
+				indexFiles[i] = new MappedIndexFile(i, file);
+			}
+		}
+
+		return indexFiles;
+	}
+
+	/**
+	 * Map the files again if they have been written to, as writes may have
+	 * grown them past the end of their mappings
+	 */
+	private void remap() throws IOException
+	{
+		if (!stale)
+		{
+			return;
+		}
+
+		synchronized (this)
+		{
+			if (!stale)
+			{
+				return;
+			}
+
+			MappedDataFile oldData = data;
+			MappedIndexFile oldIndex255 = index255;
+			MappedIndexFile[] oldIndexFiles = indexFiles;
+
+			MappedIndexFile newIndex255 = new MappedIndexFile(255, new File(folder, MAIN_FILE_CACHE_IDX + "255"));
+			data = new MappedDataFile(new File(folder, MAIN_FILE_CACHE_DAT));
+			indexFiles = mapIndexFiles(newIndex255);
+			index255 = newIndex255;
+			stale = false;
+
+			// the old mappings stay valid for loads which are still using them
+			close(oldData, oldIndex255, oldIndexFiles);
+		}
+	}
+
+	private static void close(MappedDataFile data, MappedIndexFile index255, MappedIndexFile[] indexFiles) throws IOException
+	{
+		data.close();
+		index255.close();
+		for (MappedIndexFile indexFile : indexFiles)
+		{
+			if (indexFile != null)
+			{
+				indexFile.close();
+			}
+		}
+	}
+
+	@Override
+	public void load(Store store) throws IOException
+	{
+		for (Index index : store.getIndexes())
+		{
+			logger.trace("Loading index {}", index.getId());
+
+			byte[] indexData = readIndex(index.getId());
+			DiskStorage.loadIndex(index, indexData);
+		}
+	}
+
+	public byte[] readIndex(int indexId) throws IOException
+	{
+		remap();
+
+		MappedIndexFile index255 = this.index255;
+		IndexEntry entry = index255.read(indexId);
+		if (entry == null)
+		{
+			return null;
+		}
+
+		return data.read(index255.getIndexFileId(), entry.getId(), entry.getSector(), entry.getLength());
+	}
+
+	private IndexEntry readEntry(Archive archive) throws IOException
+	{
+		remap();
+
+		Index index = archive.getIndex();
+		MappedIndexFile[] indexFiles = this.indexFiles;
+		MappedIndexFile indexFile = index.getId() < indexFiles.length ? indexFiles[index.getId()] : null;
+		if (indexFile == null)
+		{
+			logger.debug("no index file for index {}", index.getId());
+			return null;
+		}
+
+		IndexEntry entry = indexFile.read(archive.getArchiveId());
+		if (entry == null)
+		{
+			logger.debug("can't read archive " + archive.getArchiveId() + " from index " + index.getId());
+			return null;
+		}
+
+		logger.trace("Loading archive {} for index {} from sector {} length {}",
+			archive.getArchiveId(), index.getId(), entry.getSector(), entry.getLength());
+
+		return entry;
+	}
+
+	@Override
+	public byte[] loadArchive(Archive archive) throws IOException
+	{
+		IndexEntry entry = readEntry(archive);
+		if (entry == null)
+		{
+			return null;
+		}
+
+		return data.read(archive.getIndex().getId(), entry.getId(), entry.getSector(), entry.getLength());
+	}
+
+	@Override
+	public byte[] loadArchiveContents(Archive archive, Xtea xtea) throws IOException
+	{
+		Index index = archive.getIndex();
+		IndexEntry entry = readEntry(archive);
+		if (entry == null)
+		{
+			return null;
+		}
+
+		// decompress straight out of the mapping without buffering the compressed data
+		InputStream in = data.open(index.getId(), entry.getId(), entry.getSector(), entry.getLength());
+		if (in == null)
+		{
+			return null;
+		}
+
+		return archive.decompress(in, entry.getLength(), xtea);
+	}
+
+	@Override
+	public synchronized void save(Store store) throws IOException
+	{
+		getWriter().save(store);
+		stale = true;
+	}
+
+	@Override
+	public synchronized void saveArchive(Archive archive, byte[] data) throws IOException
+	{
+		getWriter().saveArchive(archive, data);
+		stale = true;
+	}
+
+	private DiskStorage getWriter() throws IOException
+	{
+		if (writer == null)
+		{
+			writer = new DiskStorage(folder);
+		}
+		return writer;
+	}
+}
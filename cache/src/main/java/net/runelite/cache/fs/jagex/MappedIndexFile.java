@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read only, memory mapped view of an index file. Lookups are absolute
+ * reads from the mapping and so need no synchronization.
+ */
+public class MappedIndexFile implements Closeable
+{
+	private static final Logger logger = LoggerFactory.getLogger(MappedIndexFile.class);
+
+	private static final int INDEX_ENTRY_LEN = 6;
+
+	private final int indexFileId;
+	private final RandomAccessFile idx;
+	private final MappedByteBuffer buffer;
+
+	public MappedIndexFile(int indexFileId, File file) throws IOException
+	{
+		this.indexFileId = indexFileId;
+		this.idx = new RandomAccessFile(file, "r");
+		this.buffer = idx.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, idx.length());
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		idx.close();
+	}
+
+	public int getIndexFileId()
+	{
+		return indexFileId;
+	}
+
+	/**
+	 * Read the entry for the given archive. As the mapping is not
+	 * associated with an {@link IndexFile}, the returned entry has none.
+	 *
+	 * @param id archive id
+	 * @return the entry, or null if it does not exist
+	 */
+	public IndexEntry read(int id)
+	{
+		int position = id * INDEX_ENTRY_LEN;
+		if (id < 0 || position + INDEX_ENTRY_LEN > buffer.limit())
+		{
+			logger.debug("short read for id {} on index {}", id, indexFileId);
+			return null;
+		}
+
+		int length = ((buffer.get(position) & 0xFF) << 16)
+			| ((buffer.get(position + 1) & 0xFF) << 8)
+			| (buffer.get(position + 2) & 0xFF);
+		int sector = ((buffer.get(position + 3) & 0xFF) << 16)
+			| ((buffer.get(position + 4) & 0xFF) << 8)
+			| (buffer.get(position + 5) & 0xFF);
+
+		if (length <= 0 || sector <= 0)
+		{
+			logger.debug("invalid length or sector {}/{}", length, sector);
+			return null;
+		}
+
+		return new IndexEntry(null, id, sector, length);
+	}
+
+	public int getIndexCount()
+	{
+		return buffer.limit() / INDEX_ENTRY_LEN;
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Stream over the data of a chain of sectors in a memory mapped data file.
+ * Sector headers are checked as the chain is followed, and data is copied
+ * straight from the mapping into the caller's buffer.
+ */
+class SectorInputStream extends InputStream
+{
+	private static final int SECTOR_SIZE = 520;
+
+	private final ByteBuffer[] segments;
+	private final int sectorsPerSegment;
+	private final long sectorCount;
+	private final int indexId;
+	private final int archiveId;
+
+	private int nextSector;
+	private int part;
+	private int remaining; // bytes of the chain not yet read
+	private ByteBuffer current; // data of the current sector
+
+	SectorInputStream(ByteBuffer[] segments, int sectorsPerSegment, long sectorCount,
+		int indexId, int archiveId, int sector, int size)
+	{
+		this.segments = segments;
+		this.sectorsPerSegment = sectorsPerSegment;
+		this.sectorCount = sectorCount;
+		this.indexId = indexId;
+		this.archiveId = archiveId;
+		this.nextSector = sector;
+		this.remaining = size;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (!advance())
+		{
+			return -1;
+		}
+
+		--remaining;
+		return current.get() & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+		{
+			return 0;
+		}
+
+		if (!advance())
+		{
+			return -1;
+		}
+
+		int n = Math.min(len, current.remaining());
+		current.get(b, off, n);
+		remaining -= n;
+		return n;
+	}
+
+	@Override
+	public int available()
+	{
+		return remaining;
+	}
+
+	/**
+	 * Move on to the next sector if the current one is used up
+	 *
+	 * @return false if there is no more data
+	 * @throws IOException if the sector chain is broken
+	 */
+	private boolean advance() throws IOException
+	{
+		if (remaining == 0)
+		{
+			return false;
+		}
+
+		if (current != null && current.hasRemaining())
+		{
+			return true;
+		}
+
+		int sector = nextSector;
+		if (sector <= 0 || sectorCount < sector)
+		{
+			throw new IOException("Invalid sector " + sector + " for " + indexId + "/" + archiveId);
+		}
+
+		ByteBuffer segment = segments[sector / sectorsPerSegment];
+		int position = (sector % sectorsPerSegment) * SECTOR_SIZE;
+
+		int headerSize = archiveId > 0xFFFF ? 10 : 8;
+		int dataBlockSize = Math.min(remaining, SECTOR_SIZE - headerSize);
+		if (position + headerSize + dataBlockSize > segment.limit())
+		{
+			throw new IOException("Short read when reading file data for " + indexId + "/" + archiveId);
+		}
+
+		int currentArchive;
+		int currentPart;
+		int currentIndex;
+		if (archiveId > 0xFFFF)
+		{
+			currentArchive = segment.getInt(position);
+			currentPart = segment.getShort(position + 4) & 0xFFFF;
+			nextSector = readMedium(segment, position + 6);
+			currentIndex = segment.get(position + 9) & 0xFF;
+		}
+		else
+		{
+			currentArchive = segment.getShort(position) & 0xFFFF;
+			currentPart = segment.getShort(position + 2) & 0xFFFF;
+			nextSector = readMedium(segment, position + 4);
+			currentIndex = segment.get(position + 7) & 0xFF;
+		}
+
+		if (archiveId != currentArchive || currentPart != part || indexId != currentIndex)
+		{
+			throw new IOException("Data mismatch " + archiveId + " != " + currentArchive
+				+ ", " + part + " != " + currentPart
+				+ ", " + indexId + " != " + currentIndex);
+		}
+
+		if (nextSector < 0 || sectorCount < nextSector)
+		{
+			throw new IOException("Invalid next sector " + nextSector + " for " + indexId + "/" + archiveId);
+		}
+
+		// duplicate so concurrent readers don't share a position
+		ByteBuffer view = segment.duplicate();
+		view.position(position + headerSize);
+		view.limit(position + headerSize + dataBlockSize);
+		current = view;
+
+		++part;
+		return true;
+	}
+
+	private static int readMedium(ByteBuffer buffer, int position)
+	{
+		return ((buffer.get(position) & 0xFF) << 16)
+			| ((buffer.get(position + 1) & 0xFF) << 8)
+			| (buffer.get(position + 2) & 0xFF);
+	}
+}
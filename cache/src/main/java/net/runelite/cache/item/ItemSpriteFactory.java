@@ -28,7 +28,12 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import net.runelite.cache.definitions.ItemDefinition;
 import net.runelite.cache.definitions.ModelDefinition;
+import net.runelite.cache.definitions.providers.DefinitionCache;
 import net.runelite.cache.definitions.providers.ItemProvider;
+import net.runelite.cache.definitions.providers.LazyItemProvider;
+import net.runelite.cache.definitions.providers.LazyModelProvider;
+import net.runelite.cache.definitions.providers.LazySpriteProvider;
+import net.runelite.cache.definitions.providers.LazyTextureProvider;
 import net.runelite.cache.definitions.providers.ModelProvider;
 import net.runelite.cache.definitions.providers.SpriteProvider;
 import net.runelite.cache.definitions.providers.TextureProvider;
@@ -37,6 +42,27 @@ import net.runelite.cache.models.VertexNormal;
 
 public class ItemSpriteFactory
 {
+	/**
+	 * Create an item sprite, decoding only the definitions the item needs
+	 *
+	 * @param cache cache of the store to load the definitions from
+	 * @param itemId item to draw
+	 * @param quantity quantity of the item, for stackable items
+	 * @param border border width, 0 for none
+	 * @param shadowColor shadow color, 0 for none
+	 * @param noted whether the item is noted
+	 * @return the sprite, or null if the item has no model
+	 * @throws IOException
+	 */
+	public static final BufferedImage createSprite(DefinitionCache cache,
+		int itemId, int quantity, int border, int shadowColor,
+		boolean noted) throws IOException
+	{
+		return createSprite(new LazyItemProvider(cache), new LazyModelProvider(cache),
+			new LazySpriteProvider(cache), new LazyTextureProvider(cache),
+			itemId, quantity, border, shadowColor, noted);
+	}
+
 	public static final BufferedImage createSprite(ItemProvider itemProvider, ModelProvider modelProvider,
 		SpriteProvider spriteProvider, TextureProvider textureProvider,
 		int itemId, int quantity, int border, int shadowColor,
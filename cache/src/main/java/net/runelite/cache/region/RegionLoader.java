@@ -37,6 +37,7 @@ import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
 import net.runelite.cache.fs.Store;
+import net.runelite.cache.util.Xtea;
 import net.runelite.cache.util.XteaKeyManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,12 +58,17 @@ public class RegionLoader
 
 	public RegionLoader(Store store)
 	{
-		this.store = store;
-		index = store.getIndex(IndexType.MAPS);
-		keyManager = new XteaKeyManager();
+		this(store, new XteaKeyManager());
 		keyManager.loadKeys();
 	}
 
+	public RegionLoader(Store store, XteaKeyManager keyManager)
+	{
+		this.store = store;
+		this.index = store.getIndex(IndexType.MAPS);
+		this.keyManager = keyManager;
+	}
+
 	public void loadRegions() throws IOException
 	{
 		for (int i = 0; i < MAX_REGION; ++i)
@@ -91,19 +97,19 @@ public class RegionLoader
 			return null;
 		}
 
-		byte[] data = map.decompress(storage.loadArchive(map));
+		byte[] data = storage.loadArchiveContents(map, null);
 
 		MapDefinition mapDef = new MapLoader().load(x, y, data);
 
 		Region region = new Region(i);
 		region.loadTerrain(mapDef);
 
-		int[] keys = keyManager.getKeys(i);
-		if (keys != null)
+		Xtea xtea = keyManager.getXtea(i);
+		if (xtea != null)
 		{
 			try
 			{
-				data = land.decompress(storage.loadArchive(land), keys);
+				data = storage.loadArchiveContents(land, xtea);
 				LocationsDefinition locDef = new LocationsLoader().load(x, y, data);
 				region.loadLocations(locDef);
 			}
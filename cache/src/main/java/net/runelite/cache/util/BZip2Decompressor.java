@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.util;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A bzip2 decoder for the headerless, 100k block size bzip2 data stored in
+ * the cache. All of the working tables are allocated once and reused, so
+ * an instance should be kept around and used for many archives. Instances
+ * are not thread safe.
+ */
+class BZip2Decompressor
+{
+	private static final long BLOCK_MAGIC = 0x314159265359L;
+	private static final long END_OF_STREAM_MAGIC = 0x177245385090L;
+
+	private static final int BLOCK_SIZE = 100_000; // the cache always uses block size 1
+	private static final int MAX_GROUPS = 6;
+	private static final int GROUP_SIZE = 50;
+	private static final int MAX_ALPHA_SIZE = 258;
+	private static final int MAX_CODE_LEN = 20;
+	private static final int MAX_SELECTORS = 32768;
+	private static final int RUNA = 0;
+	private static final int RUNB = 1;
+
+	private static final int[] CRC_TABLE = new int[256];
+
+	static
+	{
+		for (int i = 0; i < 256; ++i)
+		{
+			int c = i << 24;
+			for (int j = 0; j < 8; ++j)
+			{
+				c = (c & 0x80000000) != 0 ? (c << 1) ^ 0x04C11DB7 : c << 1;
+			}
+			CRC_TABLE[i] = c;
+		}
+	}
+
+	// input
+	private final byte[] buffer = new byte[4096];
+	private InputStream in;
+	private int bufferPosition;
+	private int bufferLimit;
+	private long bitBuffer;
+	private int bitCount;
+
+	// block tables
+	private final int[] tt = new int[BLOCK_SIZE];
+	private final int[] unzftab = new int[256];
+	private final int[] cftab = new int[257];
+	private final boolean[] inUse = new boolean[256];
+	private final byte[] seqToUnseq = new byte[256];
+	private final byte[] yy = new byte[256];
+	private final byte[] selectors = new byte[MAX_SELECTORS];
+	private final byte[] selectorMtf = new byte[MAX_GROUPS];
+	private final byte[][] lengths = new byte[MAX_GROUPS][MAX_ALPHA_SIZE];
+	private final int[][] limit = new int[MAX_GROUPS][MAX_CODE_LEN + 2];
+	private final int[][] base = new int[MAX_GROUPS][MAX_CODE_LEN + 2];
+	private final int[][] perm = new int[MAX_GROUPS][MAX_ALPHA_SIZE];
+	private final int[] minLens = new int[MAX_GROUPS];
+
+	// symbol decoding state
+	private int groupNo;
+	private int groupPos;
+
+	/**
+	 * Decompress a headerless bzip2 stream
+	 *
+	 * @param in compressed data, starting at the first block header
+	 * @param length decompressed length
+	 * @return
+	 * @throws IOException if the data is not valid bzip2 data, or it
+	 * decompresses to a different length
+	 */
+	byte[] decompress(InputStream in, int length) throws IOException
+	{
+		this.in = in;
+		bufferPosition = bufferLimit = 0;
+		bitBuffer = 0;
+		bitCount = 0;
+
+		try
+		{
+			long magic = readMagic();
+			if (magic != BLOCK_MAGIC && magic != END_OF_STREAM_MAGIC)
+			{
+				throw new IOException("Bad bzip2 block header");
+			}
+
+			// the header is good, so it is worth allocating the output
+			byte[] out = new byte[length];
+			int outPos = 0;
+
+			while (magic == BLOCK_MAGIC)
+			{
+				outPos = decodeBlock(out, outPos);
+				magic = readMagic();
+			}
+
+			if (magic != END_OF_STREAM_MAGIC)
+			{
+				throw new IOException("Bad bzip2 block header");
+			}
+
+			readBits(32); // combined crc, the block crcs have already been checked
+
+			if (outPos != length)
+			{
+				throw new IOException("Decompressed length mismatch, expected " + length + " got " + outPos);
+			}
+
+			return out;
+		}
+		finally
+		{
+			this.in = null;
+		}
+	}
+
+	private long readMagic() throws IOException
+	{
+		return ((long) readBits(24) << 24) | readBits(24);
+	}
+
+	private int decodeBlock(byte[] out, int outPos) throws IOException
+	{
+		int storedCrc = readBits(32);
+		if (readBits(1) != 0)
+		{
+			throw new IOException("Randomized bzip2 blocks are not supported");
+		}
+
+		int origPtr = readBits(24);
+
+		int nInUse = readMappingTable();
+		int alphaSize = nInUse + 2;
+		int eob = nInUse + 1;
+
+		int nGroups = readBits(3);
+		if (nGroups < 2 || nGroups > MAX_GROUPS)
+		{
+			throw new IOException("Bad number of huffman groups " + nGroups);
+		}
+
+		int nSelectors = readSelectors(nGroups);
+		readCodingTables(nGroups, alphaSize);
+
+		// decode the mtf/rle2 symbols into tt
+		int[] tt = this.tt;
+		int[] unzftab = this.unzftab;
+		byte[] yy = this.yy;
+		byte[] seqToUnseq = this.seqToUnseq;
+
+		for (int i = 0; i < 256; ++i)
+		{
+			unzftab[i] = 0;
+			yy[i] = (byte) i;
+		}
+
+		groupNo = -1;
+		groupPos = 0;
+
+		int nblock = 0;
+		int nextSym = readSymbol(nSelectors);
+		while (nextSym != eob)
+		{
+			if (nextSym == RUNA || nextSym == RUNB)
+			{
+				int es = 0;
+				int n = 1;
+				do
+				{
+					es += nextSym == RUNA ? n : n << 1;
+					n <<= 1;
+					if (n > BLOCK_SIZE * 2)
+					{
+						throw new IOException("Run too long");
+					}
+					nextSym = readSymbol(nSelectors);
+				}
+				while (nextSym == RUNA || nextSym == RUNB);
+
+				int uc = seqToUnseq[yy[0] & 0xFF] & 0xFF;
+				if (nblock + es > BLOCK_SIZE)
+				{
+					throw new IOException("Block overrun");
+				}
+
+				unzftab[uc] += es;
+				while (es-- > 0)
+				{
+					tt[nblock++] = uc;
+				}
+			}
+			else
+			{
+				if (nblock >= BLOCK_SIZE)
+				{
+					throw new IOException("Block overrun");
+				}
+
+				int nn = nextSym - 1;
+				byte v = yy[nn];
+				System.arraycopy(yy, 0, yy, 1, nn);
+				yy[0] = v;
+
+				int uc = seqToUnseq[v & 0xFF] & 0xFF;
+				++unzftab[uc];
+				tt[nblock++] = uc;
+
+				nextSym = readSymbol(nSelectors);
+			}
+		}
+
+		if (origPtr < 0 || origPtr >= nblock)
+		{
+			throw new IOException("Bad origPtr " + origPtr);
+		}
+
+		// inverse bwt, linking each entry to the next in the upper 24 bits
+		int[] cftab = this.cftab;
+		cftab[0] = 0;
+		for (int i = 0; i < 256; ++i)
+		{
+			cftab[i + 1] = cftab[i] + unzftab[i];
+		}
+
+		for (int i = 0; i < nblock; ++i)
+		{
+			int uc = tt[i] & 0xFF;
+			tt[cftab[uc]++] |= i << 8;
+		}
+
+		// walk the chain, undoing the initial run length encoding
+		int crc = -1;
+		int tPos = tt[origPtr] >>> 8;
+		int last = -1;
+		int runLength = 0;
+		for (int i = 0; i < nblock; ++i)
+		{
+			tPos = tt[tPos];
+			int ch = tPos & 0xFF;
+			tPos >>>= 8;
+
+			if (runLength == 4)
+			{
+				// ch is the number of extra copies of the previous byte
+				if (outPos + ch > out.length)
+				{
+					throw new IOException("Decompressed data is too long");
+				}
+
+				for (int j = 0; j < ch; ++j)
+				{
+					out[outPos++] = (byte) last;
+					crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ last) & 0xFF];
+				}
+
+				runLength = 0;
+				continue;
+			}
+
+			if (ch == last)
+			{
+				++runLength;
+			}
+			else
+			{
+				runLength = 1;
+				last = ch;
+			}
+
+			if (outPos >= out.length)
+			{
+				throw new IOException("Decompressed data is too long");
+			}
+
+			out[outPos++] = (byte) ch;
+			crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ ch) & 0xFF];
+		}
+
+		if (~crc != storedCrc)
+		{
+			throw new IOException("bzip2 block crc mismatch");
+		}
+
+		return outPos;
+	}
+
+	private int readMappingTable() throws IOException
+	{
+		int used = readBits(16);
+		for (int i = 0; i < 256; ++i)
+		{
+			inUse[i] = false;
+		}
+
+		for (int i = 0; i < 16; ++i)
+		{
+			if ((used & (0x8000 >>> i)) != 0)
+			{
+				int bits = readBits(16);
+				for (int j = 0; j < 16; ++j)
+				{
+					if ((bits & (0x8000 >>> j)) != 0)
+					{
+						inUse[i * 16 + j] = true;
+					}
+				}
+			}
+		}
+
+		int nInUse = 0;
+		for (int i = 0; i < 256; ++i)
+		{
+			if (inUse[i])
+			{
+				seqToUnseq[nInUse++] = (byte) i;
+			}
+		}
+
+		if (nInUse == 0)
+		{
+			throw new IOException("No symbols in use");
+		}
+
+		return nInUse;
+	}
+
+	private int readSelectors(int nGroups) throws IOException
+	{
+		int nSelectors = readBits(15);
+		if (nSelectors < 1)
+		{
+			throw new IOException("Bad number of selectors " + nSelectors);
+		}
+
+		for (int i = 0; i < nGroups; ++i)
+		{
+			selectorMtf[i] = (byte) i;
+		}
+
+		for (int i = 0; i < nSelectors; ++i)
+		{
+			int j = 0;
+			while (readBits(1) == 1)
+			{
+				if (++j >= nGroups)
+				{
+					throw new IOException("Bad selector");
+				}
+			}
+
+			// undo the mtf encoding of the selectors
+			byte v = selectorMtf[j];
+			for (; j > 0; --j)
+			{
+				selectorMtf[j] = selectorMtf[j - 1];
+			}
+			selectorMtf[0] = v;
+			selectors[i] = v;
+		}
+
+		return nSelectors;
+	}
+
+	private void readCodingTables(int nGroups, int alphaSize) throws IOException
+	{
+		for (int t = 0; t < nGroups; ++t)
+		{
+			byte[] len = lengths[t];
+			int curr = readBits(5);
+			int minLen = 32;
+			int maxLen = 0;
+
+			for (int i = 0; i < alphaSize; ++i)
+			{
+				while (true)
+				{
+					if (curr < 1 || curr > MAX_CODE_LEN)
+					{
+						throw new IOException("Bad code length " + curr);
+					}
+
+					if (readBits(1) == 0)
+					{
+						break;
+					}
+
+					curr += readBits(1) == 0 ? 1 : -1;
+				}
+
+				len[i] = (byte) curr;
+				minLen = Math.min(minLen, curr);
+				maxLen = Math.max(maxLen, curr);
+			}
+
+			createDecodeTables(limit[t], base[t], perm[t], len, minLen, maxLen, alphaSize);
+			minLens[t] = minLen;
+		}
+	}
+
+	private static void createDecodeTables(int[] limit, int[] base, int[] perm, byte[] length,
+		int minLen, int maxLen, int alphaSize)
+	{
+		int pp = 0;
+		for (int i = minLen; i <= maxLen; ++i)
+		{
+			for (int j = 0; j < alphaSize; ++j)
+			{
+				if (length[j] == i)
+				{
+					perm[pp++] = j;
+				}
+			}
+		}
+
+		for (int i = 0; i < base.length; ++i)
+		{
+			base[i] = 0;
+			limit[i] = 0;
+		}
+
+		for (int i = 0; i < alphaSize; ++i)
+		{
+			++base[length[i] + 1];
+		}
+
+		for (int i = 1; i < base.length; ++i)
+		{
+			base[i] += base[i - 1];
+		}
+
+		int vec = 0;
+		for (int i = minLen; i <= maxLen; ++i)
+		{
+			vec += base[i + 1] - base[i];
+			limit[i] = vec - 1;
+			vec <<= 1;
+		}
+
+		for (int i = minLen + 1; i <= maxLen; ++i)
+		{
+			base[i] = ((limit[i - 1] + 1) << 1) - base[i];
+		}
+
+		// anything longer than maxLen is invalid
+		for (int i = maxLen + 1; i < limit.length; ++i)
+		{
+			limit[i] = Integer.MAX_VALUE;
+		}
+	}
+
+	private int readSymbol(int nSelectors) throws IOException
+	{
+		if (groupPos == 0)
+		{
+			if (++groupNo >= nSelectors)
+			{
+				throw new IOException("Ran out of selectors");
+			}
+			groupPos = GROUP_SIZE;
+		}
+		--groupPos;
+
+		int group = selectors[groupNo];
+		int[] limit = this.limit[group];
+
+		int zn = minLens[group];
+		int zvec = readBits(zn);
+		while (zvec > limit[zn])
+		{
+			if (++zn > MAX_CODE_LEN)
+			{
+				throw new IOException("Bad huffman code");
+			}
+			zvec = (zvec << 1) | readBits(1);
+		}
+
+		int idx = zvec - base[group][zn];
+		if (idx < 0 || idx >= MAX_ALPHA_SIZE)
+		{
+			throw new IOException("Bad huffman code");
+		}
+		return perm[group][idx];
+	}
+
+	private int readBits(int n) throws IOException
+	{
+		while (bitCount < n)
+		{
+			if (bufferPosition == bufferLimit)
+			{
+				fill();
+			}
+
+			bitBuffer = (bitBuffer << 8) | (buffer[bufferPosition++] & 0xFF);
+			bitCount += 8;
+		}
+
+		bitCount -= n;
+		return (int) ((bitBuffer >>> bitCount) & ((1L << n) - 1));
+	}
+
+	private void fill() throws IOException
+	{
+		int n = in.read(buffer, 0, buffer.length);
+		if (n <= 0)
+		{
+			throw new EOFException("Unexpected end of bzip2 data");
+		}
+
+		bufferPosition = 0;
+		bufferLimit = n;
+	}
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Gzip codec which drives pooled {@link Inflater}s and {@link Deflater}s
+ * directly, rather than creating new gzip streams for each container.
+ */
+public class GZipCodec implements CompressionCodec
+{
+	private static final int GZIP_MAGIC = 0x8b1f;
+
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+
+	// same header as GZIPOutputStream
+	private static final byte[] HEADER = new byte[]
+	{
+		(byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+	};
+
+	private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors() * 2;
+
+	private final BlockingQueue<Decoder> decoders = new ArrayBlockingQueue<>(POOL_SIZE);
+	private final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+	private static class Decoder
+	{
+		private final Inflater inflater = new Inflater(true);
+		private final CRC32 crc = new CRC32();
+		private final byte[] buffer = new byte[4096];
+		private final byte[] overflow = new byte[1];
+		private InputStream in;
+		private int position;
+		private int limit;
+
+		private int readByte() throws IOException
+		{
+			if (position == limit)
+			{
+				fill();
+			}
+			return buffer[position++] & 0xFF;
+		}
+
+		private void fill() throws IOException
+		{
+			int n = in.read(buffer, 0, buffer.length);
+			if (n <= 0)
+			{
+				throw new EOFException("Unexpected end of gzip data");
+			}
+
+			position = 0;
+			limit = n;
+		}
+
+		private void reset()
+		{
+			inflater.reset();
+			in = null;
+			position = limit = 0;
+		}
+	}
+
+	@Override
+	public byte[] compress(byte[] data) throws IOException
+	{
+		Deflater deflater = deflaters.poll();
+		if (deflater == null)
+		{
+			deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		}
+
+		try
+		{
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + HEADER.length + 8);
+			out.write(HEADER);
+
+			deflater.setInput(data);
+			deflater.finish();
+
+			byte[] buffer = new byte[4096];
+			while (!deflater.finished())
+			{
+				int n = deflater.deflate(buffer);
+				out.write(buffer, 0, n);
+			}
+
+			CRC32 crc = new CRC32();
+			crc.update(data, 0, data.length);
+			writeIntLE(out, (int) crc.getValue());
+			writeIntLE(out, data.length);
+
+			return out.toByteArray();
+		}
+		finally
+		{
+			deflater.reset();
+			if (!deflaters.offer(deflater))
+			{
+				deflater.end();
+			}
+		}
+	}
+
+	@Override
+	public byte[] decompress(InputStream in, int length) throws IOException
+	{
+		Decoder decoder = decoders.poll();
+		if (decoder == null)
+		{
+			decoder = new Decoder();
+		}
+
+		try
+		{
+			decoder.in = in;
+			readHeader(decoder);
+
+			byte[] out = new byte[length];
+			inflate(decoder, out);
+			readTrailer(decoder, out);
+			return out;
+		}
+		catch (DataFormatException ex)
+		{
+			throw new IOException(ex);
+		}
+		finally
+		{
+			decoder.reset();
+			if (!decoders.offer(decoder))
+			{
+				decoder.inflater.end();
+			}
+		}
+	}
+
+	private static void readHeader(Decoder decoder) throws IOException
+	{
+		int magic = decoder.readByte() | (decoder.readByte() << 8);
+		if (magic != GZIP_MAGIC)
+		{
+			throw new IOException("Not in gzip format");
+		}
+
+		if (decoder.readByte() != Deflater.DEFLATED)
+		{
+			throw new IOException("Unsupported compression method");
+		}
+
+		int flags = decoder.readByte();
+		for (int i = 0; i < 6; ++i)
+		{
+			decoder.readByte(); // mtime, xfl, os
+		}
+
+		if ((flags & FEXTRA) != 0)
+		{
+			int len = decoder.readByte() | (decoder.readByte() << 8);
+			for (int i = 0; i < len; ++i)
+			{
+				decoder.readByte();
+			}
+		}
+
+		if ((flags & FNAME) != 0)
+		{
+			while (decoder.readByte() != 0)
+			{
+			}
+		}
+
+		if ((flags & FCOMMENT) != 0)
+		{
+			while (decoder.readByte() != 0)
+			{
+			}
+		}
+
+		if ((flags & FHCRC) != 0)
+		{
+			decoder.readByte();
+			decoder.readByte();
+		}
+	}
+
+	private static void inflate(Decoder decoder, byte[] out) throws IOException, DataFormatException
+	{
+		Inflater inflater = decoder.inflater;
+		inflater.setInput(decoder.buffer, decoder.position, decoder.limit - decoder.position);
+
+		int off = 0;
+		while (!inflater.finished())
+		{
+			if (inflater.needsInput())
+			{
+				decoder.fill();
+				inflater.setInput(decoder.buffer, 0, decoder.limit);
+			}
+
+			if (off < out.length)
+			{
+				off += inflater.inflate(out, off, out.length - off);
+			}
+			else if (inflater.inflate(decoder.overflow) > 0)
+			{
+				throw new IOException("Decompressed data is too long");
+			}
+
+			if (inflater.needsDictionary())
+			{
+				throw new IOException("Unexpected preset dictionary");
+			}
+		}
+
+		if (off != out.length)
+		{
+			throw new IOException("Decompressed length mismatch, expected " + out.length + " got " + off);
+		}
+
+		// the trailer follows whatever the inflater didn't consume
+		decoder.position = decoder.limit - inflater.getRemaining();
+	}
+
+	private static void readTrailer(Decoder decoder, byte[] out) throws IOException
+	{
+		int crc = readIntLE(decoder);
+		int size = readIntLE(decoder);
+
+		decoder.crc.reset();
+		decoder.crc.update(out, 0, out.length);
+		if ((int) decoder.crc.getValue() != crc)
+		{
+			throw new IOException("Corrupt gzip trailer");
+		}
+
+		if (size != out.length)
+		{
+			throw new IOException("Corrupt gzip trailer");
+		}
+	}
+
+	private static int readIntLE(Decoder decoder) throws IOException
+	{
+		return decoder.readByte()
+			| (decoder.readByte() << 8)
+			| (decoder.readByte() << 16)
+			| (decoder.readByte() << 24);
+	}
+
+	private static void writeIntLE(ByteArrayOutputStream out, int i)
+	{
+		out.write(i);
+		out.write(i >> 8);
+		out.write(i >> 16);
+		out.write(i >> 24);
+	}
+}
@@ -24,65 +24,160 @@
  */
 package net.runelite.cache.util;
 
-import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 
+/**
+ * Xtea cipher. The key schedule is computed once when the cipher is
+ * created, and instances are immutable, so one instance can be shared
+ * between threads and reused for any number of archives encrypted with
+ * the same key.
+ */
 public class Xtea
 {
 	private static final int GOLDEN_RATIO = 0x9E3779B9;
 
 	private static final int ROUNDS = 32;
 
-	private final int[] key;
+	private static final int BLOCK_SIZE = 8;
+
+	/**
+	 * Round keys, two per round. Entry 2n is the sum plus key word used to
+	 * update v0 in round n, and entry 2n + 1 the one used to update v1.
+	 */
+	private final int[] schedule = new int[ROUNDS * 2];
 
 	public Xtea(int[] key)
 	{
-		this.key = key;
+		int sum = 0;
+		for (int i = 0; i < ROUNDS; ++i)
+		{
+			schedule[i * 2] = sum + key[sum & 3];
+			sum += GOLDEN_RATIO;
+			schedule[i * 2 + 1] = sum + key[(sum >>> 11) & 3];
+		}
 	}
 
 	public byte[] encrypt(byte[] data, int len)
 	{
-		ByteBuf buf = Unpooled.wrappedBuffer(data, 0, len);
-		ByteBuf out = Unpooled.buffer(len);
-		int numBlocks = len / 8;
-		for (int block = 0; block < numBlocks; ++block)
+		byte[] out = Arrays.copyOf(data, len);
+		encrypt(out, 0, len);
+		return out;
+	}
+
+	public byte[] decrypt(byte[] data, int len)
+	{
+		byte[] out = Arrays.copyOf(data, len);
+		decrypt(out, 0, len);
+		return out;
+	}
+
+	/**
+	 * Encrypt the whole blocks of a range of an array in place. Any
+	 * trailing partial block is left untouched.
+	 *
+	 * @param data data to encrypt
+	 * @param offset start of the range
+	 * @param length length of the range
+	 */
+	public void encrypt(byte[] data, int offset, int length)
+	{
+		int end = offset + (length & ~(BLOCK_SIZE - 1));
+		for (int pos = offset; pos < end; pos += BLOCK_SIZE)
 		{
-			int v0 = buf.readInt();
-			int v1 = buf.readInt();
-			int sum = 0;
-			for (int i = 0; i < ROUNDS; ++i)
+			int v0 = getInt(data, pos);
+			int v1 = getInt(data, pos + 4);
+			for (int i = 0; i < ROUNDS * 2; i += 2)
 			{
-				v0 += (((v1 << 4) ^ (v1 >>> 5)) + v1) ^ (sum + key[sum & 3]);
-				sum += GOLDEN_RATIO;
-				v1 += (((v0 << 4) ^ (v0 >>> 5)) + v0) ^ (sum + key[(sum >>> 11) & 3]);
+				v0 += (((v1 << 4) ^ (v1 >>> 5)) + v1) ^ schedule[i];
+				v1 += (((v0 << 4) ^ (v0 >>> 5)) + v0) ^ schedule[i + 1];
 			}
-			out.writeInt(v0);
-			out.writeInt(v1);
+			putInt(data, pos, v0);
+			putInt(data, pos + 4, v1);
 		}
-		out.writeBytes(buf);
-		return out.array();
 	}
 
-	public byte[] decrypt(byte[] data, int len)
+	/**
+	 * Decrypt the whole blocks of a range of an array in place. Any
+	 * trailing partial block is left untouched.
+	 *
+	 * @param data data to decrypt
+	 * @param offset start of the range
+	 * @param length length of the range
+	 */
+	public void decrypt(byte[] data, int offset, int length)
+	{
+		int end = offset + (length & ~(BLOCK_SIZE - 1));
+		for (int pos = offset; pos < end; pos += BLOCK_SIZE)
+		{
+			int v0 = getInt(data, pos);
+			int v1 = getInt(data, pos + 4);
+			for (int i = ROUNDS * 2 - 2; i >= 0; i -= 2)
+			{
+				v1 -= (((v0 << 4) ^ (v0 >>> 5)) + v0) ^ schedule[i + 1];
+				v0 -= (((v1 << 4) ^ (v1 >>> 5)) + v1) ^ schedule[i];
+			}
+			putInt(data, pos, v0);
+			putInt(data, pos + 4, v1);
+		}
+	}
+
+	/**
+	 * Decrypt the whole blocks of a range of a buffer in place, using
+	 * absolute reads and writes so the position and limit of the buffer
+	 * are not changed. Any trailing partial block is left untouched.
+	 *
+	 * @param buffer buffer to decrypt
+	 * @param offset start of the range
+	 * @param length length of the range
+	 */
+	public void decrypt(ByteBuffer buffer, int offset, int length)
 	{
-		ByteBuf buf = Unpooled.wrappedBuffer(data, 0, len);
-		ByteBuf out = Unpooled.buffer(len);
-		int numBlocks = len / 8;
-		for (int block = 0; block < numBlocks; ++block)
+		if (buffer.hasArray())
+		{
+			decrypt(buffer.array(), buffer.arrayOffset() + offset, length);
+			return;
+		}
+
+		// the cipher works on big endian words
+		boolean swap = buffer.order() != ByteOrder.BIG_ENDIAN;
+		int end = offset + (length & ~(BLOCK_SIZE - 1));
+		for (int pos = offset; pos < end; pos += BLOCK_SIZE)
 		{
-			int v0 = buf.readInt();
-			int v1 = buf.readInt();
-			int sum = GOLDEN_RATIO * ROUNDS;
-			for (int i = 0; i < ROUNDS; ++i)
+			int v0 = buffer.getInt(pos);
+			int v1 = buffer.getInt(pos + 4);
+			if (swap)
+			{
+				v0 = Integer.reverseBytes(v0);
+				v1 = Integer.reverseBytes(v1);
+			}
+			for (int i = ROUNDS * 2 - 2; i >= 0; i -= 2)
 			{
-				v1 -= (((v0 << 4) ^ (v0 >>> 5)) + v0) ^ (sum + key[(sum >>> 11) & 3]);
-				sum -= GOLDEN_RATIO;
-				v0 -= (((v1 << 4) ^ (v1 >>> 5)) + v1) ^ (sum + key[sum & 3]);
+				v1 -= (((v0 << 4) ^ (v0 >>> 5)) + v0) ^ schedule[i + 1];
+				v0 -= (((v1 << 4) ^ (v1 >>> 5)) + v1) ^ schedule[i];
 			}
-			out.writeInt(v0);
-			out.writeInt(v1);
+			if (swap)
+			{
+				v0 = Integer.reverseBytes(v0);
+				v1 = Integer.reverseBytes(v1);
+			}
+			buffer.putInt(pos, v0);
+			buffer.putInt(pos + 4, v1);
 		}
-		out.writeBytes(buf);
-		return out.array();
+	}
+
+	private static int getInt(byte[] data, int pos)
+	{
+		return ((data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16)
+			| ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+	}
+
+	private static void putInt(byte[] data, int pos, int value)
+	{
+		data[pos] = (byte) (value >> 24);
+		data[pos + 1] = (byte) (value >> 16);
+		data[pos + 2] = (byte) (value >> 8);
+		data[pos + 3] = (byte) value;
 	}
 }
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.util;
+
+import com.google.common.io.ByteStreams;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Decrypts an Xtea encrypted stream as it is read. Data is decrypted in
+ * place in the caller's buffer where possible. As with
+ * {@link Xtea#decrypt(byte[], int)}, trailing bytes which don't fill a
+ * whole block are passed through unchanged.
+ */
+public class XteaInputStream extends FilterInputStream
+{
+	private static final int BLOCK_SIZE = 8;
+
+	private final Xtea xtea;
+	private final byte[] block = new byte[BLOCK_SIZE];
+	private int position, limit; // unread decrypted bytes in block
+
+	public XteaInputStream(InputStream in, int[] keys)
+	{
+		this(in, new Xtea(keys));
+	}
+
+	public XteaInputStream(InputStream in, Xtea xtea)
+	{
+		super(in);
+		this.xtea = xtea;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		if (position == limit && !fill())
+		{
+			return -1;
+		}
+
+		return block[position++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+		{
+			return 0;
+		}
+
+		if (position == limit)
+		{
+			int whole = len & ~(BLOCK_SIZE - 1);
+			if (whole > 0)
+			{
+				// read whole blocks straight into the caller's buffer. A short
+				// read here means end of stream, so any partial block at the
+				// end is the unencrypted tail.
+				int n = ByteStreams.read(in, b, off, whole);
+				if (n == 0)
+				{
+					return -1;
+				}
+
+				xtea.decrypt(b, off, n);
+				return n;
+			}
+
+			if (!fill())
+			{
+				return -1;
+			}
+		}
+
+		int n = Math.min(len, limit - position);
+		System.arraycopy(block, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public long skip(long n) throws IOException
+	{
+		long skipped = 0;
+		while (skipped < n && (position < limit || fill()))
+		{
+			int k = (int) Math.min(n - skipped, limit - position);
+			position += k;
+			skipped += k;
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() throws IOException
+	{
+		return limit - position;
+	}
+
+	@Override
+	public boolean markSupported()
+	{
+		return false;
+	}
+
+	private boolean fill() throws IOException
+	{
+		int n = ByteStreams.read(in, block, 0, BLOCK_SIZE);
+		if (n == 0)
+		{
+			return false;
+		}
+
+		xtea.decrypt(block, 0, n);
+		position = 0;
+		limit = n;
+		return true;
+	}
+}
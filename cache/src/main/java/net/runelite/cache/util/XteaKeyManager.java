@@ -27,6 +27,7 @@ package net.runelite.cache.util;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import net.runelite.http.api.xtea.XteaClient;
 import net.runelite.http.api.xtea.XteaKey;
 import org.slf4j.Logger;
@@ -37,6 +38,7 @@ public class XteaKeyManager
 	private static final Logger logger = LoggerFactory.getLogger(XteaKeyManager.class);
 
 	private final Map<Integer, int[]> keys = new HashMap<>();
+	private final Map<Integer, Xtea> ciphers = new ConcurrentHashMap<>();
 
 	public void loadKeys()
 	{
@@ -56,6 +58,7 @@ public class XteaKeyManager
 			return;
 		}
 
+		ciphers.clear();
 		logger.info("Loaded {} keys", keys.size());
 	}
 
@@ -63,4 +66,34 @@ public class XteaKeyManager
 	{
 		return keys.get(region);
 	}
+
+	public void setKeys(int region, int[] keys)
+	{
+		this.keys.put(region, keys);
+		ciphers.remove(region);
+	}
+
+	/**
+	 * Get the cipher for a region. The key schedule is computed on first
+	 * use and shared by every later caller.
+	 *
+	 * @param region region id
+	 * @return the cipher, or null if there are no keys for the region
+	 */
+	public Xtea getXtea(int region)
+	{
+		Xtea xtea = ciphers.get(region);
+		if (xtea == null)
+		{
+			int[] k = keys.get(region);
+			if (k == null)
+			{
+				return null;
+			}
+
+			xtea = new Xtea(k);
+			ciphers.put(region, xtea);
+		}
+		return xtea;
+	}
 }
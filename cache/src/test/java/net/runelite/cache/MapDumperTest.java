@@ -40,6 +40,7 @@ import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Index;
 import net.runelite.cache.fs.Storage;
 import net.runelite.cache.fs.Store;
+import net.runelite.cache.util.Xtea;
 import net.runelite.cache.util.XteaKeyManager;
 import org.junit.Ignore;
 import org.junit.Rule;
@@ -76,7 +77,7 @@ public class MapDumperTest
 
 			for (int i = 0; i < MAX_REGIONS; i++)
 			{
-				int[] keys = keyManager.getKeys(i);
+				Xtea xtea = keyManager.getXtea(i);
 
 				int x = i >> 8;
 				int y = i & 0xFF;
@@ -95,11 +96,11 @@ public class MapDumperTest
 
 				Files.write(data, new File(outDir, "m" + x + "_" + y + ".dat"));
 
-				if (keys != null)
+				if (xtea != null)
 				{
 					try
 					{
-						data = land.decompress(storage.loadArchive(land), keys);
+						data = storage.loadArchiveContents(land, xtea);
 					}
 					catch (IOException ex)
 					{
@@ -142,12 +143,12 @@ public class MapDumperTest
 			MapDefinition mapDef = new MapLoader().load(x, y, data);
 			LocationsDefinition locDef = null;
 
-			int[] keys = keyManager.getKeys(i);
-			if (keys != null)
+			Xtea xtea = keyManager.getXtea(i);
+			if (xtea != null)
 			{
 				try
 				{
-					data = land.decompress(storage.loadArchive(land), keys);
+					data = storage.loadArchiveContents(land, xtea);
 				}
 				catch (IOException ex)
 				{
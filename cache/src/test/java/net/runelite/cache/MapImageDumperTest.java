@@ -24,13 +24,23 @@
  */
 package net.runelite.cache;
 
+import java.awt.Color;
+import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import javax.imageio.ImageIO;
 import net.runelite.cache.fs.Store;
 import net.runelite.cache.region.Region;
 import net.runelite.cache.region.RegionLoader;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import org.junit.Ignore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -97,4 +107,109 @@ public class MapImageDumperTest
 			}
 		}
 	}
+
+	@Test
+	@Ignore
+	public void dumpTiles() throws IOException
+	{
+		File base = StoreLocation.LOCATION,
+			outDir = folder.newFolder();
+
+		try (Store store = new Store(base))
+		{
+			store.load();
+
+			MapImageDumper dumper = new MapImageDumper(store);
+			dumper.load();
+
+			ForkJoinPool pool = new ForkJoinPool();
+			try
+			{
+				for (int i = 0; i < Region.Z; ++i)
+				{
+					File planeDir = new File(outDir, Integer.toString(i));
+					dumper.drawTiles(i, planeDir, 0, pool);
+					logger.info("Wrote tiles to {}", planeDir);
+				}
+			}
+			finally
+			{
+				pool.shutdown();
+			}
+		}
+	}
+
+	@Test
+	public void testTilePyramid() throws IOException
+	{
+		File outDir = folder.newFolder();
+
+		Map<Integer, Color> colors = new HashMap<>();
+		colors.put(50 << 8 | 50, Color.RED);
+		colors.put(51 << 8 | 50, Color.GREEN);
+		colors.put(50 << 8 | 51, Color.BLUE);
+
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try
+		{
+			MapImageDumper.drawTiles(Arrays.asList(new Region(50, 50), new Region(51, 50), new Region(50, 51)),
+				region -> fill(colors.get(region.getRegionID())), outDir, MapImageDumper.MAX_ZOOM - 2, pool);
+		}
+		finally
+		{
+			pool.shutdown();
+		}
+
+		// one tile per region, with y counting down from the north
+		assertColor(Color.RED, readTile(outDir, 8, 50, 205), MapImageDumper.TILE_SIZE / 2, MapImageDumper.TILE_SIZE / 2);
+		assertColor(Color.GREEN, readTile(outDir, 8, 51, 205), MapImageDumper.TILE_SIZE / 2, MapImageDumper.TILE_SIZE / 2);
+		assertColor(Color.BLUE, readTile(outDir, 8, 50, 204), MapImageDumper.TILE_SIZE / 2, MapImageDumper.TILE_SIZE / 2);
+		assertArrayEquals(new String[]{"50", "51"}, sorted(new File(outDir, "8").list()));
+
+		// the four children scaled into the quadrants of their parent, the
+		// missing north east child left empty
+		BufferedImage parent = readTile(outDir, 7, 25, 102);
+		int quarter = MapImageDumper.TILE_SIZE / 4;
+		assertColor(Color.BLUE, parent, quarter, quarter);
+		assertColor(Color.BLACK, parent, 3 * quarter, quarter);
+		assertColor(Color.RED, parent, quarter, 3 * quarter);
+		assertColor(Color.GREEN, parent, 3 * quarter, 3 * quarter);
+		assertEquals(1, new File(outDir, "7").list().length);
+
+		// and that tile in the north east quadrant of its own parent
+		BufferedImage grandparent = readTile(outDir, 6, 12, 51);
+		assertColor(Color.BLUE, grandparent, 2 * quarter + quarter / 2, quarter / 2);
+		assertColor(Color.GREEN, grandparent, 3 * quarter + quarter / 2, quarter + quarter / 2);
+		assertColor(Color.BLACK, grandparent, quarter, 3 * quarter);
+
+		assertFalse(new File(outDir, "5").exists());
+	}
+
+	private static BufferedImage fill(Color color)
+	{
+		BufferedImage image = new BufferedImage(MapImageDumper.TILE_SIZE, MapImageDumper.TILE_SIZE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setColor(color);
+		graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+		graphics.dispose();
+		return image;
+	}
+
+	private static BufferedImage readTile(File outDir, int zoom, int x, int y) throws IOException
+	{
+		File file = new File(outDir, zoom + File.separator + x + File.separator + y + ".png");
+		assertTrue("missing tile " + file, file.exists());
+		return ImageIO.read(file);
+	}
+
+	private static void assertColor(Color expected, BufferedImage image, int x, int y)
+	{
+		assertEquals(expected.getRGB() & 0xFFFFFF, image.getRGB(x, y) & 0xFFFFFF);
+	}
+
+	private static String[] sorted(String[] names)
+	{
+		Arrays.sort(names);
+		return names;
+	}
 }
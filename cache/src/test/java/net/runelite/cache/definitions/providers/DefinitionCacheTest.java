@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.definitions.providers;
+
+import java.io.File;
+import java.io.IOException;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.savers.ItemSaver;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.fs.jagex.CompressionType;
+import net.runelite.cache.index.FileData;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DefinitionCacheTest
+{
+	private static final int ITEMS = 16;
+
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testItemProvider() throws IOException
+	{
+		File root = folder.newFolder();
+		createStore(root);
+
+		try (Store store = new Store(root))
+		{
+			store.load();
+
+			DefinitionCache cache = new DefinitionCache(store);
+			LazyItemProvider provider = new LazyItemProvider(cache);
+
+			ItemDefinition item = provider.provide(3);
+			assertEquals("Item 3", item.name);
+			assertEquals(300, item.cost);
+
+			// every call decodes a new definition, so changes to one don't leak
+			item.name = "Changed";
+			ItemDefinition item2 = provider.provide(3);
+			assertNotSame(item, item2);
+			assertEquals("Item 3", item2.name);
+
+			assertNull(provider.provide(ITEMS));
+
+			// only the archive is cached, not the definitions
+			assertEquals(1, cache.size());
+		}
+	}
+
+	@Test
+	public void testArchive() throws IOException
+	{
+		File root = folder.newFolder();
+		createStore(root);
+
+		try (Store store = new Store(root))
+		{
+			store.load();
+
+			DefinitionCache cache = new DefinitionCache(store);
+
+			byte[] data = cache.getArchive(IndexType.CONFIGS, ConfigType.ITEM.getId());
+			assertSame(data, cache.getArchive(IndexType.CONFIGS, ConfigType.ITEM.getId()));
+
+			Archive archive = store.getIndex(IndexType.CONFIGS).getArchive(ConfigType.ITEM.getId());
+			assertArrayEquals(data, archive.decompress(store.getStorage().loadArchive(archive)));
+
+			ArchiveFiles files = archive.loadFiles(data);
+			assertArrayEquals(files.findFile(5).getContents(), cache.getFile(IndexType.CONFIGS, ConfigType.ITEM.getId(), 5));
+			assertNull(cache.getFile(IndexType.CONFIGS, ConfigType.ITEM.getId(), ITEMS));
+
+			assertNull(cache.getArchive(IndexType.CONFIGS, ConfigType.NPC.getId()));
+			assertNull(cache.getArchive(IndexType.MODELS, 0));
+		}
+	}
+
+	@Test
+	public void testEviction() throws IOException
+	{
+		File root = folder.newFolder();
+		createStore(root);
+
+		try (Store store = new Store(root))
+		{
+			store.load();
+
+			// not enough room for the item archive
+			byte[] data = new DefinitionCache(store).getArchive(IndexType.CONFIGS, ConfigType.ITEM.getId());
+			DefinitionCache cache = new DefinitionCache(store, data.length - 1);
+			LazyItemProvider provider = new LazyItemProvider(cache);
+
+			for (int i = 0; i < ITEMS; ++i)
+			{
+				assertEquals("Item " + i, provider.provide(i).name);
+			}
+
+			assertEquals(0, cache.size());
+		}
+	}
+
+	private static void createStore(File root) throws IOException
+	{
+		try (Store store = new Store(root))
+		{
+			for (int i = 0; i <= IndexType.CONFIGS.getNumber(); ++i)
+			{
+				store.addIndex(i);
+			}
+
+			Index index = store.getIndex(IndexType.CONFIGS);
+			Archive archive = index.addArchive(ConfigType.ITEM.getId());
+			archive.setFileData(new FileData[ITEMS]);
+
+			ItemSaver saver = new ItemSaver();
+			ArchiveFiles files = new ArchiveFiles();
+			for (int i = 0; i < ITEMS; ++i)
+			{
+				ItemDefinition item = new ItemDefinition(i);
+				item.name = "Item " + i;
+				item.cost = i * 100;
+
+				FileData fileData = archive.getFileData()[i] = new FileData();
+				fileData.setId(i);
+
+				FSFile file = new FSFile(i);
+				file.setContents(saver.save(item));
+				files.addFile(file);
+			}
+
+			Container container = new Container(CompressionType.GZ, -1);
+			container.compress(files.saveContents(), null);
+			store.getStorage().saveArchive(archive, container.data);
+
+			store.save();
+		}
+	}
+}
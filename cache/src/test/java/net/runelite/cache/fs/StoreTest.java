@@ -26,8 +26,12 @@ package net.runelite.cache.fs;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.jagex.CompressionType;
 import net.runelite.cache.index.FileData;
 import org.junit.Assert;
 import org.junit.Rule;
@@ -148,4 +152,68 @@ public class StoreTest
 			}
 		}
 	}
+
+	@Test
+	public void testLoadArchivesParallel() throws IOException
+	{
+		Random random = new Random(44L);
+		File root = folder.newFolder();
+
+		try (Store store = new Store(root))
+		{
+			Index index = store.addIndex(0);
+
+			for (int i = 0; i < 32; ++i)
+			{
+				Archive archive = index.addArchive(i);
+				archive.setFileData(new FileData[2]);
+
+				ArchiveFiles files = new ArchiveFiles();
+				for (int j = 0; j < 2; ++j)
+				{
+					FileData fileData = archive.getFileData()[j] = new FileData();
+					fileData.setId(j);
+
+					byte[] contents = new byte[random.nextInt(4096)];
+					random.nextBytes(contents);
+
+					FSFile file = new FSFile(j);
+					file.setContents(contents);
+					files.addFile(file);
+				}
+
+				Container container = new Container(CompressionType.GZ, -1);
+				container.compress(files.saveContents(), null);
+				store.getStorage().saveArchive(archive, container.data);
+			}
+
+			store.save();
+
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			try (Store store2 = new Store(root))
+			{
+				store2.load();
+
+				Index index2 = store2.findIndex(0);
+				List<ArchiveFiles> archiveFiles = store2.loadArchivesParallel(index2, executor);
+				Assert.assertEquals(index.getArchives().size(), archiveFiles.size());
+
+				random = new Random(44L);
+				for (ArchiveFiles files : archiveFiles)
+				{
+					for (int j = 0; j < 2; ++j)
+					{
+						byte[] contents = new byte[random.nextInt(4096)];
+						random.nextBytes(contents);
+
+						Assert.assertArrayEquals(contents, files.findFile(j).getContents());
+					}
+				}
+			}
+			finally
+			{
+				executor.shutdown();
+			}
+		}
+	}
 }
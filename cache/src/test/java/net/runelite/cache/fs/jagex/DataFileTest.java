@@ -26,6 +26,8 @@ package net.runelite.cache.fs.jagex;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.NavigableSet;
+import java.util.TreeSet;
 import net.runelite.cache.StoreLocation;
 import net.runelite.cache.fs.Container;
 import org.junit.Assert;
@@ -167,4 +169,56 @@ public class DataFileTest
 		Assert.assertEquals("testtesttesttest1", str);
 		Assert.assertEquals(42, res2.revision);
 	}
+
+	@Test
+	public void testWriteFreeSectors() throws IOException
+	{
+		File file = folder.newFile();
+		DataFile df = new DataFile(file);
+
+		byte[] data = new byte[2000];
+		for (int i = 0; i < data.length; ++i)
+		{
+			data[i] = (byte) i;
+		}
+
+		DataFileWriteResult res = df.write(42, 3, data);
+		DataFileWriteResult other = df.write(42, 4, new byte[100]);
+		long length = file.length();
+
+		int[] chain = df.readChain(42, 3, res.sector, res.compressedLength);
+		Assert.assertEquals(4, chain.length);
+		Assert.assertNull(df.readChain(42, 5, res.sector, res.compressedLength));
+
+		// data which fits is written entirely to the free sectors
+		NavigableSet<Integer> free = new TreeSet<>();
+		free.add(chain[1]);
+		free.add(chain[3]);
+
+		byte[] smaller = new byte[600];
+		for (int i = 0; i < smaller.length; ++i)
+		{
+			smaller[i] = (byte) (i * 3);
+		}
+
+		DataFileWriteResult res2 = df.write(42, 5, smaller, free);
+		Assert.assertEquals(chain[1], res2.sector);
+		Assert.assertTrue(free.isEmpty());
+		Assert.assertEquals(length, file.length());
+		Assert.assertArrayEquals(smaller, df.read(42, 5, res2.sector, res2.compressedLength));
+		Assert.assertArrayEquals(new int[]
+		{
+			chain[1], chain[3]
+		}, df.readChain(42, 5, res2.sector, res2.compressedLength));
+
+		// the rest is appended
+		free.add(chain[0]);
+		DataFileWriteResult res3 = df.write(42, 6, data, free);
+		Assert.assertEquals(chain[0], res3.sector);
+		Assert.assertTrue(file.length() > length);
+		Assert.assertArrayEquals(data, df.read(42, 6, res3.sector, res3.compressedLength));
+
+		Assert.assertArrayEquals(smaller, df.read(42, 5, res2.sector, res2.compressedLength));
+		Assert.assertArrayEquals(new byte[100], df.read(42, 4, other.sector, other.compressedLength));
+	}
 }
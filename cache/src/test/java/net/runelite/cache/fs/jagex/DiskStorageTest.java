@@ -25,6 +25,8 @@
 package net.runelite.cache.fs.jagex;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
 import net.runelite.cache.StoreLocation;
 import net.runelite.cache.fs.Archive;
 import net.runelite.cache.fs.Container;
@@ -99,4 +101,170 @@ public class DiskStorageTest
 		}
 	}
 
+	@Test
+	public void testSaveUnchanged() throws Exception
+	{
+		File file = folder.newFolder();
+		File dat = new File(file, DiskStorage.MAIN_FILE_CACHE_DAT);
+		saveTestArchive(file, "test");
+		long length = dat.length();
+
+		try (Store store = new Store(new DiskStorage(file)))
+		{
+			store.load();
+			assertFalse(store.findIndex(0).isDirty());
+
+			store.save();
+		}
+
+		assertEquals(length, dat.length());
+	}
+
+	@Test
+	public void testSaveArchiveReusesSectors() throws Exception
+	{
+		File file = folder.newFolder();
+		File dat = new File(file, DiskStorage.MAIN_FILE_CACHE_DAT);
+		saveTestArchive(file, "test");
+
+		DiskStorage storage = new DiskStorage(file);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+
+			// the first save appends, as the old copies are still in use
+			saveTestArchive(storage, store, "tset");
+			long sectors = sectors(dat);
+
+			// after which new copies go in the sectors of the old ones
+			for (String contents : new String[]
+			{
+				"sett", "ttse", "etst"
+			})
+			{
+				saveTestArchive(storage, store, contents);
+				assertEquals(sectors, sectors(dat));
+			}
+		}
+
+		assertArrayEquals("etst".getBytes(), loadTestArchive(file));
+	}
+
+	@Test
+	public void testCompact() throws Exception
+	{
+		File file = folder.newFolder();
+		File dat = new File(file, DiskStorage.MAIN_FILE_CACHE_DAT);
+		saveTestArchive(file, "test");
+		long length = dat.length();
+
+		// sectors freed in an earlier session are not reused
+		char[] big = new char[2000];
+		Arrays.fill(big, 'a');
+		saveTestArchive(file, new String(big));
+		saveTestArchive(file, "test");
+		assertTrue(dat.length() > length);
+
+		DiskStorage storage = new DiskStorage(file);
+		try (Store store = new Store(storage))
+		{
+			storage.compact();
+		}
+
+		// the compacted file only holds the index data and the archive
+		assertTrue(dat.length() <= length);
+		assertArrayEquals("test".getBytes(), loadTestArchive(file));
+
+		for (File f : file.listFiles())
+		{
+			assertFalse(f.getName().endsWith(DiskStorage.TMP_SUFFIX));
+		}
+		assertFalse(new File(file, DiskStorage.COMPACT_FILE).exists());
+	}
+
+	@Test
+	public void testCompactInterrupted() throws Exception
+	{
+		File file = folder.newFolder();
+		saveTestArchive(file, "test");
+
+		File other = folder.newFolder();
+		saveTestArchive(other, "other");
+
+		// the files of an incomplete compaction are removed
+		copyAsTmp(other, file);
+		assertArrayEquals("test".getBytes(), loadTestArchive(file));
+		assertFalse(new File(file, DiskStorage.MAIN_FILE_CACHE_DAT + DiskStorage.TMP_SUFFIX).exists());
+
+		// and those of a complete one are moved into place
+		copyAsTmp(other, file);
+		assertTrue(new File(file, DiskStorage.COMPACT_FILE).createNewFile());
+		assertArrayEquals("other".getBytes(), loadTestArchive(file));
+		assertFalse(new File(file, DiskStorage.MAIN_FILE_CACHE_DAT + DiskStorage.TMP_SUFFIX).exists());
+		assertFalse(new File(file, DiskStorage.COMPACT_FILE).exists());
+	}
+
+	private static long sectors(File dat)
+	{
+		return (dat.length() + 519) / 520;
+	}
+
+	private static void copyAsTmp(File from, File to) throws Exception
+	{
+		for (String name : new String[]
+		{
+			DiskStorage.MAIN_FILE_CACHE_DAT, DiskStorage.MAIN_FILE_CACHE_IDX + 0, DiskStorage.MAIN_FILE_CACHE_IDX + 255
+		})
+		{
+			Files.copy(new File(from, name).toPath(), new File(to, name + DiskStorage.TMP_SUFFIX).toPath());
+		}
+	}
+
+	private static void saveTestArchive(File file, String contents) throws Exception
+	{
+		DiskStorage storage = new DiskStorage(file);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+			saveTestArchive(storage, store, contents);
+		}
+	}
+
+	private static void saveTestArchive(DiskStorage storage, Store store, String contents) throws Exception
+	{
+		Index index = store.findIndex(0);
+		if (index == null)
+		{
+			index = store.addIndex(0);
+		}
+
+		Archive archive = index.getArchive(0);
+		if (archive == null)
+		{
+			archive = index.addArchive(0);
+			archive.setFileData(new FileData[]
+			{
+				new FileData()
+			});
+		}
+
+		Container container = new Container(CompressionType.NONE, -1);
+		container.compress(contents.getBytes(), null);
+		storage.saveArchive(archive, container.data);
+
+		store.save();
+	}
+
+	private static byte[] loadTestArchive(File file) throws Exception
+	{
+		DiskStorage storage = new DiskStorage(file);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+
+			Archive archive = store.findIndex(0).getArchive(0);
+			return archive.decompress(storage.loadArchive(archive));
+		}
+	}
+
 }
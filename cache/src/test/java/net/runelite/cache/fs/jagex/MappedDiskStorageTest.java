@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.fs.jagex;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import net.runelite.cache.StoreLocation;
+import net.runelite.cache.fs.Archive;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.Index;
+import net.runelite.cache.fs.Storage;
+import net.runelite.cache.fs.Store;
+import net.runelite.cache.index.FileData;
+import net.runelite.cache.util.Xtea;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MappedDiskStorageTest
+{
+	private static final int ARCHIVES = 64;
+
+	@Rule
+	public TemporaryFolder folder = StoreLocation.getTemporaryFolder();
+
+	@Test
+	public void testLoadArchive() throws Exception
+	{
+		File file = folder.newFolder();
+		DiskStorage diskStorage = new DiskStorage(file);
+		try (Store store = new Store(diskStorage))
+		{
+			Index index = store.addIndex(0);
+			for (int i = 0; i < ARCHIVES; ++i)
+			{
+				Archive archive = index.addArchive(i);
+				archive.setRevision(i);
+
+				FileData[] fileData = new FileData[1];
+				fileData[0] = new FileData();
+				archive.setFileData(fileData);
+
+				Container container = new Container(CompressionType.BZ2, i);
+				container.compress(contents(i), null);
+				diskStorage.saveArchive(archive, container.data);
+			}
+
+			store.save();
+		}
+
+		MappedDiskStorage storage = new MappedDiskStorage(file);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+			Index index = store.findIndex(0);
+			assertEquals(ARCHIVES, index.getArchives().size());
+
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			List<Future<byte[]>> futures = new ArrayList<>();
+			for (Archive archive : index.getArchives())
+			{
+				futures.add(executor.submit(() -> archive.decompress(storage.loadArchive(archive))));
+			}
+
+			for (int i = 0; i < ARCHIVES; ++i)
+			{
+				byte[] data = futures.get(i).get();
+				assertNotNull(data);
+				assertArrayEquals(contents(i), data);
+			}
+
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testLoadArchiveContents() throws Exception
+	{
+		int[] keys = new int[]
+		{
+			4, 8, 15, 16
+		};
+		byte[] contents = new byte[200_000];
+		new Random(42L).nextBytes(contents);
+
+		File file = folder.newFolder();
+		DiskStorage diskStorage = new DiskStorage(file);
+		try (Store store = new Store(diskStorage))
+		{
+			Index index = store.addIndex(0);
+			for (int i = 0; i < 3; ++i)
+			{
+				Archive archive = index.addArchive(i);
+				archive.setRevision(42);
+
+				FileData[] fileData = new FileData[1];
+				fileData[0] = new FileData();
+				archive.setFileData(fileData);
+
+				// one archive per compression type. random data does not compress,
+				// so each spans hundreds of sectors
+				Container container = new Container(i, 42);
+				container.compress(contents, keys);
+				diskStorage.saveArchive(archive, container.data);
+			}
+
+			store.save();
+		}
+
+		MappedDiskStorage storage = new MappedDiskStorage(file);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+			Index index = store.findIndex(0);
+			Xtea xtea = new Xtea(keys);
+
+			for (Archive archive : index.getArchives())
+			{
+				assertArrayEquals(contents, storage.loadArchiveContents(archive, xtea));
+				assertEquals(archive.getArchiveId(), archive.getCompression());
+				assertEquals(42, archive.getRevision());
+			}
+		}
+	}
+
+	@Test
+	public void testSaveArchive() throws Exception
+	{
+		File file = folder.newFolder();
+		DiskStorage diskStorage = new DiskStorage(file);
+		try (Store store = new Store(diskStorage))
+		{
+			Index index = store.addIndex(0);
+			saveArchive(diskStorage, index, 1, contents(1));
+			store.save();
+		}
+
+		byte[] replaced = new byte[100_000];
+		new Random(42L).nextBytes(replaced);
+
+		MappedDiskStorage storage = new MappedDiskStorage(file);
+		try (Store store = new Store(storage))
+		{
+			store.load();
+			Index index = store.findIndex(0);
+
+			// both writes grow the files past their mappings
+			saveArchive(storage, index, 1, replaced);
+			saveArchive(storage, index, 2, contents(2));
+			store.save();
+
+			assertArrayEquals(replaced, storage.loadArchiveContents(index.getArchive(1), null));
+			assertArrayEquals(contents(2), storage.loadArchiveContents(index.getArchive(2), null));
+		}
+
+		try (Store store = new Store(new MappedDiskStorage(file)))
+		{
+			store.load();
+			Index index = store.findIndex(0);
+			assertEquals(2, index.getArchives().size());
+			assertArrayEquals(replaced, store.getStorage().loadArchiveContents(index.getArchive(1), null));
+			assertArrayEquals(contents(2), store.getStorage().loadArchiveContents(index.getArchive(2), null));
+		}
+	}
+
+	private static void saveArchive(Storage storage, Index index, int archiveId, byte[] contents) throws IOException
+	{
+		Archive archive = index.getArchive(archiveId);
+		if (archive == null)
+		{
+			archive = index.addArchive(archiveId);
+
+			FileData[] fileData = new FileData[1];
+			fileData[0] = new FileData();
+			archive.setFileData(fileData);
+		}
+		archive.setRevision(archive.getRevision() + 1);
+
+		Container container = new Container(CompressionType.GZ, archive.getRevision());
+		container.compress(contents, null);
+		storage.saveArchive(archive, container.data);
+	}
+
+	private static byte[] contents(int archiveId)
+	{
+		byte[] b = new byte[archiveId * 97];
+		for (int i = 0; i < b.length; ++i)
+		{
+			b[i] = (byte) (i ^ archiveId);
+		}
+		return b;
+	}
+}
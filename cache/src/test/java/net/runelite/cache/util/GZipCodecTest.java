@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.cache.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import static org.junit.Assert.assertArrayEquals;
+import org.junit.Test;
+
+public class GZipCodecTest
+{
+	private final GZipCodec codec = new GZipCodec();
+
+	@Test
+	public void testDecompress() throws IOException
+	{
+		Random random = new Random(42L);
+
+		testRoundTrip(new byte[0]);
+		testRoundTrip("test".getBytes());
+
+		byte[] data = new byte[100_000];
+		random.nextBytes(data);
+		testRoundTrip(data);
+
+		data = new byte[100_000];
+		for (int i = 0; i < data.length; ++i)
+		{
+			data[i] = (byte) (i / 100);
+		}
+		testRoundTrip(data);
+	}
+
+	@Test
+	public void testCompress() throws IOException
+	{
+		byte[] data = new byte[10_000];
+		for (int i = 0; i < data.length; ++i)
+		{
+			data[i] = (byte) (i % 7);
+		}
+
+		byte[] compressed = codec.compress(data);
+		assertArrayEquals(data, GZip.decompress(compressed, compressed.length));
+		assertArrayEquals(data, codec.decompress(new ByteArrayInputStream(compressed), data.length));
+	}
+
+	@Test(expected = IOException.class)
+	public void testBadHeader() throws IOException
+	{
+		byte[] data = new byte[64];
+		new Random(42L).nextBytes(data);
+		codec.decompress(new ByteArrayInputStream(data), Integer.MAX_VALUE);
+	}
+
+	@Test(expected = IOException.class)
+	public void testBadLength() throws IOException
+	{
+		byte[] compressed = GZip.compress("testtesttest".getBytes());
+		codec.decompress(new ByteArrayInputStream(compressed), 13);
+	}
+
+	private void testRoundTrip(byte[] data) throws IOException
+	{
+		byte[] compressed = GZip.compress(data);
+		assertArrayEquals(data, codec.decompress(new ByteArrayInputStream(compressed), data.length));
+		assertArrayEquals(data, codec.decompress(new ByteArrayInputStream(compressed), data.length));
+	}
+}
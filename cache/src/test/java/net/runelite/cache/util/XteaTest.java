@@ -24,7 +24,16 @@
  */
 package net.runelite.cache.util;
 
+import com.google.common.io.ByteStreams;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import org.junit.Test;
 
 public class XteaTest
@@ -52,4 +61,103 @@ public class XteaTest
 
 		assertArrayEquals(data, decData);
 	}
+
+	@Test
+	public void testDecryptInPlace()
+	{
+		int[] key = new int[]
+		{
+			4, 8, 15, 16
+		};
+		byte[] encrypted = new byte[]
+		{
+			121, -18, 48, 64, 120, -42, -113, 77, 116, 101, 115, 116, 49
+		};
+
+		byte[] data = new byte[encrypted.length + 2];
+		System.arraycopy(encrypted, 0, data, 1, encrypted.length);
+
+		new Xtea(key).decrypt(data, 1, encrypted.length);
+		assertArrayEquals("testtesttest1".getBytes(), Arrays.copyOfRange(data, 1, 1 + encrypted.length));
+		assertEquals(0, data[0]);
+		assertEquals(0, data[data.length - 1]);
+	}
+
+	@Test
+	public void testInputStream() throws IOException
+	{
+		int[] key = new int[]
+		{
+			4, 8, 15, 16
+		};
+		Random random = new Random(42L);
+		byte[] data = new byte[1029];
+		random.nextBytes(data);
+
+		byte[] encrypted = new Xtea(key).encrypt(data, data.length);
+
+		// bulk reads
+		InputStream in = new XteaInputStream(new ByteArrayInputStream(encrypted), key);
+		assertArrayEquals(data, ByteStreams.toByteArray(in));
+
+		// mixed single byte and odd sized reads
+		in = new XteaInputStream(new ByteArrayInputStream(encrypted), key);
+		byte[] out = new byte[data.length];
+		out[0] = (byte) in.read();
+		ByteStreams.readFully(in, out, 1, 12);
+		ByteStreams.readFully(in, out, 13, out.length - 13);
+		assertEquals(-1, in.read());
+		assertArrayEquals(data, out);
+	}
+
+	@Test
+	public void testEncryptInPlace()
+	{
+		int[] key = new int[]
+		{
+			4, 8, 15, 16
+		};
+		byte[] data = "testtesttest1".getBytes();
+
+		new Xtea(key).encrypt(data, 0, data.length);
+		assertArrayEquals(new byte[]
+		{
+			121, -18, 48, 64, 120, -42, -113, 77, 116, 101, 115, 116, 49
+		}, data);
+	}
+
+	@Test
+	public void testDecryptByteBuffer()
+	{
+		int[] key = new int[]
+		{
+			4, 8, 15, 16
+		};
+		Random random = new Random(42L);
+		byte[] data = new byte[1029];
+		random.nextBytes(data);
+
+		byte[] encrypted = new Xtea(key).encrypt(data, data.length);
+		Xtea xtea = new Xtea(key);
+
+		for (ByteBuffer buffer : new ByteBuffer[]
+		{
+			ByteBuffer.allocate(encrypted.length + 3),
+			ByteBuffer.allocateDirect(encrypted.length + 3),
+			ByteBuffer.allocateDirect(encrypted.length + 3).order(ByteOrder.LITTLE_ENDIAN)
+		})
+		{
+			buffer.position(3);
+			buffer.put(encrypted);
+			buffer.position(1);
+
+			xtea.decrypt(buffer, 3, encrypted.length);
+			assertEquals(1, buffer.position());
+
+			byte[] out = new byte[data.length];
+			buffer.position(3);
+			buffer.get(out);
+			assertArrayEquals(data, out);
+		}
+	}
 }
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.api.item;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable index of item names for substring search. Queries of three or
+ * more characters are answered from a trigram index, shorter ones by a
+ * scan of the lowercased names. Results are ranked exact match first,
+ * then name prefix, then word prefix, then any other substring, with
+ * shorter names ahead of longer ones.
+ */
+public class ItemNameIndex
+{
+	private static final int[] EMPTY = new int[0];
+
+	private static final int RANK_EXACT = 0;
+	private static final int RANK_PREFIX = 1;
+	private static final int RANK_WORD_PREFIX = 2;
+	private static final int RANK_SUBSTRING = 3;
+
+	private final int[] ids;
+	private final String[] names; // lowercase
+	private final Map<Long, int[]> trigrams;
+
+	/**
+	 * Build an index
+	 *
+	 * @param ids item ids
+	 * @param names item names, parallel to ids
+	 */
+	public ItemNameIndex(int[] ids, String[] names)
+	{
+		if (ids.length != names.length)
+		{
+			throw new IllegalArgumentException("ids and names differ in length");
+		}
+
+		this.ids = ids.clone();
+		this.names = new String[names.length];
+
+		Map<Long, List<Integer>> postings = new HashMap<>();
+		for (int doc = 0; doc < names.length; ++doc)
+		{
+			String name = names[doc] != null ? names[doc].toLowerCase() : "";
+			this.names[doc] = name;
+
+			for (int i = 0; i + 3 <= name.length(); ++i)
+			{
+				List<Integer> posting = postings.computeIfAbsent(trigram(name, i), k -> new ArrayList<>());
+				// docs are added in order, so only the last entry can be a duplicate
+				if (posting.isEmpty() || posting.get(posting.size() - 1) != doc)
+				{
+					posting.add(doc);
+				}
+			}
+		}
+
+		trigrams = new HashMap<>(postings.size() * 4 / 3 + 1);
+		for (Map.Entry<Long, List<Integer>> entry : postings.entrySet())
+		{
+			trigrams.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+		}
+	}
+
+	public int size()
+	{
+		return ids.length;
+	}
+
+	/**
+	 * Search for items whose name contains the query, ignoring case
+	 *
+	 * @param query search query
+	 * @param limit maximum number of results
+	 * @return ids of the matching items, best match first
+	 */
+	public int[] search(String query, int limit)
+	{
+		query = query.trim().toLowerCase();
+		if (query.isEmpty() || limit <= 0)
+		{
+			return EMPTY;
+		}
+
+		int[] candidates = candidates(query);
+
+		List<long[]> matches = new ArrayList<>();
+		for (int doc : candidates)
+		{
+			String name = names[doc];
+			int rank = rank(name, query);
+			if (rank >= 0)
+			{
+				matches.add(new long[]{(long) rank << 32 | name.length(), doc});
+			}
+		}
+
+		matches.sort((m1, m2) ->
+		{
+			int c = Long.compare(m1[0], m2[0]);
+			return c != 0 ? c : Integer.compare(ids[(int) m1[1]], ids[(int) m2[1]]);
+		});
+
+		int[] result = new int[Math.min(limit, matches.size())];
+		for (int i = 0; i < result.length; ++i)
+		{
+			result[i] = ids[(int) matches.get(i)[1]];
+		}
+		return result;
+	}
+
+	/**
+	 * Get the docs which may contain the query. For queries of three or
+	 * more characters these are the docs containing all of its trigrams.
+	 */
+	private int[] candidates(String query)
+	{
+		if (query.length() < 3)
+		{
+			int[] all = new int[names.length];
+			for (int i = 0; i < all.length; ++i)
+			{
+				all[i] = i;
+			}
+			return all;
+		}
+
+		int count = query.length() - 2;
+		int[][] postings = new int[count][];
+		for (int i = 0; i < count; ++i)
+		{
+			int[] posting = trigrams.get(trigram(query, i));
+			if (posting == null)
+			{
+				return EMPTY;
+			}
+			postings[i] = posting;
+		}
+
+		// intersect starting from the rarest trigram
+		Arrays.sort(postings, (p1, p2) -> Integer.compare(p1.length, p2.length));
+
+		int[] result = postings[0];
+		for (int i = 1; i < postings.length && result.length > 0; ++i)
+		{
+			result = intersect(result, postings[i]);
+		}
+		return result;
+	}
+
+	private static int rank(String name, String query)
+	{
+		int idx = name.indexOf(query);
+		if (idx == -1)
+		{
+			return -1;
+		}
+
+		if (idx == 0)
+		{
+			return name.length() == query.length() ? RANK_EXACT : RANK_PREFIX;
+		}
+
+		do
+		{
+			if (!Character.isLetterOrDigit(name.charAt(idx - 1)))
+			{
+				return RANK_WORD_PREFIX;
+			}
+			idx = name.indexOf(query, idx + 1);
+		}
+		while (idx != -1);
+
+		return RANK_SUBSTRING;
+	}
+
+	private static int[] intersect(int[] a, int[] b)
+	{
+		int[] out = new int[Math.min(a.length, b.length)];
+		int i = 0, j = 0, n = 0;
+		while (i < a.length && j < b.length)
+		{
+			if (a[i] < b[j])
+			{
+				++i;
+			}
+			else if (a[i] > b[j])
+			{
+				++j;
+			}
+			else
+			{
+				out[n++] = a[i];
+				++i;
+				++j;
+			}
+		}
+		return Arrays.copyOf(out, n);
+	}
+
+	private static long trigram(String s, int i)
+	{
+		return (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+	}
+}
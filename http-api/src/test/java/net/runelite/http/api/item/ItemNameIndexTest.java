@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.api.item;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class ItemNameIndexTest
+{
+	private static final int[] IDS =
+	{
+		4151, 11802, 1305, 4587, 1215, 5698, 4153, 11840, 995
+	};
+
+	private static final String[] NAMES =
+	{
+		"Abyssal whip", "Armadyl godsword", "Dragon longsword", "Dragon scimitar", "Dragon dagger",
+		"Dragon dagger(p++)", "Granite maul", "Dragon boots", "Coins"
+	};
+
+	private final ItemNameIndex index = new ItemNameIndex(IDS, NAMES);
+
+	@Test
+	public void testRank()
+	{
+		// exact match, then prefixes with shorter names first, then word prefix
+		assertArrayEquals(new int[]{1215, 5698}, index.search("dragon dagger", 10));
+		assertArrayEquals(new int[]{11840, 1215, 4587, 1305, 5698}, index.search("Dragon", 10));
+		assertArrayEquals(new int[]{11840, 1215}, index.search("dragon", 2));
+
+		// a word prefix ranks ahead of a substring, whatever the name length
+		ItemNameIndex swords = new ItemNameIndex(new int[]{1, 2, 3}, new String[]{"Godsword shard", "Bronze sword", "Sword"});
+		assertArrayEquals(new int[]{3, 2, 1}, swords.search("sword", 10));
+
+		// equal names are ordered by id
+		ItemNameIndex coins = new ItemNameIndex(new int[]{6, 2, 4}, new String[]{"Coins", "Coins", "Coins"});
+		assertArrayEquals(new int[]{2, 4, 6}, coins.search("coins", 10));
+	}
+
+	@Test
+	public void testShortQuery()
+	{
+		// shorter than a trigram, so answered by a scan
+		assertArrayEquals(new int[]{4151}, index.search("ab", 10));
+		// word prefix of "granite maul" ahead of the substring of "armadyl godsword"
+		assertArrayEquals(new int[]{4153, 11802}, index.search("Ma", 10));
+		assertArrayEquals(new int[]{5698}, index.search("+", 10));
+		assertEquals(0, index.search("  ", 10).length);
+		assertEquals(0, index.search("zq", 10).length);
+	}
+
+	@Test
+	public void testMissingTrigram()
+	{
+		assertEquals(0, index.search("xyz", 10).length);
+		// every trigram but the last is indexed
+		assertEquals(0, index.search("dragon daggex", 10).length);
+		// all trigrams are indexed, but no name contains them in this order
+		assertEquals(0, index.search("dagger dragon", 10).length);
+		assertEquals(0, index.search("dragon", 0).length);
+	}
+
+	@Test
+	public void testRepeatedTrigram()
+	{
+		// "ana" and "nan" both occur twice in one name
+		ItemNameIndex fruit = new ItemNameIndex(new int[]{1963, 1, 2}, new String[]{"Banana", "Bananana", "Ban"});
+		assertArrayEquals(new int[]{1963, 1}, fruit.search("anana", 10));
+		assertArrayEquals(new int[]{1}, fruit.search("ananan", 10));
+		assertArrayEquals(new int[]{1963, 1}, fruit.search("nan", 10));
+		assertArrayEquals(new int[]{1963, 1}, fruit.search("banana", 10));
+	}
+}
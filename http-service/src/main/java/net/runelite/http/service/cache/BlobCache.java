@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.BaseEncoding;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Local disk cache of archive data, keyed by the sha256 of the data. The
+ * data for a hash can never change, so entries are never invalidated.
+ */
+@Slf4j
+class BlobCache
+{
+	private final File directory;
+
+	BlobCache(File directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * Get data from the cache
+	 *
+	 * @param hash sha256 of the data
+	 * @return the data, or null if it is not cached
+	 */
+	byte[] get(byte[] hash)
+	{
+		try
+		{
+			return Files.readAllBytes(path(hash));
+		}
+		catch (NoSuchFileException ex)
+		{
+			return null;
+		}
+		catch (IOException ex)
+		{
+			log.warn("unable to read cached blob", ex);
+			return null;
+		}
+	}
+
+	/**
+	 * Add data to the cache. Data which doesn't match the hash is ignored.
+	 *
+	 * @param hash sha256 of the data
+	 * @param data
+	 */
+	void put(byte[] hash, byte[] data)
+	{
+		if (!Arrays.equals(hash, Hashing.sha256().hashBytes(data).asBytes()))
+		{
+			log.warn("blob does not match hash {}", BaseEncoding.base16().encode(hash));
+			return;
+		}
+
+		Path path = path(hash);
+
+		try
+		{
+			Files.createDirectories(path.getParent());
+
+			// write to a temporary file first, so a partial blob is never visible
+			Path tmp = Files.createTempFile(path.getParent(), null, ".tmp");
+			try
+			{
+				Files.write(tmp, data);
+				Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			}
+			finally
+			{
+				Files.deleteIfExists(tmp);
+			}
+		}
+		catch (IOException ex)
+		{
+			log.warn("unable to cache blob", ex);
+		}
+	}
+
+	private Path path(byte[] hash)
+	{
+		String hashStr = BaseEncoding.base16().encode(hash);
+		return new File(new File(directory, hashStr.substring(0, 2)), hashStr.substring(2)).toPath();
+	}
+}
@@ -24,35 +24,20 @@
  */
 package net.runelite.http.service.cache;
 
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.List;
 import java.util.stream.Collectors;
-import javax.imageio.ImageIO;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.cache.ConfigType;
 import net.runelite.cache.IndexType;
 import net.runelite.cache.definitions.ItemDefinition;
-import net.runelite.cache.definitions.ModelDefinition;
 import net.runelite.cache.definitions.NpcDefinition;
 import net.runelite.cache.definitions.ObjectDefinition;
-import net.runelite.cache.definitions.SpriteDefinition;
-import net.runelite.cache.definitions.TextureDefinition;
 import net.runelite.cache.definitions.loaders.ItemLoader;
-import net.runelite.cache.definitions.loaders.ModelLoader;
 import net.runelite.cache.definitions.loaders.NpcLoader;
 import net.runelite.cache.definitions.loaders.ObjectLoader;
-import net.runelite.cache.definitions.loaders.SpriteLoader;
-import net.runelite.cache.definitions.loaders.TextureLoader;
-import net.runelite.cache.definitions.providers.ItemProvider;
-import net.runelite.cache.definitions.providers.ModelProvider;
-import net.runelite.cache.definitions.providers.SpriteProvider;
-import net.runelite.cache.definitions.providers.TextureProvider;
 import net.runelite.cache.fs.ArchiveFiles;
-import net.runelite.cache.fs.Container;
 import net.runelite.cache.fs.FSFile;
-import net.runelite.cache.item.ItemSpriteFactory;
 import net.runelite.http.api.cache.Cache;
 import net.runelite.http.api.cache.CacheArchive;
 import net.runelite.http.api.cache.CacheIndex;
@@ -61,6 +46,7 @@ import net.runelite.http.service.cache.beans.CacheEntry;
 import net.runelite.http.service.cache.beans.IndexEntry;
 import net.runelite.http.service.util.exception.NotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -75,6 +61,12 @@ public class CacheController
 	@Autowired
 	private CacheService cacheService;
 
+	@Autowired
+	private DefinitionIndexService definitionIndexService;
+
+	@Autowired
+	private ItemIconService itemIconService;
+
 	@RequestMapping("/")
 	public List<Cache> listCaches()
 	{
@@ -200,8 +192,47 @@ public class CacheController
 		return archiveEntry;
 	}
 
+	/**
+	 * Get a definition from the definition index of the most recent cache.
+	 * The ETag is the cache id, as definitions only change with the cache.
+	 *
+	 * @param type
+	 * @param id
+	 * @return the response, or null if the index has not been built yet
+	 */
+	private ResponseEntity<byte[]> getIndexedDefinition(ConfigType type, int id)
+	{
+		DefinitionIndex definitionIndex = definitionIndexService.getDefinitionIndex();
+		if (definitionIndex == null)
+		{
+			return null;
+		}
+
+		byte[] data = definitionIndex.get(type, id);
+		if (data == null)
+		{
+			throw new NotFoundException();
+		}
+
+		return ResponseEntity.ok()
+			.eTag(Integer.toString(definitionIndex.getCacheId()))
+			.contentType(MediaType.APPLICATION_JSON_UTF8)
+			.body(data);
+	}
+
 	@RequestMapping("item/{itemId}")
-	public ItemDefinition getItem(@PathVariable int itemId) throws IOException
+	public ResponseEntity<?> getItem(@PathVariable int itemId) throws IOException
+	{
+		ResponseEntity<byte[]> response = getIndexedDefinition(ConfigType.ITEM, itemId);
+		if (response != null)
+		{
+			return response;
+		}
+
+		return ResponseEntity.ok(findItem(itemId));
+	}
+
+	private ItemDefinition findItem(int itemId) throws IOException
 	{
 		ArchiveEntry archiveEntry = findConfig(ConfigType.ITEM);
 
@@ -229,95 +260,26 @@ public class CacheController
 		@RequestParam(defaultValue = "3153952") int shadowColor
 	) throws IOException
 	{
-		final CacheEntry cache = cacheService.findMostRecent();
-		ItemProvider itemProvider = new ItemProvider()
+		byte[] png = itemIconService.getIcon(itemId, quantity, border, shadowColor);
+		if (png == null)
 		{
-			@Override
-			public ItemDefinition provide(int itemId)
-			{
-				try
-				{
-					return getItem(itemId);
-				}
-				catch (IOException ex)
-				{
-					log.warn(null, ex);
-					return null;
-				}
-			}
-		};
-		ModelProvider modelProvider = new ModelProvider()
-		{
-			@Override
-			public ModelDefinition provide(int modelId) throws IOException
-			{
-				IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.MODELS.getNumber());
-				ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, modelId);
-				byte[] archiveData = Container.decompress(cacheService.getArchive(archiveEntry), null).data;
-				return new ModelLoader().load(modelId, archiveData);
-			}
-		};
-		SpriteProvider spriteProvider = new SpriteProvider()
-		{
-			@Override
-			public SpriteDefinition provide(int spriteId, int frameId)
-			{
-				try
-				{
-					IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.SPRITES.getNumber());
-					ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, spriteId);
-					byte[] archiveData = Container.decompress(cacheService.getArchive(archiveEntry), null).data;
-					SpriteDefinition[] defs = new SpriteLoader().load(spriteId, archiveData);
-					return defs[frameId];
-				}
-				catch (Exception ex)
-				{
-					log.warn(null, ex);
-					return null;
-				}
-			}
-		};
-
-		TextureProvider textureProvider2 = new TextureProvider()
-		{
-			@Override
-			public TextureDefinition[] provide()
-			{
-				try
-				{
-					IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.TEXTURES.getNumber());
-					ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, 0);
-					ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
-					TextureLoader loader = new TextureLoader();
-					TextureDefinition[] defs = new TextureDefinition[archiveFiles.getFiles().size()];
-					int i = 0;
-					for (FSFile file : archiveFiles.getFiles())
-					{
-						TextureDefinition def = loader.load(file.getFileId(), file.getContents());
-						defs[i++] = def;
-					}
-					return defs;
-				}
-				catch (Exception ex)
-				{
-					log.warn(null, ex);
-					return null;
-				}
-			}
-		};
-
-		BufferedImage itemImage = ItemSpriteFactory.createSprite(itemProvider, modelProvider, spriteProvider, textureProvider2,
-			itemId, quantity, border, shadowColor, false);
-		ByteArrayOutputStream bao = new ByteArrayOutputStream();
-		ImageIO.write(itemImage, "png", bao);
-		return ResponseEntity.ok(bao.toByteArray());
+			throw new NotFoundException();
+		}
+
+		return ResponseEntity.ok(png);
 	}
 
 	@RequestMapping("object/{objectId}")
-	public ObjectDefinition getObject(
+	public ResponseEntity<?> getObject(
 		@PathVariable int objectId
 	) throws IOException
 	{
+		ResponseEntity<byte[]> response = getIndexedDefinition(ConfigType.OBJECT, objectId);
+		if (response != null)
+		{
+			return response;
+		}
+
 		ArchiveEntry archiveEntry = findConfig(ConfigType.OBJECT);
 
 		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
@@ -333,14 +295,20 @@ public class CacheController
 		}
 
 		ObjectDefinition objectdef = new ObjectLoader().load(objectId, file.getContents());
-		return objectdef;
+		return ResponseEntity.ok(objectdef);
 	}
 
 	@RequestMapping("npc/{npcId}")
-	public NpcDefinition getNpc(
+	public ResponseEntity<?> getNpc(
 		@PathVariable int npcId
 	) throws IOException
 	{
+		ResponseEntity<byte[]> response = getIndexedDefinition(ConfigType.NPC, npcId);
+		if (response != null)
+		{
+			return response;
+		}
+
 		ArchiveEntry archiveEntry = findConfig(ConfigType.NPC);
 
 		ArchiveFiles archiveFiles = cacheService.getArchiveFiles(archiveEntry);
@@ -356,6 +324,6 @@ public class CacheController
 		}
 
 		NpcDefinition npcdef = new NpcLoader().load(npcId, file.getContents());
-		return npcdef;
+		return ResponseEntity.ok(npcdef);
 	}
 }
@@ -24,6 +24,10 @@
  */
 package net.runelite.http.service.cache;
 
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
 import com.google.common.collect.Iterables;
 import com.google.common.io.BaseEncoding;
 import com.google.common.io.ByteStreams;
@@ -36,12 +40,14 @@ import io.minio.errors.InvalidBucketNameException;
 import io.minio.errors.InvalidEndpointException;
 import io.minio.errors.InvalidPortException;
 import io.minio.errors.NoResponseException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.cache.ConfigType;
 import net.runelite.cache.IndexType;
@@ -76,15 +82,27 @@ public class CacheService
 	private String minioBucket;
 
 	private final MinioClient minioClient;
+	private final BlobCache blobCache;
+
+	/**
+	 * Decompressed archives by archive id. Archive rows are never modified,
+	 * so entries only leave the cache by eviction.
+	 */
+	private final Cache<Integer, ArchiveFiles> archiveFilesCache = CacheBuilder.newBuilder()
+		.maximumWeight(256L * 1024L * 1024L)
+		.weigher((Integer archiveId, ArchiveFiles archiveFiles) -> weigh(archiveFiles))
+		.build();
 
 	@Autowired
 	public CacheService(
 		@Value("${minio.endpoint}") String minioEndpoint,
 		@Value("${minio.accesskey}") String accessKey,
-		@Value("${minio.secretkey}") String secretKey
+		@Value("${minio.secretkey}") String secretKey,
+		@Value("${runelite.cache.blobs:${java.io.tmpdir}/runelite-cache}") String blobDirectory
 	) throws InvalidEndpointException, InvalidPortException
 	{
 		this.minioClient = new MinioClient(minioEndpoint, accessKey, secretKey);
+		this.blobCache = new BlobCache(new File(blobDirectory));
 	}
 
 	@Bean
@@ -94,12 +112,26 @@ public class CacheService
 	}
 
 	/**
-	 * retrieve archive from storage
+	 * retrieve archive from the local blob cache, or from storage
 	 *
 	 * @param archiveEntry
 	 * @return
 	 */
 	public byte[] getArchive(ArchiveEntry archiveEntry)
+	{
+		byte[] data = blobCache.get(archiveEntry.getHash());
+		if (data == null)
+		{
+			data = fetchArchive(archiveEntry);
+			if (data != null)
+			{
+				blobCache.put(archiveEntry.getHash(), data);
+			}
+		}
+		return data;
+	}
+
+	private byte[] fetchArchive(ArchiveEntry archiveEntry)
 	{
 		String hashStr = BaseEncoding.base16().encode(archiveEntry.getHash());
 		String path = new StringBuilder()
@@ -121,7 +153,34 @@ public class CacheService
 		}
 	}
 
+	/**
+	 * Get the decompressed files of an archive. The returned archive may be
+	 * shared with other callers and must not be modified.
+	 *
+	 * @param archiveEntry
+	 * @return
+	 * @throws IOException
+	 */
 	public ArchiveFiles getArchiveFiles(ArchiveEntry archiveEntry) throws IOException
+	{
+		try
+		{
+			// concurrent requests for the same cold archive wait for one load
+			return archiveFilesCache.get(archiveEntry.getId(), () -> loadArchiveFiles(archiveEntry));
+		}
+		catch (CacheLoader.InvalidCacheLoadException ex)
+		{
+			// the archive or its data is missing, which is not cached
+			return null;
+		}
+		catch (ExecutionException ex)
+		{
+			Throwables.propagateIfPossible(ex.getCause(), IOException.class);
+			throw new RuntimeException(ex.getCause());
+		}
+	}
+
+	private ArchiveFiles loadArchiveFiles(ArchiveEntry archiveEntry) throws IOException
 	{
 		CacheDAO cacheDao = new CacheDAO();
 
@@ -155,6 +214,16 @@ public class CacheService
 		}
 	}
 
+	private static int weigh(ArchiveFiles archiveFiles)
+	{
+		int weight = 0;
+		for (FSFile file : archiveFiles.getFiles())
+		{
+			weight += 32 + file.getContents().length;
+		}
+		return weight;
+	}
+
 	public List<CacheEntry> listCaches()
 	{
 		try (Connection con = sql2o.open())
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import lombok.Value;
+import net.runelite.cache.ConfigType;
+
+/**
+ * The item, object and npc definitions of one cache, each serialized to
+ * json once and indexed by id
+ */
+@Value
+public class DefinitionIndex
+{
+	private int cacheId;
+	private byte[][] items;
+	private byte[][] objects;
+	private byte[][] npcs;
+
+	/**
+	 * Get a serialized definition
+	 *
+	 * @param type one of item, object or npc
+	 * @param id definition id
+	 * @return the json for the definition, or null if there is no such definition
+	 */
+	public byte[] get(ConfigType type, int id)
+	{
+		byte[][] table;
+		switch (type)
+		{
+			case ITEM:
+				table = items;
+				break;
+			case OBJECT:
+				table = objects;
+				break;
+			case NPC:
+				table = npcs;
+				break;
+			default:
+				throw new IllegalArgumentException("unsupported config type " + type);
+		}
+
+		return id >= 0 && id < table.length ? table[id] : null;
+	}
+}
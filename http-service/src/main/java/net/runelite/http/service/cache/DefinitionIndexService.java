@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Stopwatch;
+import java.io.IOException;
+import java.util.function.BiFunction;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.NpcLoader;
+import net.runelite.cache.definitions.loaders.ObjectLoader;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Builds the {@link DefinitionIndex} of the most recent cache whenever a
+ * new cache appears
+ */
+@Service
+@Slf4j
+public class DefinitionIndexService
+{
+	private final CacheService cacheService;
+	private final ObjectMapper objectMapper;
+
+	private volatile DefinitionIndex definitionIndex;
+
+	@Autowired
+	public DefinitionIndexService(CacheService cacheService, ObjectMapper objectMapper)
+	{
+		this.cacheService = cacheService;
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Get the definition index of the most recent cache
+	 *
+	 * @return the index, or null if it has not been built yet
+	 */
+	public DefinitionIndex getDefinitionIndex()
+	{
+		return definitionIndex;
+	}
+
+	@Scheduled(fixedDelay = 60_000L)
+	public void refresh()
+	{
+		CacheEntry cache = cacheService.findMostRecent();
+		if (cache == null)
+		{
+			return;
+		}
+
+		DefinitionIndex current = definitionIndex;
+		if (current != null && current.getCacheId() == cache.getId())
+		{
+			return;
+		}
+
+		try
+		{
+			Stopwatch stopwatch = Stopwatch.createStarted();
+
+			definitionIndex = new DefinitionIndex(cache.getId(),
+				buildTable(cache, ConfigType.ITEM, new ItemLoader()::load),
+				buildTable(cache, ConfigType.OBJECT, new ObjectLoader()::load),
+				buildTable(cache, ConfigType.NPC, new NpcLoader()::load));
+
+			log.info("Built definition index for cache {} in {}", cache.getId(), stopwatch);
+		}
+		catch (IOException ex)
+		{
+			log.warn("unable to build definition index for cache {}", cache.getId(), ex);
+		}
+	}
+
+	private byte[][] buildTable(CacheEntry cache, ConfigType type, BiFunction<Integer, byte[], Object> loader) throws IOException
+	{
+		IndexEntry indexEntry = cacheService.findIndexForCache(cache, IndexType.CONFIGS.getNumber());
+		ArchiveEntry archiveEntry = indexEntry != null ? cacheService.findArchiveForIndex(indexEntry, type.getId()) : null;
+		ArchiveFiles archiveFiles = archiveEntry != null ? cacheService.getArchiveFiles(archiveEntry) : null;
+		if (archiveFiles == null)
+		{
+			throw new IOException("unable to load " + type + " configs");
+		}
+
+		int maxId = -1;
+		for (FSFile file : archiveFiles.getFiles())
+		{
+			maxId = Math.max(maxId, file.getFileId());
+		}
+
+		byte[][] table = new byte[maxId + 1][];
+		for (FSFile file : archiveFiles.getFiles())
+		{
+			Object definition = loader.apply(file.getFileId(), file.getContents());
+			table[file.getFileId()] = objectMapper.writeValueAsBytes(definition);
+		}
+		return table;
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import javax.imageio.ImageIO;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.cache.ConfigType;
+import net.runelite.cache.IndexType;
+import net.runelite.cache.definitions.ItemDefinition;
+import net.runelite.cache.definitions.ModelDefinition;
+import net.runelite.cache.definitions.SpriteDefinition;
+import net.runelite.cache.definitions.TextureDefinition;
+import net.runelite.cache.definitions.loaders.ItemLoader;
+import net.runelite.cache.definitions.loaders.ModelLoader;
+import net.runelite.cache.definitions.loaders.SpriteLoader;
+import net.runelite.cache.definitions.loaders.TextureLoader;
+import net.runelite.cache.fs.ArchiveFiles;
+import net.runelite.cache.fs.Container;
+import net.runelite.cache.fs.FSFile;
+import net.runelite.cache.item.ItemSpriteFactory;
+import net.runelite.http.service.cache.beans.ArchiveEntry;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.cache.beans.IndexEntry;
+
+/**
+ * Everything needed to render item icons for one cache. The index rows are
+ * looked up once, and model, sprite and texture data is kept across
+ * renders. Rendering modifies the definitions it is given, so each render
+ * decodes its own from that data. Safe to use from multiple threads.
+ */
+@Slf4j
+class IconRenderContext
+{
+	private final CacheService cacheService;
+	private final CacheEntry cache;
+	private final IndexEntry configs;
+	private final IndexEntry models;
+	private final IndexEntry sprites;
+	private final IndexEntry textures;
+
+	private final Cache<Integer, byte[]> modelData = CacheBuilder.newBuilder()
+		.maximumWeight(64L * 1024L * 1024L)
+		.weigher((Integer modelId, byte[] data) -> data.length)
+		.build();
+
+	private final Cache<Integer, byte[]> spriteData = CacheBuilder.newBuilder()
+		.maximumWeight(16L * 1024L * 1024L)
+		.weigher((Integer spriteId, byte[] data) -> data.length)
+		.build();
+
+	private volatile ArchiveFiles textureFiles;
+
+	IconRenderContext(CacheService cacheService, CacheEntry cache)
+	{
+		this.cacheService = cacheService;
+		this.cache = cache;
+		this.configs = cacheService.findIndexForCache(cache, IndexType.CONFIGS.getNumber());
+		this.models = cacheService.findIndexForCache(cache, IndexType.MODELS.getNumber());
+		this.sprites = cacheService.findIndexForCache(cache, IndexType.SPRITES.getNumber());
+		this.textures = cacheService.findIndexForCache(cache, IndexType.TEXTURES.getNumber());
+	}
+
+	int getCacheId()
+	{
+		return cache.getId();
+	}
+
+	/**
+	 * Render an item icon
+	 *
+	 * @return the png, or null if the item can't be rendered
+	 * @throws IOException
+	 */
+	byte[] render(int itemId, int quantity, int border, int shadowColor) throws IOException
+	{
+		BufferedImage itemImage = ItemSpriteFactory.createSprite(this::provideItem, this::provideModel,
+			this::provideSprite, this::provideTextures,
+			itemId, quantity, border, shadowColor, false);
+		if (itemImage == null)
+		{
+			return null;
+		}
+
+		ByteArrayOutputStream bao = new ByteArrayOutputStream();
+		ImageIO.write(itemImage, "png", bao);
+		return bao.toByteArray();
+	}
+
+	/**
+	 * Get the ids of every item in the cache
+	 */
+	List<Integer> getItemIds() throws IOException
+	{
+		ArchiveFiles archiveFiles = getItemArchive();
+		List<Integer> itemIds = new ArrayList<>(archiveFiles.getFiles().size());
+		for (FSFile file : archiveFiles.getFiles())
+		{
+			itemIds.add(file.getFileId());
+		}
+		return itemIds;
+	}
+
+	private ArchiveFiles getItemArchive() throws IOException
+	{
+		ArchiveEntry archiveEntry = configs != null ? cacheService.findArchiveForIndex(configs, ConfigType.ITEM.getId()) : null;
+		ArchiveFiles archiveFiles = archiveEntry != null ? cacheService.getArchiveFiles(archiveEntry) : null;
+		if (archiveFiles == null)
+		{
+			throw new IOException("unable to load item configs for cache " + cache.getId());
+		}
+		return archiveFiles;
+	}
+
+	private ItemDefinition provideItem(int itemId)
+	{
+		try
+		{
+			FSFile file = getItemArchive().findFile(itemId);
+			if (file == null)
+			{
+				return null;
+			}
+
+			// decoded for each render as noted items are modified
+			return new ItemLoader().load(itemId, file.getContents());
+		}
+		catch (IOException ex)
+		{
+			log.warn(null, ex);
+			return null;
+		}
+	}
+
+	private ModelDefinition provideModel(int modelId) throws IOException
+	{
+		byte[] data;
+		try
+		{
+			data = modelData.get(modelId, () -> loadArchive(models, modelId));
+		}
+		catch (ExecutionException ex)
+		{
+			throw new IOException(ex.getCause());
+		}
+
+		return new ModelLoader().load(modelId, data);
+	}
+
+	private SpriteDefinition provideSprite(int spriteId, int frameId)
+	{
+		try
+		{
+			byte[] data = spriteData.get(spriteId, () -> loadArchive(sprites, spriteId));
+			// decoded for each render as sprites are normalized in place
+			SpriteDefinition[] defs = new SpriteLoader().load(spriteId, data);
+			return defs[frameId];
+		}
+		catch (Exception ex)
+		{
+			log.warn(null, ex);
+			return null;
+		}
+	}
+
+	private TextureDefinition[] provideTextures()
+	{
+		try
+		{
+			ArchiveFiles archiveFiles = textureFiles;
+			if (archiveFiles == null)
+			{
+				ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(textures, 0);
+				archiveFiles = textureFiles = cacheService.getArchiveFiles(archiveEntry);
+			}
+
+			// decoded for each render as textures fill in their pixels when used
+			return loadTextures(archiveFiles);
+		}
+		catch (Exception ex)
+		{
+			log.warn(null, ex);
+			return null;
+		}
+	}
+
+	private static TextureDefinition[] loadTextures(ArchiveFiles archiveFiles)
+	{
+		TextureLoader loader = new TextureLoader();
+		TextureDefinition[] defs = new TextureDefinition[archiveFiles.getFiles().size()];
+		int i = 0;
+		for (FSFile file : archiveFiles.getFiles())
+		{
+			TextureDefinition def = loader.load(file.getFileId(), file.getContents());
+			defs[i++] = def;
+		}
+		return defs;
+	}
+
+	private byte[] loadArchive(IndexEntry indexEntry, int archiveId) throws IOException
+	{
+		ArchiveEntry archiveEntry = cacheService.findArchiveForIndex(indexEntry, archiveId);
+		if (archiveEntry == null)
+		{
+			throw new IOException("no archive " + archiveId + " in index " + indexEntry.getIndexId());
+		}
+
+		byte[] data = cacheService.getArchive(archiveEntry);
+		if (data == null)
+		{
+			throw new IOException("unable to load archive " + archiveId + " in index " + indexEntry.getIndexId());
+		}
+
+		return Container.decompress(data, null).data;
+	}
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.cache;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import net.runelite.http.service.cache.beans.CacheEntry;
+import net.runelite.http.service.util.exception.ServiceUnavailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Renders item icons for the most recent cache on a bounded pool, and
+ * keeps the resulting pngs. When a new cache appears the default icon of
+ * every item is rendered in the background.
+ */
+@Service
+@Slf4j
+public class ItemIconService
+{
+	private static final int RENDER_THREADS = Runtime.getRuntime().availableProcessors();
+	private static final int MAX_QUEUED_RENDERS = 256;
+
+	// defaults of the item image endpoint
+	private static final int DEFAULT_QUANTITY = 1;
+	private static final int DEFAULT_BORDER = 1;
+	private static final int DEFAULT_SHADOW_COLOR = 3153952;
+
+	private static final byte[] NO_ICON = new byte[0];
+
+	private final CacheService cacheService;
+	private final boolean prerender;
+
+	private final ThreadPoolExecutor renderPool = new ThreadPoolExecutor(RENDER_THREADS, RENDER_THREADS,
+		0L, TimeUnit.MILLISECONDS,
+		new ArrayBlockingQueue<>(MAX_QUEUED_RENDERS),
+		new ThreadFactoryBuilder().setNameFormat("icon-render-%d").setDaemon(true).build());
+
+	private final ExecutorService prerenderExecutor = Executors.newSingleThreadExecutor(
+		new ThreadFactoryBuilder().setNameFormat("icon-prerender").setDaemon(true).build());
+
+	private final Cache<IconKey, byte[]> icons = CacheBuilder.newBuilder()
+		.maximumWeight(128L * 1024L * 1024L)
+		.weigher((IconKey key, byte[] png) -> 64 + png.length)
+		.build();
+
+	private volatile IconRenderContext context;
+
+	@Autowired
+	public ItemIconService(CacheService cacheService,
+		@Value("${runelite.cache.prerender-icons:true}") boolean prerender)
+	{
+		this.cacheService = cacheService;
+		this.prerender = prerender;
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		prerenderExecutor.shutdownNow();
+		renderPool.shutdownNow();
+	}
+
+	/**
+	 * Get the icon of an item in the most recent cache
+	 *
+	 * @return the png, or null if the item can't be rendered
+	 * @throws IOException
+	 */
+	public byte[] getIcon(int itemId, int quantity, int border, int shadowColor) throws IOException
+	{
+		IconRenderContext context = getContext();
+		if (context == null)
+		{
+			return null;
+		}
+
+		IconKey key = new IconKey(context.getCacheId(), itemId, quantity, border, shadowColor);
+		byte[] png;
+		try
+		{
+			// concurrent requests for the same icon wait for a single render
+			png = icons.get(key, () -> render(context, itemId, quantity, border, shadowColor));
+		}
+		catch (ExecutionException | UncheckedExecutionException ex)
+		{
+			Throwables.throwIfInstanceOf(ex.getCause(), IOException.class);
+			Throwables.throwIfUnchecked(ex.getCause());
+			throw new IOException(ex.getCause());
+		}
+
+		return png != NO_ICON ? png : null;
+	}
+
+	private byte[] render(IconRenderContext context, int itemId, int quantity, int border, int shadowColor) throws Exception
+	{
+		Future<byte[]> future;
+		try
+		{
+			future = renderPool.submit(() -> context.render(itemId, quantity, border, shadowColor));
+		}
+		catch (RejectedExecutionException ex)
+		{
+			throw new ServiceUnavailableException("Too many icons are being rendered");
+		}
+
+		byte[] png;
+		try
+		{
+			png = future.get();
+		}
+		catch (ExecutionException ex)
+		{
+			Throwables.throwIfInstanceOf(ex.getCause(), IOException.class);
+			Throwables.throwIfUnchecked(ex.getCause());
+			throw new IOException(ex.getCause());
+		}
+
+		return png != null ? png : NO_ICON;
+	}
+
+	private IconRenderContext getContext()
+	{
+		IconRenderContext context = this.context;
+		if (context == null)
+		{
+			refresh();
+			context = this.context;
+		}
+		return context;
+	}
+
+	@Scheduled(fixedDelay = 60_000L)
+	public synchronized void refresh()
+	{
+		CacheEntry cache = cacheService.findMostRecent();
+		if (cache == null)
+		{
+			return;
+		}
+
+		IconRenderContext current = context;
+		if (current != null && current.getCacheId() == cache.getId())
+		{
+			return;
+		}
+
+		IconRenderContext newContext = new IconRenderContext(cacheService, cache);
+		context = newContext;
+		icons.invalidateAll();
+
+		if (prerender)
+		{
+			prerenderExecutor.execute(() -> prerender(newContext));
+		}
+	}
+
+	/**
+	 * Render the default icon of every item. This runs on a single thread so
+	 * that requests are still served by the render pool.
+	 */
+	private void prerender(IconRenderContext prerenderContext)
+	{
+		Stopwatch stopwatch = Stopwatch.createStarted();
+
+		List<Integer> itemIds;
+		try
+		{
+			itemIds = prerenderContext.getItemIds();
+		}
+		catch (IOException ex)
+		{
+			log.warn("unable to prerender icons", ex);
+			return;
+		}
+
+		int rendered = 0;
+		for (int itemId : itemIds)
+		{
+			if (context != prerenderContext || Thread.currentThread().isInterrupted())
+			{
+				log.info("Stopped prerendering icons for cache {}", prerenderContext.getCacheId());
+				return;
+			}
+
+			IconKey key = new IconKey(prerenderContext.getCacheId(), itemId, DEFAULT_QUANTITY, DEFAULT_BORDER, DEFAULT_SHADOW_COLOR);
+			if (icons.getIfPresent(key) != null)
+			{
+				continue;
+			}
+
+			try
+			{
+				byte[] png = prerenderContext.render(itemId, DEFAULT_QUANTITY, DEFAULT_BORDER, DEFAULT_SHADOW_COLOR);
+				icons.put(key, png != null ? png : NO_ICON);
+				++rendered;
+			}
+			catch (Exception ex)
+			{
+				log.debug("unable to render item {}", itemId, ex);
+			}
+		}
+
+		log.info("Prerendered {} icons for cache {} in {}", rendered, prerenderContext.getCacheId(), stopwatch);
+	}
+}
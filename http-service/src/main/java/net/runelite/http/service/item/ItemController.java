@@ -24,10 +24,9 @@
  */
 package net.runelite.http.service.item;
 
-import com.google.common.base.Supplier;
-import com.google.common.base.Suppliers;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import java.io.IOException;
 import java.time.Instant;
 import java.util.Arrays;
 import java.util.List;
@@ -39,8 +38,11 @@ import net.runelite.http.api.item.ItemPrice;
 import net.runelite.http.api.item.SearchResult;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -57,25 +59,13 @@ public class ItemController
 		.build();
 
 	private final ItemService itemService;
-
-	private final Supplier<ItemPrice[]> memorizedPrices;
+	private final PriceCrawler priceCrawler;
 
 	@Autowired
-	public ItemController(ItemService itemService)
+	public ItemController(ItemService itemService, PriceCrawler priceCrawler)
 	{
 		this.itemService = itemService;
-
-		memorizedPrices = Suppliers.memoizeWithExpiration(() -> itemService.fetchPrices().stream()
-			.map(priceEntry ->
-			{
-				ItemPrice itemPrice = new ItemPrice();
-				itemPrice.setId(priceEntry.getItem());
-				itemPrice.setName(priceEntry.getName());
-				itemPrice.setPrice(priceEntry.getPrice());
-				itemPrice.setTime(priceEntry.getTime());
-				return itemPrice;
-			})
-			.toArray(ItemPrice[]::new), 30, TimeUnit.MINUTES);
+		this.priceCrawler = priceCrawler;
 	}
 
 	@RequestMapping("/{itemId}")
@@ -132,6 +122,8 @@ public class ItemController
 
 		Instant now = Instant.now();
 
+		priceCrawler.recordRequest(itemId);
+
 		if (time != null && time.isAfter(now))
 		{
 			time = now;
@@ -201,26 +193,31 @@ public class ItemController
 			itemIds = Arrays.copyOf(itemIds, MAX_BATCH_LOOKUP);
 		}
 
-		List<PriceEntry> prices = itemService.getPrices(itemIds);
+		priceCrawler.recordRequest(itemIds);
 
-		return prices.stream()
-			.map(priceEntry ->
-			{
-				ItemPrice itemPrice = new ItemPrice();
-				itemPrice.setId(priceEntry.getItem());
-				itemPrice.setName(priceEntry.getName());
-				itemPrice.setPrice(priceEntry.getPrice());
-				itemPrice.setTime(priceEntry.getTime());
-				return itemPrice;
-			})
-			.toArray(ItemPrice[]::new);
+		return itemService.getPrices(itemIds);
 	}
 
 	@RequestMapping("/prices")
-	public ResponseEntity<ItemPrice[]> prices()
+	public ResponseEntity<byte[]> prices(
+		@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding
+	) throws IOException
 	{
-		return ResponseEntity.ok()
+		PriceSnapshot.Body body = itemService.getPricesBody();
+
+		ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
 			.cacheControl(CacheControl.maxAge(30, TimeUnit.MINUTES).cachePublic())
-			.body(memorizedPrices.get());
+			.contentType(MediaType.APPLICATION_JSON_UTF8)
+			.eTag(body.etag)
+			.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+		if (acceptEncoding != null && acceptEncoding.contains("gzip"))
+		{
+			return builder
+				.header(HttpHeaders.CONTENT_ENCODING, "gzip")
+				.body(body.gzip);
+		}
+
+		return builder.body(body.json);
 	}
 }
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import net.runelite.http.api.item.ItemNameIndex;
+
+/**
+ * In-memory copy of the items table for name search. The name index is
+ * rebuilt on the first search after the items change.
+ */
+class ItemSearch
+{
+	private final Map<Integer, ItemEntry> items = new HashMap<>();
+	private ItemNameIndex index;
+
+	synchronized void put(ItemEntry item)
+	{
+		ItemEntry entry = new ItemEntry();
+		entry.setId(item.getId());
+		entry.setName(item.getName());
+		entry.setDescription(item.getDescription());
+		entry.setType(item.getType());
+
+		ItemEntry old = items.put(entry.getId(), entry);
+		if (old == null || !Objects.equals(entry.getName(), old.getName()))
+		{
+			index = null;
+		}
+	}
+
+	synchronized int size()
+	{
+		return items.size();
+	}
+
+	/**
+	 * Search for items by name
+	 *
+	 * @param query search query
+	 * @param limit maximum number of results
+	 * @return the matching items, best match first
+	 */
+	synchronized List<ItemEntry> search(String query, int limit)
+	{
+		if (index == null)
+		{
+			int[] ids = new int[items.size()];
+			String[] names = new String[items.size()];
+			int i = 0;
+			for (ItemEntry item : items.values())
+			{
+				ids[i] = item.getId();
+				names[i] = item.getName();
+				++i;
+			}
+			index = new ItemNameIndex(ids, names);
+		}
+
+		int[] ids = index.search(query, limit);
+		List<ItemEntry> result = new ArrayList<>(ids.length);
+		for (int id : ids)
+		{
+			result.add(items.get(id));
+		}
+		return result;
+	}
+}
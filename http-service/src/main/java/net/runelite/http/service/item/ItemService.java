@@ -24,21 +24,21 @@
  */
 package net.runelite.http.service.item;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.JsonParseException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
-import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.cache.definitions.ItemDefinition;
 import net.runelite.http.api.RuneLiteAPI;
+import net.runelite.http.api.item.ItemPrice;
 import net.runelite.http.api.item.ItemType;
 import net.runelite.http.service.cache.CacheService;
 import okhttp3.HttpUrl;
@@ -83,20 +83,24 @@ public class ItemService
 		+ ") ENGINE=InnoDB";
 
 	private static final int MAX_PENDING = 512;
+	private static final int MAX_SEARCH_RESULTS = 10;
 
 	private final Sql2o sql2o;
 	private final CacheService cacheService;
+	private final PriceSnapshot priceSnapshot;
+	private final ItemSearch itemSearch = new ItemSearch();
 
 	private final ConcurrentLinkedQueue<PendingLookup> pendingLookups = new ConcurrentLinkedQueue<PendingLookup>();
-	private int[] tradeableItems;
-	private final Random random = new Random();
+	private volatile int[] tradeableItems;
 
 	@Autowired
 	public ItemService(@Qualifier("Runelite SQL2O") Sql2o sql2o,
-		CacheService cacheService)
+		CacheService cacheService,
+		ObjectMapper objectMapper)
 	{
 		this.sql2o = sql2o;
 		this.cacheService = cacheService;
+		this.priceSnapshot = new PriceSnapshot(objectMapper);
 
 		try (Connection con = sql2o.open())
 		{
@@ -105,7 +109,20 @@ public class ItemService
 
 			con.createQuery(CREATE_PRICES)
 				.executeUpdate();
+
+			for (ItemEntry item : con.createQuery("select id, name, description, type from items")
+				.executeAndFetch(ItemEntry.class))
+			{
+				itemSearch.put(item);
+			}
+		}
+		log.info("Loaded {} items for search", itemSearch.size());
+
+		for (PriceEntry priceEntry : fetchPrices())
+		{
+			priceSnapshot.update(priceEntry.getItem(), priceEntry.getName(), priceEntry.getPrice(), priceEntry.getTime());
 		}
+		log.info("Loaded {} item prices", priceSnapshot.size());
 	}
 
 	public ItemEntry getItem(int itemId)
@@ -145,45 +162,31 @@ public class ItemService
 		}
 	}
 
-	public List<PriceEntry> getPrices(int... itemIds)
+	/**
+	 * Get the most recent price of each item
+	 *
+	 * @param itemIds item ids
+	 * @return the prices of the items with a known price
+	 */
+	public ItemPrice[] getPrices(int... itemIds)
 	{
-		try (Connection con = sql2o.open())
-		{
-			Set<Integer> seen = new HashSet<>();
-			List<PriceEntry> priceEntries = new ArrayList<>(itemIds.length);
-
-			for (int itemId : itemIds)
-			{
-				if (seen.contains(itemId))
-				{
-					continue;
-				}
-				seen.add(itemId);
-
-				PriceEntry priceEntry = getPrice(con, itemId, null);
-
-				if (priceEntry == null)
-				{
-					continue;
-				}
-
-				priceEntries.add(priceEntry);
-			}
+		return priceSnapshot.get(itemIds);
+	}
 
-			return priceEntries;
-		}
+	/**
+	 * Get the serialized most recent price of every item
+	 *
+	 * @return the prices
+	 * @throws IOException if the prices can't be serialized
+	 */
+	PriceSnapshot.Body getPricesBody() throws IOException
+	{
+		return priceSnapshot.getBody();
 	}
 
 	public List<ItemEntry> search(String search)
 	{
-		try (Connection con = sql2o.open())
-		{
-			return con.createQuery("select id, name, description, type, match (name) against (:search) as score from items "
-				+ "where match (name) against (:search) order by score desc limit 10")
-				.throwOnMappingFailure(false) // otherwise it tries to map 'score'
-				.addParameter("search", search)
-				.executeAndFetch(ItemEntry.class);
-		}
+		return itemSearch.search(search, MAX_SEARCH_RESULTS);
 	}
 
 	public ItemEntry fetchItem(int itemId)
@@ -232,6 +235,9 @@ public class ItemService
 			item.setType(ItemType.of(rsItem.getType()));
 			item.setIcon(icon);
 			item.setIcon_large(iconLarge);
+
+			itemSearch.put(item);
+
 			return item;
 		}
 		catch (IOException ex)
@@ -243,10 +249,10 @@ public class ItemService
 
 	public List<PriceEntry> fetchPrice(int itemId)
 	{
-		RSPrices rsprice;
+		List<PriceEntry> entries;
 		try
 		{
-			rsprice = fetchRSPrices(itemId);
+			entries = fetchPriceEntries(itemId);
 		}
 		catch (IOException ex)
 		{
@@ -254,40 +260,112 @@ public class ItemService
 			return null;
 		}
 
-		try (Connection con = sql2o.beginTransaction())
+		storePrices(entries);
+		return entries;
+	}
+
+	/**
+	 * Fetch the price history of an item, without storing it
+	 *
+	 * @param itemId item id
+	 * @return the daily prices of the item
+	 * @throws IOException
+	 */
+	List<PriceEntry> fetchPriceEntries(int itemId) throws IOException
+	{
+		RSPrices rsprice = fetchRSPrices(itemId);
+
+		List<PriceEntry> entries = new ArrayList<>();
+		Instant now = Instant.now();
+
+		for (Map.Entry<Long, Integer> entry : rsprice.getDaily().entrySet())
 		{
-			List<PriceEntry> entries = new ArrayList<>();
-			Instant now = Instant.now();
+			long ts = entry.getKey(); // ms since epoch
+			int price = entry.getValue(); // gp
+
+			PriceEntry priceEntry = new PriceEntry();
+			priceEntry.setItem(itemId);
+			priceEntry.setPrice(price);
+			priceEntry.setTime(Instant.ofEpochMilli(ts));
+			priceEntry.setFetched_time(now);
+			entries.add(priceEntry);
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Store prices of any number of items in a single batch, and update
+	 * the price snapshot with the most recent price of each item
+	 *
+	 * @param entries prices to store
+	 */
+	void storePrices(List<PriceEntry> entries)
+	{
+		if (entries.isEmpty())
+		{
+			return;
+		}
 
+		try (Connection con = sql2o.beginTransaction())
+		{
 			Query query = con.createQuery("insert into prices (item, price, time, fetched_time) values (:item, :price, :time, :fetched_time) "
 				+ "ON DUPLICATE KEY UPDATE price = VALUES(price), fetched_time = VALUES(fetched_time)");
 
-			for (Map.Entry<Long, Integer> entry : rsprice.getDaily().entrySet())
+			for (PriceEntry entry : entries)
 			{
-				long ts = entry.getKey(); // ms since epoch
-				int price = entry.getValue(); // gp
-
-				Instant time = Instant.ofEpochMilli(ts);
-
-				PriceEntry priceEntry = new PriceEntry();
-				priceEntry.setItem(itemId);
-				priceEntry.setPrice(price);
-				priceEntry.setTime(time);
-				priceEntry.setFetched_time(now);
-				entries.add(priceEntry);
-
 				query
-					.addParameter("item", itemId)
-					.addParameter("price", price)
-					.addParameter("time", time)
-					.addParameter("fetched_time", now)
+					.addParameter("item", entry.getItem())
+					.addParameter("price", entry.getPrice())
+					.addParameter("time", entry.getTime())
+					.addParameter("fetched_time", entry.getFetched_time())
 					.addToBatch();
 			}
 
 			query.executeBatch();
 			con.commit(false);
+		}
+
+		Map<Integer, PriceEntry> latest = new HashMap<>();
+		for (PriceEntry entry : entries)
+		{
+			latest.merge(entry.getItem(), entry, (e1, e2) -> e2.getTime().isAfter(e1.getTime()) ? e2 : e1);
+		}
 
-			return entries;
+		for (PriceEntry entry : latest.values())
+		{
+			updateSnapshot(entry);
+		}
+	}
+
+	private void updateSnapshot(PriceEntry entry)
+	{
+		int itemId = entry.getItem();
+		String name = null;
+		if (!priceSnapshot.hasName(itemId))
+		{
+			try (Connection con = sql2o.open())
+			{
+				name = con.createQuery("select name from items where id = :id")
+					.addParameter("id", itemId)
+					.executeScalar(String.class);
+			}
+		}
+
+		priceSnapshot.update(itemId, name, entry.getPrice(), entry.getTime());
+	}
+
+	/**
+	 * Get the time each item's price was last fetched
+	 *
+	 * @return entries with only the item and fetched_time set
+	 */
+	List<PriceEntry> getFetchedTimes()
+	{
+		try (Connection con = sql2o.open())
+		{
+			return con.createQuery("select item, max(fetched_time) as fetched_time from prices group by item")
+				.executeAndFetch(PriceEntry.class);
 		}
 	}
 
@@ -369,6 +447,16 @@ public class ItemService
 			q.executeBatch();
 			con.commit(false);
 		}
+
+		for (RSItem rsItem : search.getItems())
+		{
+			ItemEntry item = new ItemEntry();
+			item.setId(rsItem.getId());
+			item.setName(rsItem.getName());
+			item.setDescription(rsItem.getDescription());
+			item.setType(ItemType.of(rsItem.getType()));
+			itemSearch.put(item);
+		}
 	}
 
 	private <T> T fetchJson(Request request, Class<T> clazz) throws IOException
@@ -461,20 +549,14 @@ public class ItemService
 		}
 	}
 
-	@Scheduled(fixedDelay = 20_000)
-	public void crawlPrices()
+	/**
+	 * Get the ids of the tradeable items in the most recent cache
+	 *
+	 * @return the item ids, or null if they have not been loaded yet
+	 */
+	public int[] getTradeableItems()
 	{
-		if (tradeableItems == null || tradeableItems.length == 0)
-		{
-			return;
-		}
-
-		int idx = random.nextInt(tradeableItems.length);
-		int id = tradeableItems[idx];
-
-		log.debug("Fetching price for {}", id);
-
-		fetchPrice(id);
+		return tradeableItems;
 	}
 
 	@Scheduled(fixedDelay = 1_8000_000) // 30 minutes
@@ -0,0 +1,290 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps the prices of tradeable items fresh. The stalest items are fetched
+ * first, with items clients ask for often weighted up, on a small pool
+ * whose request rate backs off when the price api fails. Fetched prices
+ * are stored in batches across items.
+ */
+@Service
+@Slf4j
+public class PriceCrawler
+{
+	private static final long MIN_REFRESH_MS = 30 * 60 * 1000L; // 30 minutes
+	private static final double MIN_RATE = 0.1; // requests per second
+	private static final int MAX_ITEM_ID = 0xFFFF; // item ids are unsigned shorts
+	private static final long SHUTDOWN_TIMEOUT_MS = 10_000L;
+
+	private final ItemService itemService;
+	private final int threads;
+	private final double maxRate;
+
+	private final ExecutorService fetchPool;
+	private final RateLimiter rateLimiter;
+	private final ConcurrentLinkedQueue<PriceEntry> fetched = new ConcurrentLinkedQueue<>();
+
+	// per item state, indexed by item id and guarded by this
+	private long[] fetchedTimes = new long[0]; // ms since epoch
+	private int[] popularity = new int[0];
+	private boolean[] inFlight = new boolean[0];
+	private int inFlightCount;
+
+	@Autowired
+	public PriceCrawler(ItemService itemService,
+		@Value("${runelite.items.crawler.threads:4}") int threads,
+		@Value("${runelite.items.crawler.rate:2}") double maxRate)
+	{
+		this.itemService = itemService;
+		this.threads = threads;
+		this.maxRate = maxRate;
+		this.fetchPool = Executors.newFixedThreadPool(threads,
+			new ThreadFactoryBuilder().setNameFormat("price-crawler-%d").setDaemon(true).build());
+		this.rateLimiter = RateLimiter.create(maxRate);
+
+		for (PriceEntry entry : itemService.getFetchedTimes())
+		{
+			if (entry.getFetched_time() != null)
+			{
+				setFetched(entry.getItem(), entry.getFetched_time().toEpochMilli());
+			}
+		}
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		// queued fetches are dropped, the items are fetched again on the next start
+		fetchPool.shutdownNow();
+		try
+		{
+			if (!fetchPool.awaitTermination(SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS))
+			{
+				log.warn("Price crawler fetches did not finish in time");
+			}
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		// store what has been fetched already
+		flush();
+	}
+
+	/**
+	 * Record that clients asked for the prices of the given items
+	 *
+	 * @param itemIds item ids
+	 */
+	public synchronized void recordRequest(int... itemIds)
+	{
+		for (int itemId : itemIds)
+		{
+			if (itemId < 0 || itemId > MAX_ITEM_ID)
+			{
+				continue;
+			}
+
+			ensureCapacity(itemId + 1);
+			if (popularity[itemId] < Integer.MAX_VALUE)
+			{
+				++popularity[itemId];
+			}
+		}
+	}
+
+	@Scheduled(fixedDelay = 1000L)
+	public void dispatch()
+	{
+		int[] tradeableItems = itemService.getTradeableItems();
+		if (tradeableItems == null || tradeableItems.length == 0)
+		{
+			return;
+		}
+
+		for (int itemId : nextItems(tradeableItems))
+		{
+			fetchPool.execute(() -> fetch(itemId));
+		}
+	}
+
+	@Scheduled(fixedDelay = 5000L)
+	public void flush()
+	{
+		List<PriceEntry> entries = new ArrayList<>();
+		PriceEntry entry;
+		while ((entry = fetched.poll()) != null)
+		{
+			entries.add(entry);
+		}
+
+		if (!entries.isEmpty())
+		{
+			itemService.storePrices(entries);
+			log.debug("Stored {} prices", entries.size());
+		}
+	}
+
+	/**
+	 * Pick the items to fetch next, and mark them as in flight
+	 *
+	 * @param tradeableItems ids of items which may be fetched
+	 * @return the items to fetch, at most the number of idle fetch threads
+	 */
+	@VisibleForTesting
+	synchronized int[] nextItems(int[] tradeableItems)
+	{
+		int idle = threads - inFlightCount;
+		if (idle <= 0)
+		{
+			return new int[0];
+		}
+
+		ensureCapacity(Arrays.stream(tradeableItems).max().getAsInt() + 1);
+
+		long now = System.currentTimeMillis();
+		// min heap of the best candidates so far
+		PriorityQueue<long[]> candidates = new PriorityQueue<>(idle + 1, Comparator.comparingLong(c -> c[0]));
+
+		for (int itemId : tradeableItems)
+		{
+			long age = now - fetchedTimes[itemId];
+			if (inFlight[itemId] || age < MIN_REFRESH_MS)
+			{
+				continue;
+			}
+
+			long score = age / 1000L * (1L + popularity[itemId]);
+			candidates.add(new long[]{score, itemId});
+			if (candidates.size() > idle)
+			{
+				candidates.poll();
+			}
+		}
+
+		int[] itemIds = new int[candidates.size()];
+		for (int i = 0; i < itemIds.length; ++i)
+		{
+			int itemId = (int) candidates.poll()[1];
+			inFlight[itemId] = true;
+			itemIds[i] = itemId;
+		}
+		inFlightCount += itemIds.length;
+		return itemIds;
+	}
+
+	private void fetch(int itemId)
+	{
+		boolean success = false;
+		try
+		{
+			rateLimiter.acquire();
+
+			log.debug("Fetching price for {}", itemId);
+			fetched.addAll(itemService.fetchPriceEntries(itemId));
+			success = true;
+		}
+		catch (IOException ex)
+		{
+			log.warn("unable to fetch price for item {}", itemId, ex);
+		}
+		finally
+		{
+			finish(itemId, success);
+		}
+	}
+
+	@VisibleForTesting
+	synchronized void finish(int itemId, boolean success)
+	{
+		inFlight[itemId] = false;
+		--inFlightCount;
+
+		// failed items wait for the next refresh too, so a bad item can't
+		// starve the others
+		fetchedTimes[itemId] = System.currentTimeMillis();
+		if (success)
+		{
+			// halve rather than reset, so popular items stay ahead
+			popularity[itemId] >>= 1;
+		}
+
+		// additive increase, multiplicative decrease
+		double rate = rateLimiter.getRate();
+		if (success && rate < maxRate)
+		{
+			rateLimiter.setRate(Math.min(maxRate, rate + 0.1));
+		}
+		else if (!success && rate > MIN_RATE)
+		{
+			rateLimiter.setRate(Math.max(MIN_RATE, rate / 2));
+			log.debug("Price crawler rate lowered to {}/s", rateLimiter.getRate());
+		}
+	}
+
+	@VisibleForTesting
+	double getRate()
+	{
+		return rateLimiter.getRate();
+	}
+
+	private synchronized void setFetched(int itemId, long time)
+	{
+		ensureCapacity(itemId + 1);
+		fetchedTimes[itemId] = time;
+	}
+
+	private void ensureCapacity(int size)
+	{
+		if (size > fetchedTimes.length)
+		{
+			fetchedTimes = Arrays.copyOf(fetchedTimes, size);
+			popularity = Arrays.copyOf(popularity, size);
+			inFlight = Arrays.copyOf(inFlight, size);
+		}
+	}
+}
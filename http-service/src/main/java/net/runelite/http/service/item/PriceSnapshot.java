@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.hash.Hashing;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+import net.runelite.http.api.item.ItemPrice;
+
+/**
+ * The most recent price of every item, indexed by item id. The serialized
+ * body of the full snapshot is rebuilt on the first read after a change.
+ */
+class PriceSnapshot
+{
+	private final ObjectMapper objectMapper;
+
+	private int[] prices = new int[0];
+	private long[] times = new long[0]; // ms since epoch, 0 if there is no price
+	private String[] names = new String[0];
+	private int version;
+
+	private Body body;
+
+	static class Body
+	{
+		final int version;
+		final String etag;
+		final byte[] json;
+		final byte[] gzip;
+
+		private Body(int version, byte[] json, byte[] gzip)
+		{
+			this.version = version;
+			this.etag = Hashing.murmur3_128().hashBytes(json).toString();
+			this.json = json;
+			this.gzip = gzip;
+		}
+	}
+
+	PriceSnapshot(ObjectMapper objectMapper)
+	{
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Record the price of an item, unless a newer price is already known
+	 *
+	 * @param itemId item id
+	 * @param name item name, or null to keep the current name
+	 * @param price price in gp
+	 * @param time time of the price
+	 */
+	synchronized void update(int itemId, String name, int price, Instant time)
+	{
+		if (itemId >= prices.length)
+		{
+			int size = Math.max(itemId + 1, prices.length * 2);
+			prices = Arrays.copyOf(prices, size);
+			times = Arrays.copyOf(times, size);
+			names = Arrays.copyOf(names, size);
+		}
+
+		long ts = time.toEpochMilli();
+		if (times[itemId] > ts)
+		{
+			return;
+		}
+
+		if (name != null && !name.equals(names[itemId]))
+		{
+			names[itemId] = name;
+			++version;
+		}
+
+		if (times[itemId] != ts || prices[itemId] != price)
+		{
+			prices[itemId] = price;
+			times[itemId] = ts;
+			++version;
+		}
+	}
+
+	synchronized int size()
+	{
+		int count = 0;
+		for (int itemId = 0; itemId < prices.length; ++itemId)
+		{
+			if (hasPrice(itemId))
+			{
+				++count;
+			}
+		}
+		return count;
+	}
+
+	synchronized boolean hasName(int itemId)
+	{
+		return itemId < names.length && names[itemId] != null;
+	}
+
+	/**
+	 * Get the prices of the given items, skipping duplicates and items
+	 * with no known price
+	 *
+	 * @param itemIds item ids
+	 * @return the prices
+	 */
+	synchronized ItemPrice[] get(int... itemIds)
+	{
+		List<ItemPrice> itemPrices = new ArrayList<>(itemIds.length);
+		Set<Integer> seen = new HashSet<>(itemIds.length * 2);
+
+		for (int itemId : itemIds)
+		{
+			if (itemId < 0 || itemId >= prices.length || !hasPrice(itemId) || !seen.add(itemId))
+			{
+				continue;
+			}
+
+			itemPrices.add(toItemPrice(itemId));
+		}
+
+		return itemPrices.toArray(new ItemPrice[itemPrices.size()]);
+	}
+
+	/**
+	 * Get the serialized prices of every item
+	 *
+	 * @return the snapshot body
+	 * @throws IOException if the snapshot can't be serialized
+	 */
+	Body getBody() throws IOException
+	{
+		Body current;
+		ItemPrice[] itemPrices;
+		int snapshotVersion;
+
+		synchronized (this)
+		{
+			current = body;
+			if (current != null && current.version == version)
+			{
+				return current;
+			}
+
+			itemPrices = getAll();
+			snapshotVersion = version;
+		}
+
+		byte[] json = serialize(itemPrices);
+		current = new Body(snapshotVersion, json, gzip(json));
+
+		synchronized (this)
+		{
+			// don't replace a body built from a newer snapshot
+			if (body == null || body.version < snapshotVersion)
+			{
+				body = current;
+			}
+		}
+
+		return current;
+	}
+
+	private ItemPrice[] getAll()
+	{
+		List<ItemPrice> itemPrices = new ArrayList<>();
+		for (int itemId = 0; itemId < prices.length; ++itemId)
+		{
+			if (hasPrice(itemId))
+			{
+				itemPrices.add(toItemPrice(itemId));
+			}
+		}
+		return itemPrices.toArray(new ItemPrice[itemPrices.size()]);
+	}
+
+	private boolean hasPrice(int itemId)
+	{
+		// items without a name are not in the items table
+		return times[itemId] != 0 && names[itemId] != null;
+	}
+
+	private ItemPrice toItemPrice(int itemId)
+	{
+		ItemPrice itemPrice = new ItemPrice();
+		itemPrice.setId(itemId);
+		itemPrice.setName(names[itemId]);
+		itemPrice.setPrice(prices[itemId]);
+		itemPrice.setTime(Instant.ofEpochMilli(times[itemId]));
+		return itemPrice;
+	}
+
+	private byte[] serialize(ItemPrice[] itemPrices) throws JsonProcessingException
+	{
+		return objectMapper.writeValueAsBytes(itemPrices);
+	}
+
+	private static byte[] gzip(byte[] data) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out))
+		{
+			gzip.write(data);
+		}
+		return out.toByteArray();
+	}
+}
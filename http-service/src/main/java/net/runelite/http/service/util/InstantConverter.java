@@ -36,7 +36,7 @@ public class InstantConverter implements Converter<Instant>
 	public Instant convert(Object val) throws ConverterException
 	{
 		Timestamp ts = (Timestamp) val;
-		return ts.toInstant();
+		return ts != null ? ts.toInstant() : null;
 	}
 
 	@Override
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.runelite.http.api.xp.XpData;
+
+/**
+ * Encodes a player's xp snapshots as a sequence of records. Each record is
+ * the difference in time (seconds) and in every column of {@link XpVector}
+ * from the record before it, the first from zero, stored as zigzag varints.
+ * Skills that haven't changed cost a single byte.
+ */
+final class XpHistoryCodec
+{
+	private XpHistoryCodec()
+	{
+	}
+
+	/**
+	 * Append a snapshot to encoded history
+	 *
+	 * @param data encoded history, or null to start a new one
+	 * @param previous the last snapshot of the history, or null if there is none
+	 * @param xpData snapshot to append
+	 * @return the new encoded history
+	 */
+	static byte[] append(byte[] data, XpData previous, XpData xpData)
+	{
+		long previousTime = previous != null ? previous.getTime().getEpochSecond() : 0L;
+		int[] base = previous != null ? XpVector.of(previous) : new int[XpVector.COLUMNS.length];
+		int[] values = XpVector.of(xpData);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream((data != null ? data.length : 0) + 64);
+		if (data != null)
+		{
+			out.write(data, 0, data.length);
+		}
+
+		writeVarLong(out, zigzag(xpData.getTime().getEpochSecond() - previousTime));
+		for (int i = 0; i < values.length; ++i)
+		{
+			writeVarLong(out, zigzag((long) values[i] - base[i]));
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Decode encoded history
+	 *
+	 * @param data encoded history
+	 * @return the snapshots, in the order they were appended
+	 * @throws IllegalArgumentException if the data is truncated
+	 */
+	static List<XpData> decode(byte[] data)
+	{
+		List<XpData> snapshots = new ArrayList<>();
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+
+		long time = 0L;
+		int[] values = new int[XpVector.COLUMNS.length];
+
+		try
+		{
+			while (buffer.hasRemaining())
+			{
+				time += unzigzag(readVarLong(buffer));
+				for (int i = 0; i < values.length; ++i)
+				{
+					values[i] += (int) unzigzag(readVarLong(buffer));
+				}
+
+				snapshots.add(XpVector.toXpData(Arrays.copyOf(values, values.length), Instant.ofEpochSecond(time)));
+			}
+		}
+		catch (BufferUnderflowException ex)
+		{
+			throw new IllegalArgumentException("truncated xp history", ex);
+		}
+
+		return snapshots;
+	}
+
+	private static long zigzag(long n)
+	{
+		return (n << 1) ^ (n >> 63);
+	}
+
+	private static long unzigzag(long n)
+	{
+		return (n >>> 1) ^ -(n & 1);
+	}
+
+	private static void writeVarLong(ByteArrayOutputStream out, long value)
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			out.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	private static long readVarLong(ByteBuffer buffer)
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("malformed varint");
+	}
+}
@@ -25,11 +25,17 @@
 package net.runelite.http.service.xp;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.concurrent.ExecutionException;
 import net.runelite.http.api.xp.XpData;
+import net.runelite.http.service.util.DurationEditor;
 import net.runelite.http.service.xp.beans.XpEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.WebDataBinder;
+import org.springframework.web.bind.annotation.InitBinder;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
@@ -57,4 +63,25 @@ public class XpTrackerController
 		XpEntity xpEntity = xpTrackerService.findXpAtTime(username, time);
 		return XpMapper.INSTANCE.xpEntityToXpData(xpEntity);
 	}
+
+	@RequestMapping("/{username}/history")
+	public List<XpData> history(
+		@PathVariable String username,
+		@RequestParam Instant from,
+		@RequestParam(required = false) Instant to,
+		@RequestParam(required = false) Duration resolution
+	)
+	{
+		if (to == null)
+		{
+			to = Instant.now();
+		}
+		return xpTrackerService.getHistory(username, from, to, resolution);
+	}
+
+	@InitBinder
+	public void initBinder(WebDataBinder binder)
+	{
+		binder.registerCustomEditor(Duration.class, new DurationEditor());
+	}
 }
@@ -24,9 +24,25 @@
  */
 package net.runelite.http.service.xp;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+import javax.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.http.api.hiscore.HiscoreEndpoint;
 import net.runelite.http.api.hiscore.HiscoreResult;
@@ -34,24 +50,96 @@ import net.runelite.http.api.xp.XpData;
 import net.runelite.http.service.hiscore.HiscoreService;
 import net.runelite.http.service.xp.beans.PlayerEntity;
 import net.runelite.http.service.xp.beans.XpEntity;
+import net.runelite.http.service.xp.beans.XpHistoryEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.sql2o.Connection;
+import org.sql2o.Query;
+import org.sql2o.ResultSetIterable;
 import org.sql2o.Sql2o;
 
+/**
+ * Records hiscore snapshots for the xp tracker. Updates are queued and
+ * coalesced per player, and written on a schedule with multi-row inserts.
+ * Player ids and the most recent snapshot of each player are kept in
+ * memory so most updates need no queries before the insert. With
+ * runelite.xp.history set, snapshots are also appended to a compact
+ * per-player history which serves range queries.
+ */
 @Service
 @Slf4j
+@ManagedResource
 public class XpTrackerService
 {
 	private static final Duration UPDATE_TIME = Duration.ofMinutes(5);
 
-	@Autowired
-	@Qualifier("Runelite XP Tracker SQL2O")
-	private Sql2o sql2o;
+	private static final int MAX_PENDING = 100_000;
+	private static final int MAX_CACHED_PLAYERS = 100_000;
+	private static final int LOOKUP_BATCH_SIZE = 500;
+	private static final int INSERT_BATCH_SIZE = 100;
+	private static final int MAX_HISTORY_POINTS = 1000;
+	private static final int MAX_ATTEMPTS = 3;
+	private static final int MAX_FLUSH_TRANSACTIONS = 64;
+
+	private final Sql2o sql2o;
+	private final HiscoreService hiscoreService;
+	private final boolean history;
+
+	private final Map<String, PendingUpdate> pending = new ConcurrentHashMap<>();
+
+	private final Cache<String, Integer> playerIds = CacheBuilder.newBuilder()
+		.maximumSize(MAX_CACHED_PLAYERS)
+		.build();
+
+	// most recent snapshot of each player, keyed by player id
+	private final Cache<Integer, XpData> lastXp = CacheBuilder.newBuilder()
+		.maximumSize(MAX_CACHED_PLAYERS)
+		.build();
+
+	private final AtomicLong coalescedUpdates = new AtomicLong();
+	private final AtomicLong droppedUpdates = new AtomicLong();
+	private final AtomicLong failedUpdates = new AtomicLong();
+	private final AtomicLong insertedRows = new AtomicLong();
+	private volatile long lastFlushMillis;
+	private volatile int lastFlushSize;
+
+	private static class FlushState
+	{
+		private int transactions = MAX_FLUSH_TRANSACTIONS;
+		private int committed;
+		private final List<PendingUpdate> failed = new ArrayList<>();
+		private final List<PendingUpdate> skipped = new ArrayList<>();
+		private RuntimeException error;
+	}
+
+	private static class PendingUpdate
+	{
+		private final String username;
+		private final XpData xpData;
+		private final int attempts; // failed flushes so far
+
+		private PendingUpdate(String username, XpData xpData, int attempts)
+		{
+			this.username = username;
+			this.xpData = xpData;
+			this.attempts = attempts;
+		}
+	}
 
 	@Autowired
-	private HiscoreService hiscoreService;
+	public XpTrackerService(@Qualifier("Runelite XP Tracker SQL2O") Sql2o sql2o,
+		HiscoreService hiscoreService,
+		@Value("${runelite.xp.history:false}") boolean history)
+	{
+		this.sql2o = sql2o;
+		this.hiscoreService = hiscoreService;
+		this.history = history;
+	}
 
 	public void update(String username) throws ExecutionException
 	{
@@ -59,118 +147,497 @@ public class XpTrackerService
 		update(username, hiscoreResult);
 	}
 
+	/**
+	 * Queue a hiscore snapshot of a player. A newer snapshot of the same
+	 * player replaces one which has not been written yet.
+	 *
+	 * @param username player name
+	 * @param hiscoreResult hiscore of the player
+	 */
 	public void update(String username, HiscoreResult hiscoreResult)
 	{
-		try (Connection con = sql2o.open())
+		XpData xpData = XpMapper.INSTANCE.hiscoreResultToXpData(hiscoreResult);
+		xpData.setTime(Instant.now());
+		queue(username, xpData);
+	}
+
+	void queue(String username, XpData xpData)
+	{
+		String key = key(username);
+		if (pending.size() >= MAX_PENDING && !pending.containsKey(key))
+		{
+			droppedUpdates.incrementAndGet();
+			log.debug("Dropping xp update for {}", username);
+			return;
+		}
+
+		if (pending.put(key, new PendingUpdate(username, xpData, 0)) != null)
+		{
+			coalescedUpdates.incrementAndGet();
+		}
+	}
+
+	@Scheduled(fixedDelay = 5000L)
+	public synchronized void flush()
+	{
+		List<PendingUpdate> updates = new ArrayList<>();
+		for (String key : pending.keySet())
+		{
+			// remove by key, so an update queued meanwhile is taken rather than lost
+			PendingUpdate update = pending.remove(key);
+			if (update != null)
+			{
+				updates.add(update);
+			}
+		}
+
+		if (updates.isEmpty())
 		{
-			PlayerEntity playerEntity = findOrCreatePlayer(con, username);
+			return;
+		}
+
+		Stopwatch stopwatch = Stopwatch.createStarted();
+		FlushState state = new FlushState();
+		int inserted = flush(updates, state);
+
+		// updates which failed on their own only count as an attempt if other
+		// updates could be written, otherwise the database is likely down
+		requeue(state.failed, state.committed > 0, state.error);
+		requeue(state.skipped, false, null);
+
+		lastFlushMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+		lastFlushSize = inserted;
+		insertedRows.addAndGet(inserted);
+
+		log.debug("Flushed {} xp updates, {} rows inserted in {}", updates.size(), inserted, stopwatch);
+	}
+
+	@PreDestroy
+	public void shutdown()
+	{
+		flush();
+	}
+
+	/**
+	 * Write updates in one transaction. If the transaction fails the
+	 * updates are split in half and each half is retried, so that an
+	 * update which can't be written doesn't hold back the others. Updates
+	 * which fail on their own, or which are left once the transaction
+	 * budget of the flush is used up, are collected in the state to be
+	 * queued again.
+	 *
+	 * @param updates updates to write
+	 * @param state state of this flush
+	 * @return number of rows inserted
+	 */
+	private int flush(List<PendingUpdate> updates, FlushState state)
+	{
+		if (state.transactions <= 0)
+		{
+			state.skipped.addAll(updates);
+			return 0;
+		}
+		--state.transactions;
+
+		// players created and snapshots written are cached only once committed
+		Map<String, Integer> ids = new HashMap<>();
+		Map<Integer, XpData> written = new HashMap<>();
+
+		Connection con;
+		try
+		{
+			con = sql2o.beginTransaction();
+		}
+		catch (RuntimeException ex)
+		{
+			// without a connection splitting the updates won't help
+			log.warn("unable to flush {} xp updates", updates.size(), ex);
+			state.transactions = 0;
+			state.skipped.addAll(updates);
+			return 0;
+		}
+
+		try (Connection tx = con)
+		{
+			flush(tx, updates, ids, written);
+			tx.commit(false);
+		}
+		catch (RuntimeException ex)
+		{
+			if (updates.size() > 1)
+			{
+				log.debug("unable to flush {} xp updates, splitting them", updates.size(), ex);
+
+				int half = updates.size() / 2;
+				return flush(updates.subList(0, half), state)
+					+ flush(updates.subList(half, updates.size()), state);
+			}
+
+			log.warn("unable to flush xp update for {}", updates.get(0).username, ex);
+			state.failed.addAll(updates);
+			state.error = ex;
+			return 0;
+		}
+
+		++state.committed;
+		playerIds.putAll(ids);
+		lastXp.putAll(written);
+		return written.size();
+	}
+
+	/**
+	 * Queue failed updates to be retried on the next flush, unless a newer
+	 * update of the player has been queued since
+	 *
+	 * @param updates updates to retry
+	 * @param attempt whether this counts as a failed attempt of the updates
+	 * @param cause the error, for logging
+	 */
+	private void requeue(List<PendingUpdate> updates, boolean attempt, Exception cause)
+	{
+		for (PendingUpdate update : updates)
+		{
+			int attempts = attempt ? update.attempts + 1 : update.attempts;
+			if (attempts >= MAX_ATTEMPTS)
+			{
+				log.warn("Giving up on xp update for {} after {} attempts", update.username, attempts, cause);
+				failedUpdates.incrementAndGet();
+				continue;
+			}
 
-			Instant now = Instant.now();
-			XpEntity currentXp = findXpAtTime(con, username, now);
-			if (currentXp != null)
+			pending.putIfAbsent(key(update.username), new PendingUpdate(update.username, update.xpData, attempts));
+		}
+	}
+
+	private void flush(Connection con, List<PendingUpdate> updates, Map<String, Integer> ids, Map<Integer, XpData> written)
+	{
+		findOrCreatePlayers(con, updates.stream()
+			.map(u -> u.username)
+			.collect(Collectors.toList()), ids);
+
+		loadLastXp(con, ids.values());
+
+		List<Integer> players = new ArrayList<>();
+		List<XpData> snapshots = new ArrayList<>();
+
+		for (PendingUpdate update : updates)
+		{
+			Integer playerId = ids.get(key(update.username));
+			if (playerId == null)
 			{
-				XpData hiscoreData = XpMapper.INSTANCE.hiscoreResultToXpData(hiscoreResult);
-				XpData existingData = XpMapper.INSTANCE.xpEntityToXpData(currentXp);
+				continue;
+			}
 
-				if (hiscoreData.equals(existingData))
+			XpData current = lastXp.getIfPresent(playerId);
+			if (current != null)
+			{
+				if (update.xpData.equals(current))
 				{
-					log.debug("Hiscore for {} already up to date", username);
-					return;
+					log.debug("Hiscore for {} already up to date", update.username);
+					continue;
 				}
 
-				Duration difference = Duration.between(currentXp.getTime(), now);
+				Duration difference = Duration.between(current.getTime(), update.xpData.getTime());
 				if (difference.compareTo(UPDATE_TIME) <= 0)
 				{
-					log.debug("Updated {} too recently", username);
-					return;
+					log.debug("Updated {} too recently", update.username);
+					continue;
+				}
+			}
+
+			players.add(playerId);
+			snapshots.add(update.xpData);
+		}
+
+		for (int i = 0; i < players.size(); i += INSERT_BATCH_SIZE)
+		{
+			int end = Math.min(players.size(), i + INSERT_BATCH_SIZE);
+			insertXp(con, players.subList(i, end), snapshots.subList(i, end));
+		}
+
+		if (history)
+		{
+			appendHistory(con, players, snapshots);
+		}
+
+		for (int i = 0; i < players.size(); ++i)
+		{
+			written.put(players.get(i), snapshots.get(i));
+		}
+	}
+
+	private void insertXp(Connection con, List<Integer> players, List<XpData> snapshots)
+	{
+		StringBuilder sb = new StringBuilder("insert into xp (time,player");
+		for (String column : XpVector.COLUMNS)
+		{
+			sb.append(',').append(column);
+		}
+		sb.append(") values ");
+
+		for (int i = 0; i < players.size(); ++i)
+		{
+			if (i > 0)
+			{
+				sb.append(',');
+			}
+			sb.append("(:time").append(i).append(",:player").append(i);
+			for (String column : XpVector.COLUMNS)
+			{
+				sb.append(",:").append(column).append(i);
+			}
+			sb.append(')');
+		}
+
+		Query query = con.createQuery(sb.toString());
+		for (int i = 0; i < players.size(); ++i)
+		{
+			XpData xpData = snapshots.get(i);
+			int[] values = XpVector.of(xpData);
+
+			query.addParameter("time" + i, xpData.getTime())
+				.addParameter("player" + i, players.get(i));
+			for (int j = 0; j < values.length; ++j)
+			{
+				query.addParameter(XpVector.COLUMNS[j] + i, values[j]);
+			}
+		}
+
+		query.executeUpdate();
+	}
+
+	/**
+	 * Append snapshots to the compact history of their players. History is
+	 * kept in one row per player per month. Appending needs the last
+	 * snapshot of the history, which is normally the cached snapshot of the
+	 * player, so the history is only decoded when their times differ.
+	 */
+	private void appendHistory(Connection con, List<Integer> players, List<XpData> snapshots)
+	{
+		Map<Instant, List<Integer>> byMonth = new HashMap<>();
+		for (int i = 0; i < players.size(); ++i)
+		{
+			byMonth.computeIfAbsent(monthStart(snapshots.get(i).getTime()), k -> new ArrayList<>()).add(i);
+		}
+
+		for (Map.Entry<Instant, List<Integer>> entry : byMonth.entrySet())
+		{
+			Instant start = entry.getKey();
+			List<Integer> indexes = entry.getValue();
+
+			Query update = con.createQuery("update xp_history set last = :last, data = :data where player = :player and start = :start");
+			Query insert = con.createQuery("insert into xp_history (player, start, last, data) values (:player, :start, :last, :data)");
+			boolean updated = false, inserted = false;
+
+			for (int i = 0; i < indexes.size(); i += LOOKUP_BATCH_SIZE)
+			{
+				List<Integer> batch = indexes.subList(i, Math.min(indexes.size(), i + LOOKUP_BATCH_SIZE));
+				Map<Integer, XpHistoryEntity> existing = findHistory(con, start, batch.stream()
+					.map(players::get)
+					.collect(Collectors.toList()));
+
+				for (int idx : batch)
+				{
+					int player = players.get(idx);
+					XpData xpData = snapshots.get(idx);
+					XpHistoryEntity entity = existing.get(player);
+
+					if (entity != null)
+					{
+						XpData previous = lastXp.getIfPresent(player);
+						if (previous == null || !sameSecond(previous.getTime(), entity.getLast()))
+						{
+							List<XpData> decoded = XpHistoryCodec.decode(entity.getData());
+							previous = decoded.isEmpty() ? null : decoded.get(decoded.size() - 1);
+						}
+
+						update.addParameter("player", player)
+							.addParameter("start", start)
+							.addParameter("last", xpData.getTime())
+							.addParameter("data", XpHistoryCodec.append(entity.getData(), previous, xpData))
+							.addToBatch();
+						updated = true;
+					}
+					else
+					{
+						insert.addParameter("player", player)
+							.addParameter("start", start)
+							.addParameter("last", xpData.getTime())
+							.addParameter("data", XpHistoryCodec.append(null, null, xpData))
+							.addToBatch();
+						inserted = true;
+					}
 				}
 			}
 
-			con.createQuery("insert into xp (player,attack_xp,defence_xp,strength_xp,hitpoints_xp,ranged_xp,prayer_xp,magic_xp,cooking_xp,woodcutting_xp,"
-				+ "fletching_xp,fishing_xp,firemaking_xp,crafting_xp,smithing_xp,mining_xp,herblore_xp,agility_xp,thieving_xp,slayer_xp,farming_xp,"
-				+ "runecraft_xp,hunter_xp,construction_xp,attack_rank,defence_rank,strength_rank,hitpoints_rank,ranged_rank,prayer_rank,magic_rank,"
-				+ "cooking_rank,woodcutting_rank,fletching_rank,fishing_rank,firemaking_rank,crafting_rank,smithing_rank,mining_rank,herblore_rank,"
-				+ "agility_rank,thieving_rank,slayer_rank,farming_rank,runecraft_rank,hunter_rank,construction_rank,overall_rank) values (:player,:attack_xp,:defence_xp,"
-				+ ":strength_xp,:hitpoints_xp,:ranged_xp,:prayer_xp,:magic_xp,:cooking_xp,:woodcutting_xp,:fletching_xp,:fishing_xp,:firemaking_xp,"
-				+ ":crafting_xp,:smithing_xp,:mining_xp,:herblore_xp,:agility_xp,:thieving_xp,:slayer_xp,:farming_xp,:runecraft_xp,:hunter_xp,"
-				+ ":construction_xp,:attack_rank,:defence_rank,:strength_rank,:hitpoints_rank,:ranged_rank,:prayer_rank,:magic_rank,:cooking_rank,"
-				+ ":woodcutting_rank,:fletching_rank,:fishing_rank,:firemaking_rank,:crafting_rank,:smithing_rank,:mining_rank,:herblore_rank,"
-				+ ":agility_rank,:thieving_rank,:slayer_rank,:farming_rank,:runecraft_rank,:hunter_rank,:construction_rank,:overall_rank)")
-				.addParameter("player", playerEntity.getId())
-				.addParameter("attack_xp", hiscoreResult.getAttack().getExperience())
-				.addParameter("defence_xp", hiscoreResult.getDefence().getExperience())
-				.addParameter("strength_xp", hiscoreResult.getStrength().getExperience())
-				.addParameter("hitpoints_xp", hiscoreResult.getHitpoints().getExperience())
-				.addParameter("ranged_xp", hiscoreResult.getRanged().getExperience())
-				.addParameter("prayer_xp", hiscoreResult.getPrayer().getExperience())
-				.addParameter("magic_xp", hiscoreResult.getMagic().getExperience())
-				.addParameter("cooking_xp", hiscoreResult.getCooking().getExperience())
-				.addParameter("woodcutting_xp", hiscoreResult.getWoodcutting().getExperience())
-				.addParameter("fletching_xp", hiscoreResult.getFletching().getExperience())
-				.addParameter("fishing_xp", hiscoreResult.getFishing().getExperience())
-				.addParameter("firemaking_xp", hiscoreResult.getFiremaking().getExperience())
-				.addParameter("crafting_xp", hiscoreResult.getCrafting().getExperience())
-				.addParameter("smithing_xp", hiscoreResult.getSmithing().getExperience())
-				.addParameter("mining_xp", hiscoreResult.getMining().getExperience())
-				.addParameter("herblore_xp", hiscoreResult.getHerblore().getExperience())
-				.addParameter("agility_xp", hiscoreResult.getAgility().getExperience())
-				.addParameter("thieving_xp", hiscoreResult.getThieving().getExperience())
-				.addParameter("slayer_xp", hiscoreResult.getSlayer().getExperience())
-				.addParameter("farming_xp", hiscoreResult.getFarming().getExperience())
-				.addParameter("runecraft_xp", hiscoreResult.getRunecraft().getExperience())
-				.addParameter("hunter_xp", hiscoreResult.getHunter().getExperience())
-				.addParameter("construction_xp", hiscoreResult.getConstruction().getExperience())
-				.addParameter("attack_rank", hiscoreResult.getAttack().getRank())
-				.addParameter("defence_rank", hiscoreResult.getDefence().getRank())
-				.addParameter("strength_rank", hiscoreResult.getStrength().getRank())
-				.addParameter("hitpoints_rank", hiscoreResult.getHitpoints().getRank())
-				.addParameter("ranged_rank", hiscoreResult.getRanged().getRank())
-				.addParameter("prayer_rank", hiscoreResult.getPrayer().getRank())
-				.addParameter("magic_rank", hiscoreResult.getMagic().getRank())
-				.addParameter("cooking_rank", hiscoreResult.getCooking().getRank())
-				.addParameter("woodcutting_rank", hiscoreResult.getWoodcutting().getRank())
-				.addParameter("fletching_rank", hiscoreResult.getFletching().getRank())
-				.addParameter("fishing_rank", hiscoreResult.getFishing().getRank())
-				.addParameter("firemaking_rank", hiscoreResult.getFiremaking().getRank())
-				.addParameter("crafting_rank", hiscoreResult.getCrafting().getRank())
-				.addParameter("smithing_rank", hiscoreResult.getSmithing().getRank())
-				.addParameter("mining_rank", hiscoreResult.getMining().getRank())
-				.addParameter("herblore_rank", hiscoreResult.getHerblore().getRank())
-				.addParameter("agility_rank", hiscoreResult.getAgility().getRank())
-				.addParameter("thieving_rank", hiscoreResult.getThieving().getRank())
-				.addParameter("slayer_rank", hiscoreResult.getSlayer().getRank())
-				.addParameter("farming_rank", hiscoreResult.getFarming().getRank())
-				.addParameter("runecraft_rank", hiscoreResult.getRunecraft().getRank())
-				.addParameter("hunter_rank", hiscoreResult.getHunter().getRank())
-				.addParameter("construction_rank", hiscoreResult.getConstruction().getRank())
-				.addParameter("overall_rank", hiscoreResult.getOverall().getRank())
-				.executeUpdate();
-		}
-	}
-
-	private synchronized PlayerEntity findOrCreatePlayer(Connection con, String username)
-	{
-		PlayerEntity playerEntity = con.createQuery("select * from player where name = :name")
-			.addParameter("name", username)
-			.executeAndFetchFirst(PlayerEntity.class);
-		if (playerEntity != null)
-		{
-			return playerEntity;
+			if (updated)
+			{
+				update.executeBatch();
+			}
+			if (inserted)
+			{
+				insert.executeBatch();
+			}
 		}
+	}
+
+	private Map<Integer, XpHistoryEntity> findHistory(Connection con, Instant start, List<Integer> players)
+	{
+		Query query = con.createQuery("select player, start, last, data from xp_history where start = :start and player in ("
+			+ parameters("player", players.size()) + ")")
+			.addParameter("start", start);
+		for (int i = 0; i < players.size(); ++i)
+		{
+			query.addParameter("player" + i, players.get(i));
+		}
+
+		Map<Integer, XpHistoryEntity> history = new HashMap<>();
+		for (XpHistoryEntity entity : query.executeAndFetch(XpHistoryEntity.class))
+		{
+			history.put(entity.getPlayer(), entity);
+		}
+		return history;
+	}
+
+	/**
+	 * History records time in seconds, and the database may round the
+	 * fractional seconds of a timestamp
+	 */
+	private static boolean sameSecond(Instant a, Instant b)
+	{
+		return Duration.between(a, b).abs().compareTo(Duration.ofSeconds(1)) < 0;
+	}
+
+	private static Instant monthStart(Instant time)
+	{
+		return time.atZone(ZoneOffset.UTC)
+			.toLocalDate()
+			.withDayOfMonth(1)
+			.atStartOfDay(ZoneOffset.UTC)
+			.toInstant();
+	}
+
+	/**
+	 * Look up the ids of players, creating players which don't exist yet.
+	 * Ids which aren't cached are only added to ids, as the players may
+	 * have been created by this transaction.
+	 *
+	 * @param usernames player names
+	 * @param ids player ids, keyed by {@link #key(String)} of the name
+	 */
+	private void findOrCreatePlayers(Connection con, List<String> usernames, Map<String, Integer> ids)
+	{
+		List<String> missing = new ArrayList<>();
+		for (String username : usernames)
+		{
+			Integer id = playerIds.getIfPresent(key(username));
+			if (id != null)
+			{
+				ids.put(key(username), id);
+			}
+			else
+			{
+				missing.add(username);
+			}
+		}
+
+		if (missing.isEmpty())
+		{
+			return;
+		}
+
+		findPlayers(con, missing, ids);
 
 		Instant now = Instant.now();
+		Query insert = con.createQuery("insert ignore into player (name, tracked_since) values (:name, :tracked_since)");
+		boolean created = false;
+		for (String username : missing)
+		{
+			if (!ids.containsKey(key(username)))
+			{
+				insert.addParameter("name", username)
+					.addParameter("tracked_since", now)
+					.addToBatch();
+				created = true;
+			}
+		}
+
+		if (created)
+		{
+			insert.executeBatch();
+			findPlayers(con, missing.stream()
+				.filter(username -> !ids.containsKey(key(username)))
+				.collect(Collectors.toList()), ids);
+		}
+	}
+
+	private void findPlayers(Connection con, List<String> usernames, Map<String, Integer> ids)
+	{
+		for (int i = 0; i < usernames.size(); i += LOOKUP_BATCH_SIZE)
+		{
+			List<String> batch = usernames.subList(i, Math.min(usernames.size(), i + LOOKUP_BATCH_SIZE));
+
+			Query query = con.createQuery("select id, name from player where name in (" + parameters("name", batch.size()) + ")");
+			for (int j = 0; j < batch.size(); ++j)
+			{
+				query.addParameter("name" + j, batch.get(j));
+			}
+
+			for (PlayerEntity player : query.executeAndFetch(PlayerEntity.class))
+			{
+				ids.put(key(player.getName()), player.getId());
+			}
+		}
+	}
+
+	/**
+	 * Load the most recent snapshot of the players which aren't cached
+	 */
+	private void loadLastXp(Connection con, Collection<Integer> players)
+	{
+		List<Integer> missing = players.stream()
+			.filter(id -> lastXp.getIfPresent(id) == null)
+			.collect(Collectors.toList());
+
+		for (int i = 0; i < missing.size(); i += LOOKUP_BATCH_SIZE)
+		{
+			List<Integer> batch = missing.subList(i, Math.min(missing.size(), i + LOOKUP_BATCH_SIZE));
 
-		int id = con.createQuery("insert into player (name, tracked_since) values (:name, :tracked_since)")
-			.addParameter("name", username)
-			.addParameter("tracked_since", now)
-			.executeUpdate()
-			.getKey(int.class);
+			Query query = con.createQuery("select xp.* from xp join (select player, max(time) as time from xp where player in ("
+				+ parameters("player", batch.size()) + ") group by player) latest on xp.player = latest.player and xp.time = latest.time")
+				.throwOnMappingFailure(false);
+			for (int j = 0; j < batch.size(); ++j)
+			{
+				query.addParameter("player" + j, batch.get(j));
+			}
+
+			for (XpEntity xpEntity : query.executeAndFetch(XpEntity.class))
+			{
+				lastXp.put(xpEntity.getPlayer(), XpMapper.INSTANCE.xpEntityToXpData(xpEntity));
+			}
+		}
+	}
 
-		playerEntity = new PlayerEntity();
-		playerEntity.setId(id);
-		playerEntity.setName(username);
-		playerEntity.setTracked_since(now);
-		return playerEntity;
+	/**
+	 * Player names compare case insensitively in the player table
+	 */
+	private static String key(String username)
+	{
+		return username.toLowerCase();
+	}
+
+	private static String parameters(String name, int count)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < count; ++i)
+		{
+			if (i > 0)
+			{
+				sb.append(',');
+			}
+			sb.append(':').append(name).append(i);
+		}
+		return sb.toString();
 	}
 
 	private XpEntity findXpAtTime(Connection con, String username, Instant time)
@@ -189,4 +656,213 @@ public class XpTrackerService
 			return findXpAtTime(con, username, time);
 		}
 	}
+
+	/**
+	 * Get the xp history of a player, with at most one snapshot, the last,
+	 * per resolution interval
+	 *
+	 * @param username player name
+	 * @param from start of the range
+	 * @param to end of the range
+	 * @param resolution interval length, or null to pick one. It is
+	 * raised if the range would otherwise have too many intervals.
+	 * @return the snapshots, oldest first
+	 */
+	public List<XpData> getHistory(String username, Instant from, Instant to, Duration resolution)
+	{
+		Duration range = Duration.between(from, to);
+		if (range.isNegative())
+		{
+			return new ArrayList<>();
+		}
+
+		Duration minResolution = range.dividedBy(MAX_HISTORY_POINTS);
+		if (resolution == null || resolution.compareTo(minResolution) < 0)
+		{
+			resolution = minResolution;
+		}
+		if (resolution.toMillis() < 1)
+		{
+			// snapshots are bucketed by millisecond, a shorter or empty range would have no interval
+			resolution = Duration.ofMillis(1);
+		}
+
+		try (Connection con = sql2o.open())
+		{
+			Integer player = playerIds.getIfPresent(key(username));
+			if (player == null)
+			{
+				player = con.createQuery("select id from player where name = :name")
+					.addParameter("name", username)
+					.executeScalar(Integer.class);
+				if (player == null)
+				{
+					return new ArrayList<>();
+				}
+			}
+
+			if (history)
+			{
+				return getHistory(con, player, from, to, resolution);
+			}
+
+			try (ResultSetIterable<XpEntity> rows = findXp(con, player, from, to, null))
+			{
+				Iterable<XpData> snapshots = () -> StreamSupport.stream(rows.spliterator(), false)
+					.map(XpMapper.INSTANCE::xpEntityToXpData)
+					.iterator();
+				return downsample(snapshots, from, to, resolution);
+			}
+		}
+	}
+
+	/**
+	 * Get xp history from the compact history. It only has snapshots from
+	 * when it was enabled, so snapshots from before the first history row
+	 * of the player are read from the xp table.
+	 */
+	private List<XpData> getHistory(Connection con, int player, Instant from, Instant to, Duration resolution)
+	{
+		List<XpData> history = new ArrayList<>();
+		Instant firstRow = con.createQuery("select min(start) from xp_history where player = :player")
+			.addParameter("player", player)
+			.executeScalar(Instant.class);
+		boolean hasFirstRow = false;
+
+		for (XpHistoryEntity entity : con.createQuery("select player, start, last, data from xp_history "
+			+ "where player = :player and start <= :to and last >= :from order by start")
+			.addParameter("player", player)
+			.addParameter("from", from)
+			.addParameter("to", to)
+			.executeAndFetch(XpHistoryEntity.class))
+		{
+			hasFirstRow |= entity.getStart().equals(firstRow);
+			history.addAll(XpHistoryCodec.decode(entity.getData()));
+		}
+		history.sort(Comparator.comparing(XpData::getTime));
+
+		// the time from which the history is complete, or null if it starts after the range
+		Instant covered = null;
+		if (firstRow != null && !firstRow.isAfter(to))
+		{
+			covered = hasFirstRow && !history.isEmpty() ? history.get(0).getTime() : firstRow;
+		}
+
+		if (covered != null && !covered.isAfter(from))
+		{
+			return downsample(history, from, to, resolution);
+		}
+
+		List<XpData> snapshots = new ArrayList<>();
+		try (ResultSetIterable<XpEntity> rows = findXp(con, player, from, to, covered))
+		{
+			for (XpEntity xpEntity : rows)
+			{
+				snapshots.add(XpMapper.INSTANCE.xpEntityToXpData(xpEntity));
+			}
+		}
+		snapshots.addAll(history);
+		return downsample(snapshots, from, to, resolution);
+	}
+
+	/**
+	 * Find the snapshots of a player in the xp table
+	 *
+	 * @param before only find snapshots before this time, or null for no limit
+	 */
+	private static ResultSetIterable<XpEntity> findXp(Connection con, int player, Instant from, Instant to, Instant before)
+	{
+		Query query = con.createQuery("select * from xp where player = :player and time >= :from and time <= :to"
+			+ (before != null ? " and time < :before" : "") + " order by time")
+			.throwOnMappingFailure(false)
+			.addParameter("player", player)
+			.addParameter("from", from)
+			.addParameter("to", to);
+		if (before != null)
+		{
+			query.addParameter("before", before);
+		}
+		return query.executeAndFetchLazy(XpEntity.class);
+	}
+
+	/**
+	 * Keep the last snapshot of each interval
+	 *
+	 * @param snapshots snapshots, oldest first
+	 */
+	private static List<XpData> downsample(Iterable<XpData> snapshots, Instant from, Instant to, Duration resolution)
+	{
+		long interval = resolution.toMillis();
+		long start = from.toEpochMilli();
+
+		List<XpData> result = new ArrayList<>();
+		XpData last = null;
+		long lastBucket = -1;
+
+		for (XpData xpData : snapshots)
+		{
+			Instant time = xpData.getTime();
+			if (time.isBefore(from) || time.isAfter(to))
+			{
+				continue;
+			}
+
+			long bucket = (time.toEpochMilli() - start) / interval;
+			if (last != null && bucket != lastBucket)
+			{
+				result.add(last);
+			}
+
+			last = xpData;
+			lastBucket = bucket;
+		}
+
+		if (last != null)
+		{
+			result.add(last);
+		}
+		return result;
+	}
+
+	@ManagedAttribute(description = "Players with an xp update waiting to be written")
+	public int getQueueDepth()
+	{
+		return pending.size();
+	}
+
+	@ManagedAttribute(description = "Updates replaced by a newer update of the same player before being written")
+	public long getCoalescedUpdates()
+	{
+		return coalescedUpdates.get();
+	}
+
+	@ManagedAttribute(description = "Updates dropped because the queue was full")
+	public long getDroppedUpdates()
+	{
+		return droppedUpdates.get();
+	}
+
+	@ManagedAttribute(description = "Updates given up on after failing to be written")
+	public long getFailedUpdates()
+	{
+		return failedUpdates.get();
+	}
+
+	@ManagedAttribute(description = "Xp rows inserted")
+	public long getInsertedRows()
+	{
+		return insertedRows.get();
+	}
+
+	@ManagedAttribute(description = "Duration of the last flush in milliseconds")
+	public long getLastFlushMillis()
+	{
+		return lastFlushMillis;
+	}
+
+	@ManagedAttribute(description = "Rows inserted by the last flush")
+	public int getLastFlushSize()
+	{
+		return lastFlushSize;
+	}
 }
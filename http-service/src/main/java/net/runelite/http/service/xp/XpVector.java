@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import java.time.Instant;
+import net.runelite.http.api.xp.XpData;
+
+/**
+ * The xp and rank columns of an xp snapshot, in table order
+ */
+final class XpVector
+{
+	static final String[] COLUMNS =
+	{
+		"attack_xp", "defence_xp", "strength_xp", "hitpoints_xp",
+		"ranged_xp", "prayer_xp", "magic_xp", "cooking_xp",
+		"woodcutting_xp", "fletching_xp", "fishing_xp", "firemaking_xp",
+		"crafting_xp", "smithing_xp", "mining_xp", "herblore_xp",
+		"agility_xp", "thieving_xp", "slayer_xp", "farming_xp",
+		"runecraft_xp", "hunter_xp", "construction_xp", "overall_rank",
+		"attack_rank", "defence_rank", "strength_rank", "hitpoints_rank",
+		"ranged_rank", "prayer_rank", "magic_rank", "cooking_rank",
+		"woodcutting_rank", "fletching_rank", "fishing_rank", "firemaking_rank",
+		"crafting_rank", "smithing_rank", "mining_rank", "herblore_rank",
+		"agility_rank", "thieving_rank", "slayer_rank", "farming_rank",
+		"runecraft_rank", "hunter_rank", "construction_rank"
+	};
+
+	private XpVector()
+	{
+	}
+
+	/**
+	 * Get the values of {@link #COLUMNS} from xp data
+	 *
+	 * @param xpData xp data
+	 * @return the values, in column order
+	 */
+	static int[] of(XpData xpData)
+	{
+		return new int[]
+		{
+			xpData.getAttack_xp(),
+			xpData.getDefence_xp(),
+			xpData.getStrength_xp(),
+			xpData.getHitpoints_xp(),
+			xpData.getRanged_xp(),
+			xpData.getPrayer_xp(),
+			xpData.getMagic_xp(),
+			xpData.getCooking_xp(),
+			xpData.getWoodcutting_xp(),
+			xpData.getFletching_xp(),
+			xpData.getFishing_xp(),
+			xpData.getFiremaking_xp(),
+			xpData.getCrafting_xp(),
+			xpData.getSmithing_xp(),
+			xpData.getMining_xp(),
+			xpData.getHerblore_xp(),
+			xpData.getAgility_xp(),
+			xpData.getThieving_xp(),
+			xpData.getSlayer_xp(),
+			xpData.getFarming_xp(),
+			xpData.getRunecraft_xp(),
+			xpData.getHunter_xp(),
+			xpData.getConstruction_xp(),
+			xpData.getOverall_rank(),
+			xpData.getAttack_rank(),
+			xpData.getDefence_rank(),
+			xpData.getStrength_rank(),
+			xpData.getHitpoints_rank(),
+			xpData.getRanged_rank(),
+			xpData.getPrayer_rank(),
+			xpData.getMagic_rank(),
+			xpData.getCooking_rank(),
+			xpData.getWoodcutting_rank(),
+			xpData.getFletching_rank(),
+			xpData.getFishing_rank(),
+			xpData.getFiremaking_rank(),
+			xpData.getCrafting_rank(),
+			xpData.getSmithing_rank(),
+			xpData.getMining_rank(),
+			xpData.getHerblore_rank(),
+			xpData.getAgility_rank(),
+			xpData.getThieving_rank(),
+			xpData.getSlayer_rank(),
+			xpData.getFarming_rank(),
+			xpData.getRunecraft_rank(),
+			xpData.getHunter_rank(),
+			xpData.getConstruction_rank()
+		};
+	}
+
+	/**
+	 * Build xp data from the values of {@link #COLUMNS}
+	 *
+	 * @param values the values, in column order
+	 * @param time time of the snapshot
+	 * @return the xp data
+	 */
+	static XpData toXpData(int[] values, Instant time)
+	{
+		XpData xpData = new XpData();
+		xpData.setTime(time);
+		xpData.setAttack_xp(values[0]);
+		xpData.setDefence_xp(values[1]);
+		xpData.setStrength_xp(values[2]);
+		xpData.setHitpoints_xp(values[3]);
+		xpData.setRanged_xp(values[4]);
+		xpData.setPrayer_xp(values[5]);
+		xpData.setMagic_xp(values[6]);
+		xpData.setCooking_xp(values[7]);
+		xpData.setWoodcutting_xp(values[8]);
+		xpData.setFletching_xp(values[9]);
+		xpData.setFishing_xp(values[10]);
+		xpData.setFiremaking_xp(values[11]);
+		xpData.setCrafting_xp(values[12]);
+		xpData.setSmithing_xp(values[13]);
+		xpData.setMining_xp(values[14]);
+		xpData.setHerblore_xp(values[15]);
+		xpData.setAgility_xp(values[16]);
+		xpData.setThieving_xp(values[17]);
+		xpData.setSlayer_xp(values[18]);
+		xpData.setFarming_xp(values[19]);
+		xpData.setRunecraft_xp(values[20]);
+		xpData.setHunter_xp(values[21]);
+		xpData.setConstruction_xp(values[22]);
+		xpData.setOverall_rank(values[23]);
+		xpData.setAttack_rank(values[24]);
+		xpData.setDefence_rank(values[25]);
+		xpData.setStrength_rank(values[26]);
+		xpData.setHitpoints_rank(values[27]);
+		xpData.setRanged_rank(values[28]);
+		xpData.setPrayer_rank(values[29]);
+		xpData.setMagic_rank(values[30]);
+		xpData.setCooking_rank(values[31]);
+		xpData.setWoodcutting_rank(values[32]);
+		xpData.setFletching_rank(values[33]);
+		xpData.setFishing_rank(values[34]);
+		xpData.setFiremaking_rank(values[35]);
+		xpData.setCrafting_rank(values[36]);
+		xpData.setSmithing_rank(values[37]);
+		xpData.setMining_rank(values[38]);
+		xpData.setHerblore_rank(values[39]);
+		xpData.setAgility_rank(values[40]);
+		xpData.setThieving_rank(values[41]);
+		xpData.setSlayer_rank(values[42]);
+		xpData.setFarming_rank(values[43]);
+		xpData.setRunecraft_rank(values[44]);
+		xpData.setHunter_rank(values[45]);
+		xpData.setConstruction_rank(values[46]);
+		return xpData;
+	}
+}
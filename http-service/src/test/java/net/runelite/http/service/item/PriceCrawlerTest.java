@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PriceCrawlerTest
+{
+	private ItemService itemService;
+
+	@Before
+	public void before()
+	{
+		itemService = mock(ItemService.class);
+	}
+
+	@Test
+	public void testNextItems()
+	{
+		Instant now = Instant.now();
+		when(itemService.getFetchedTimes()).thenReturn(Arrays.asList(
+			fetched(1, now.minus(Duration.ofHours(1))),
+			fetched(2, now.minus(Duration.ofHours(2))),
+			fetched(3, now)
+		));
+
+		PriceCrawler priceCrawler = new PriceCrawler(itemService, 2, 2);
+
+		// item 4 has never been fetched, and item 3 was fetched too recently
+		int[] itemIds = priceCrawler.nextItems(new int[]{1, 2, 3, 4});
+		Arrays.sort(itemIds);
+		assertArrayEquals(new int[]{2, 4}, itemIds);
+
+		// no threads are idle until the items finish
+		assertEquals(0, priceCrawler.nextItems(new int[]{1, 2, 3, 4}).length);
+
+		priceCrawler.finish(2, true);
+		priceCrawler.finish(4, true);
+		assertArrayEquals(new int[]{1}, priceCrawler.nextItems(new int[]{1, 2, 3, 4}));
+	}
+
+	@Test
+	public void testPopularity()
+	{
+		Instant hourAgo = Instant.now().minus(Duration.ofHours(1));
+		when(itemService.getFetchedTimes()).thenReturn(Arrays.asList(
+			fetched(1, hourAgo.minus(Duration.ofMinutes(30))),
+			fetched(2, hourAgo)
+		));
+
+		PriceCrawler priceCrawler = new PriceCrawler(itemService, 1, 2);
+
+		// requested items are sized for even if they have not been dispatched yet
+		priceCrawler.recordRequest(2, 2, 10, -1, 100_000);
+		assertArrayEquals(new int[]{10}, priceCrawler.nextItems(new int[]{1, 2, 10}));
+		priceCrawler.finish(10, true);
+
+		// item 2 is fresher than item 1, but was asked for more often
+		assertArrayEquals(new int[]{2}, priceCrawler.nextItems(new int[]{1, 2, 10}));
+		priceCrawler.finish(2, true);
+
+		assertArrayEquals(new int[]{1}, priceCrawler.nextItems(new int[]{1, 2, 10}));
+	}
+
+	@Test
+	public void testRate()
+	{
+		PriceCrawler priceCrawler = new PriceCrawler(itemService, 4, 2);
+		assertEquals(4, priceCrawler.nextItems(new int[]{1, 2, 3, 4}).length);
+
+		// failures halve the rate, successes raise it slowly
+		priceCrawler.finish(1, false);
+		assertEquals(1, priceCrawler.getRate(), 1e-9);
+		priceCrawler.finish(2, false);
+		assertEquals(0.5, priceCrawler.getRate(), 1e-9);
+		priceCrawler.finish(3, true);
+		assertEquals(0.6, priceCrawler.getRate(), 1e-9);
+
+		for (int i = 0; i < 100; ++i)
+		{
+			priceCrawler.nextItems(new int[]{5 + i});
+			priceCrawler.finish(5 + i, i < 50);
+		}
+		assertEquals(0.1, priceCrawler.getRate(), 1e-9);
+	}
+
+	@Test
+	public void testFlush() throws IOException
+	{
+		when(itemService.getTradeableItems()).thenReturn(new int[]{1, 2});
+		when(itemService.fetchPriceEntries(1)).thenReturn(Arrays.asList(price(1), price(1)));
+		when(itemService.fetchPriceEntries(2)).thenReturn(Collections.singletonList(price(2)));
+
+		PriceCrawler priceCrawler = new PriceCrawler(itemService, 2, 100);
+		priceCrawler.dispatch();
+
+		// shutting down waits for the fetches and stores their prices in one batch
+		priceCrawler.shutdown();
+
+		ArgumentCaptor<List> captor = ArgumentCaptor.forClass(List.class);
+		verify(itemService, times(1)).storePrices(captor.capture());
+		assertEquals(3, captor.getValue().size());
+
+		// nothing is left to store
+		priceCrawler.flush();
+		verify(itemService, times(1)).storePrices(captor.capture());
+	}
+
+	private static PriceEntry fetched(int itemId, Instant time)
+	{
+		PriceEntry priceEntry = new PriceEntry();
+		priceEntry.setItem(itemId);
+		priceEntry.setFetched_time(time);
+		return priceEntry;
+	}
+
+	private static PriceEntry price(int itemId)
+	{
+		PriceEntry priceEntry = new PriceEntry();
+		priceEntry.setItem(itemId);
+		priceEntry.setPrice(100);
+		priceEntry.setTime(Instant.now());
+		priceEntry.setFetched_time(Instant.now());
+		return priceEntry;
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.item;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import net.runelite.http.api.item.ItemPrice;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PriceSnapshotTest
+{
+	private static final Instant TIME = Instant.parse("2018-01-01T00:00:00Z");
+
+	private PriceSnapshot priceSnapshot;
+
+	@Before
+	public void before()
+	{
+		priceSnapshot = new PriceSnapshot(new ObjectMapper());
+	}
+
+	@Test
+	public void testOlderPriceIgnored()
+	{
+		priceSnapshot.update(4151, "Abyssal whip", 2_000_000, TIME);
+		priceSnapshot.update(4151, null, 1_500_000, TIME.minusSeconds(60));
+
+		ItemPrice[] itemPrices = priceSnapshot.get(4151);
+		assertEquals(1, itemPrices.length);
+		assertEquals(2_000_000, itemPrices[0].getPrice());
+		assertEquals(TIME, itemPrices[0].getTime());
+
+		priceSnapshot.update(4151, null, 2_100_000, TIME.plusSeconds(60));
+
+		itemPrices = priceSnapshot.get(4151);
+		assertEquals(2_100_000, itemPrices[0].getPrice());
+		assertEquals("Abyssal whip", itemPrices[0].getName());
+	}
+
+	@Test
+	public void testUnnamedHidden()
+	{
+		priceSnapshot.update(4151, null, 2_000_000, TIME);
+
+		assertFalse(priceSnapshot.hasName(4151));
+		assertEquals(0, priceSnapshot.size());
+		assertEquals(0, priceSnapshot.get(4151).length);
+
+		priceSnapshot.update(4151, "Abyssal whip", 2_000_000, TIME);
+
+		assertTrue(priceSnapshot.hasName(4151));
+		assertEquals(1, priceSnapshot.size());
+		assertEquals(1, priceSnapshot.get(4151).length);
+	}
+
+	@Test
+	public void testGet()
+	{
+		priceSnapshot.update(4151, "Abyssal whip", 2_000_000, TIME);
+		priceSnapshot.update(11832, "Bandos chestplate", 20_000_000, TIME);
+
+		ItemPrice[] itemPrices = priceSnapshot.get(11832, 4151, 11832, -1, 100_000, 4151);
+		assertEquals(2, itemPrices.length);
+		assertEquals(11832, itemPrices[0].getId());
+		assertEquals(4151, itemPrices[1].getId());
+	}
+
+	@Test
+	public void testBody() throws IOException
+	{
+		priceSnapshot.update(4151, "Abyssal whip", 2_000_000, TIME);
+
+		PriceSnapshot.Body body = priceSnapshot.getBody();
+		assertSame(body, priceSnapshot.getBody());
+
+		// the same price again is not a change
+		priceSnapshot.update(4151, "Abyssal whip", 2_000_000, TIME);
+		assertSame(body, priceSnapshot.getBody());
+
+		priceSnapshot.update(4151, null, 2_100_000, TIME.plusSeconds(60));
+
+		PriceSnapshot.Body updated = priceSnapshot.getBody();
+		assertTrue(updated.version > body.version);
+		assertNotEquals(body.etag, updated.etag);
+		assertSame(updated, priceSnapshot.getBody());
+		assertTrue(new String(updated.json, StandardCharsets.UTF_8).contains("2100000"));
+	}
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.http.service.xp;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.runelite.http.api.xp.XpData;
+import net.runelite.http.service.util.InstantConverter;
+import net.runelite.http.service.xp.beans.XpEntity;
+import org.junit.After;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Before;
+import org.junit.Test;
+import org.sql2o.Connection;
+import org.sql2o.Sql2o;
+import org.sql2o.converters.Converter;
+import org.sql2o.quirks.NoQuirks;
+
+public class XpTrackerServiceTest
+{
+	private static final Instant START = Instant.parse("2018-01-01T00:00:00Z");
+
+	private Sql2o sql2o;
+
+	@Before
+	public void before()
+	{
+		Map<Class, Converter> converters = new HashMap<>();
+		converters.put(Instant.class, new InstantConverter());
+		sql2o = new Sql2o("jdbc:h2:mem:xptracker;MODE=MySQL;DB_CLOSE_DELAY=-1", "sa", "", new NoQuirks(converters));
+
+		StringBuilder xp = new StringBuilder("create table xp (id int auto_increment primary key, time timestamp not null, player int not null");
+		for (String column : XpVector.COLUMNS)
+		{
+			xp.append(", ").append(column).append(" int not null");
+		}
+		xp.append(", unique key player_time (player, time), constraint fk_player foreign key (player) references player (id))");
+
+		try (Connection con = sql2o.open())
+		{
+			con.createQuery("create table player (id int auto_increment primary key, name varchar(32) not null, tracked_since timestamp not null, unique key name (name))")
+				.executeUpdate();
+			con.createQuery(xp.toString())
+				.executeUpdate();
+			con.createQuery("create table xp_history (player int not null, start timestamp not null, last timestamp not null, data blob not null, primary key (player, start), "
+				+ "constraint fk_history_player foreign key (player) references player (id))")
+				.executeUpdate();
+		}
+	}
+
+	@After
+	public void after()
+	{
+		try (Connection con = sql2o.open())
+		{
+			con.createQuery("drop all objects")
+				.executeUpdate();
+		}
+	}
+
+	@Test
+	public void testCoalesce()
+	{
+		XpTrackerService xpTrackerService = new XpTrackerService(sql2o, null, false);
+
+		xpTrackerService.queue("Zezima", snapshot(START, 100));
+		xpTrackerService.queue("zezima", snapshot(START.plusSeconds(60), 200));
+		assertEquals(1, xpTrackerService.getQueueDepth());
+
+		xpTrackerService.flush();
+		assertEquals(0, xpTrackerService.getQueueDepth());
+		assertEquals(1, xpTrackerService.getInsertedRows());
+
+		XpEntity xpEntity = xpTrackerService.findXpAtTime("zezima", START.plusSeconds(120));
+		assertNotNull(xpEntity);
+		assertEquals(200, xpEntity.getAttack_xp());
+	}
+
+	@Test
+	public void testUnchanged()
+	{
+		XpTrackerService xpTrackerService = new XpTrackerService(sql2o, null, false);
+
+		xpTrackerService.queue("zezima", snapshot(START, 100));
+		xpTrackerService.flush();
+
+		// same xp, and a change too soon after the last snapshot
+		xpTrackerService.queue("zezima", snapshot(START.plus(Duration.ofHours(1)), 100));
+		xpTrackerService.flush();
+		xpTrackerService.queue("zezima", snapshot(START.plus(Duration.ofMinutes(3)), 300));
+		xpTrackerService.flush();
+
+		assertEquals(1, xpTrackerService.getInsertedRows());
+	}
+
+	@Test
+	public void testRetryAfterFailure()
+	{
+		XpTrackerService xpTrackerService = new XpTrackerService(sql2o, null, false);
+		setXpCheck(true);
+
+		// the player is created in the transaction which fails, and is rolled back with it
+		xpTrackerService.queue("zezima", snapshot(START, -1));
+		xpTrackerService.flush();
+		assertEquals(0, xpTrackerService.getInsertedRows());
+		assertEquals(1, xpTrackerService.getQueueDepth());
+
+		setXpCheck(false);
+
+		xpTrackerService.flush();
+		assertEquals(1, xpTrackerService.getInsertedRows());
+		assertEquals(0, xpTrackerService.getQueueDepth());
+
+		XpEntity xpEntity = xpTrackerService.findXpAtTime("zezima", START);
+		assertNotNull(xpEntity);
+		assertEquals(-1, xpEntity.getAttack_xp());
+	}
+
+	@Test
+	public void testFailingUpdate()
+	{
+		XpTrackerService xpTrackerService = new XpTrackerService(sql2o, null, false);
+		setXpCheck(true);
+
+		xpTrackerService.queue("zezima", snapshot(START, -1));
+		xpTrackerService.queue("lynx titan", snapshot(START, 100));
+		xpTrackerService.queue("woox", snapshot(START, 200));
+		xpTrackerService.flush();
+
+		// the other updates are written despite the failing one
+		assertEquals(2, xpTrackerService.getInsertedRows());
+		assertEquals(1, xpTrackerService.getQueueDepth());
+		assertNotNull(xpTrackerService.findXpAtTime("lynx titan", START));
+		assertNotNull(xpTrackerService.findXpAtTime("woox", START));
+
+		// and it is given up on once it has failed alongside updates which succeed
+		for (int i = 0; i < 2; ++i)
+		{
+			xpTrackerService.queue("player " + i, snapshot(START, 100));
+			xpTrackerService.flush();
+		}
+
+		assertEquals(4, xpTrackerService.getInsertedRows());
+		assertEquals(0, xpTrackerService.getQueueDepth());
+		assertEquals(1, xpTrackerService.getFailedUpdates());
+		assertNull(xpTrackerService.findXpAtTime("zezima", START));
+	}
+
+	@Test
+	public void testHistory()
+	{
+		testHistory(new XpTrackerService(sql2o, null, true));
+	}
+
+	@Test
+	public void testHistoryFromXp()
+	{
+		testHistory(new XpTrackerService(sql2o, null, false));
+	}
+
+	@Test
+	public void testHistoryEnabledLater()
+	{
+		XpTrackerService withoutHistory = new XpTrackerService(sql2o, null, false);
+		queueHourly(withoutHistory, 0, 10);
+
+		XpTrackerService xpTrackerService = new XpTrackerService(sql2o, null, true);
+		queueHourly(xpTrackerService, 10, 20);
+
+		// snapshots from before history was enabled are read from the xp table
+		List<XpData> hourly = xpTrackerService.getHistory("zezima", START, START.plus(Duration.ofHours(20)), Duration.ofHours(1));
+		assertEquals(20, hourly.size());
+		for (int i = 0; i < 20; ++i)
+		{
+			assertEquals(1000 + i, hourly.get(i).getAttack_xp());
+		}
+
+		List<XpData> before = xpTrackerService.getHistory("zezima", START, START.plus(Duration.ofHours(5)), Duration.ofHours(1));
+		assertEquals(6, before.size());
+		assertEquals(1005, before.get(5).getAttack_xp());
+
+		List<XpData> after = xpTrackerService.getHistory("zezima", START.plus(Duration.ofHours(12)), START.plus(Duration.ofHours(15)), Duration.ofHours(1));
+		assertEquals(4, after.size());
+		assertEquals(1012, after.get(0).getAttack_xp());
+
+		// the last snapshot is no longer the last of the history, which is decoded to append to it
+		queueHourly(new XpTrackerService(sql2o, null, false), 20, 21);
+		XpTrackerService restarted = new XpTrackerService(sql2o, null, true);
+		queueHourly(restarted, 21, 22);
+
+		List<XpData> latest = restarted.getHistory("zezima", START.plus(Duration.ofHours(19)), START.plus(Duration.ofHours(21)), Duration.ofHours(1));
+		assertEquals(1019, latest.get(0).getAttack_xp());
+		assertEquals(1021, latest.get(latest.size() - 1).getAttack_xp());
+		assertEquals(START.plus(Duration.ofHours(21)), latest.get(latest.size() - 1).getTime());
+	}
+
+	private static void queueHourly(XpTrackerService xpTrackerService, int from, int to)
+	{
+		for (int i = from; i < to; ++i)
+		{
+			xpTrackerService.queue("zezima", snapshot(START.plus(Duration.ofHours(i)), 1000 + i));
+			xpTrackerService.flush();
+		}
+	}
+
+	private void testHistory(XpTrackerService xpTrackerService)
+	{
+		// hourly snapshots for 60 days, which spans a month boundary
+		for (int i = 0; i < 24 * 60; ++i)
+		{
+			xpTrackerService.queue("zezima", snapshot(START.plus(Duration.ofHours(i)), 1000 + i));
+			xpTrackerService.flush();
+		}
+
+		Instant end = START.plus(Duration.ofDays(60));
+
+		List<XpData> daily = xpTrackerService.getHistory("Zezima", START, end, Duration.ofDays(1));
+		assertEquals(60, daily.size());
+		// the last snapshot of each day
+		assertEquals(1000 + 23, daily.get(0).getAttack_xp());
+		assertEquals(1000 + 24 * 59 + 23, daily.get(59).getAttack_xp());
+		assertEquals(START.plus(Duration.ofHours(24 * 59 + 23)), daily.get(59).getTime());
+
+		List<XpData> range = xpTrackerService.getHistory("zezima", START.plus(Duration.ofDays(30)), START.plus(Duration.ofDays(32)), Duration.ofHours(1));
+		assertEquals(49, range.size());
+		assertEquals(1000 + 24 * 30, range.get(0).getAttack_xp());
+
+		List<XpData> all = xpTrackerService.getHistory("zezima", START, end, null);
+		assertTrue(all.size() <= 1001);
+		assertEquals(1000 + 24 * 60 - 1, all.get(all.size() - 1).getAttack_xp());
+
+		assertTrue(xpTrackerService.getHistory("nobody", START, end, null).isEmpty());
+
+		// ranges and resolutions below a millisecond
+		Instant hour = START.plus(Duration.ofHours(5));
+		assertEquals(1, xpTrackerService.getHistory("zezima", hour, hour, null).size());
+		assertEquals(1, xpTrackerService.getHistory("zezima", hour, hour.plusMillis(500), null).size());
+		assertEquals(1, xpTrackerService.getHistory("zezima", hour, hour.plusSeconds(1), Duration.ofNanos(1)).size());
+	}
+
+	private void setXpCheck(boolean enabled)
+	{
+		try (Connection con = sql2o.open())
+		{
+			con.createQuery(enabled
+				? "alter table xp add constraint xp_valid check (attack_xp >= 0)"
+				: "alter table xp drop constraint xp_valid")
+				.executeUpdate();
+		}
+	}
+
+	private static XpData snapshot(Instant time, int attackXp)
+	{
+		XpData xpData = new XpData();
+		xpData.setTime(time);
+		xpData.setAttack_xp(attackXp);
+		xpData.setAttack_rank(100_000 - attackXp);
+		xpData.setOverall_rank(-1);
+		return xpData;
+	}
+}
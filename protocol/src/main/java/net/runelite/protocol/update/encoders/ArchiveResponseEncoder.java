@@ -32,55 +32,104 @@ import net.runelite.protocol.api.update.ArchiveResponsePacket;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Encodes archive responses. A xor key can be set to encrypt the output
+ * as it is written, so each byte is only copied once. The encoder must
+ * then come after the {@link XorEncoder} in the outbound pipeline, so its
+ * output is not encrypted twice.
+ */
 public class ArchiveResponseEncoder extends MessageToByteEncoder<ArchiveResponsePacket>
 {
 	private static final Logger logger = LoggerFactory.getLogger(ArchiveResponseEncoder.class);
 
 	private static final int CHUNK_SIZE = 512;
 
+	private byte key;
+
+	public byte getKey()
+	{
+		return key;
+	}
+
+	public void setKey(byte key)
+	{
+		this.key = key;
+	}
+
 	@Override
 	protected void encode(ChannelHandlerContext ctx, ArchiveResponsePacket archiveResponse, ByteBuf out) throws Exception
 	{
+		int pos = out.readableBytes();
+
+		ByteBuf file = Unpooled.wrappedBuffer(archiveResponse.getData());
+		encode(archiveResponse.getIndex(), archiveResponse.getArchive(), file, out, key);
+
+		int size = out.readableBytes() - pos;
+		logger.debug("Wrote index {} archive {} (size {}) in {} bytes",
+			archiveResponse.getIndex(), archiveResponse.getArchive(),
+			archiveResponse.getData().length, size);
+	}
+
+	/**
+	 * Frame archive data as it is sent to the client, with the archive
+	 * header and the data split into chunks
+	 *
+	 * @param index index id
+	 * @param archive archive id
+	 * @param file compressed archive data, without the revision
+	 * @param out buffer to write to
+	 */
+	public static void encode(int index, int archive, ByteBuf file, ByteBuf out)
+	{
+		encode(index, archive, file, out, (byte) 0);
+	}
+
+	/**
+	 * Frame archive data as it is sent to the client, xor encrypting it
+	 * at the same time
+	 *
+	 * @param index index id
+	 * @param archive archive id
+	 * @param file compressed archive data, without the revision
+	 * @param out buffer to write to
+	 * @param key xor key, or 0 for none
+	 */
+	public static void encode(int index, int archive, ByteBuf file, ByteBuf out, byte key)
+	{
+		out.ensureWritable(encodedSize(file.readableBytes()));
+
 		// archive file header
 		// 1 byte index
 		// 2 byte archive
-		out.writeByte(archiveResponse.getIndex());
-		out.writeShort(archiveResponse.getArchive());
-
-		int pos = out.readableBytes();
+		out.writeByte(index ^ key);
+		out.writeByte((archive >> 8) ^ key);
+		out.writeByte(archive ^ key);
 
 		// next is the compressed data which starts with compression
 		// type and length
-		ByteBuf file = Unpooled.wrappedBuffer(archiveResponse.getData());
 		// - 3 for the header
 		int chunkSize = Math.min(file.readableBytes(), CHUNK_SIZE - 3);
-
-		writeChunk(file.readBytes(chunkSize), out);
+		XorEncoder.xor(file, out, chunkSize, key);
 
 		while (file.isReadable())
 		{
-			out.writeByte(0xff);
+			out.writeByte(0xff ^ key);
 
 			chunkSize = Math.min(file.readableBytes(), CHUNK_SIZE - 1);
-			writeChunk(file.readBytes(chunkSize), out);
+			XorEncoder.xor(file, out, chunkSize, key);
 		}
-
-		int size = out.readableBytes() - pos;
-		logger.debug("Wrote index {} archive {} (size {}) in {} bytes",
-			archiveResponse.getIndex(), archiveResponse.getArchive(),
-			archiveResponse.getData().length, size);
 	}
 
-	private void writeChunk(ByteBuf chunk, ByteBuf out)
+	/**
+	 * Get the size of a response once framed
+	 *
+	 * @param length length of the compressed archive data
+	 * @return size of the framed response
+	 */
+	public static int encodedSize(int length)
 	{
-		try
-		{
-			out.writeBytes(chunk);
-		}
-		finally
-		{
-			chunk.release();
-		}
+		// 3 byte header, plus a 0xff for each chunk after the first
+		int breaks = length <= CHUNK_SIZE - 3 ? 0 : (length - (CHUNK_SIZE - 3) + CHUNK_SIZE - 2) / (CHUNK_SIZE - 1);
+		return 3 + length + breaks;
 	}
-
 }
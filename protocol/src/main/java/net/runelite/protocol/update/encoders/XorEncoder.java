@@ -26,6 +26,7 @@ package net.runelite.protocol.update.encoders;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
 import io.netty.handler.codec.MessageToByteEncoder;
 
 public class XorEncoder extends MessageToByteEncoder<ByteBuf>
@@ -42,19 +43,78 @@ public class XorEncoder extends MessageToByteEncoder<ByteBuf>
 		this.key = key;
 	}
 
+	@Override
+	public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception
+	{
+		if (key == 0)
+		{
+			// nothing to do, so pass buffers through rather than copying them
+			ctx.write(msg, promise);
+			return;
+		}
+
+		super.write(ctx, msg, promise);
+	}
+
 	@Override
 	protected void encode(ChannelHandlerContext ctx, ByteBuf msg, ByteBuf out) throws Exception
+	{
+		xor(msg, out, msg.readableBytes(), key);
+	}
+
+	/**
+	 * Xor bytes from one buffer into another. The bytes are read from the
+	 * source's reader index and written at the destination's writer
+	 * index, and both indexes are advanced.
+	 *
+	 * @param src buffer to read from
+	 * @param dst buffer to write to
+	 * @param length number of bytes
+	 * @param key key to xor with
+	 */
+	public static void xor(ByteBuf src, ByteBuf dst, int length, byte key)
 	{
 		if (key == 0)
 		{
-			out.writeBytes(msg);
+			dst.writeBytes(src, length);
 			return;
 		}
 
-		while (msg.isReadable())
+		dst.ensureWritable(length);
+
+		int srcIndex = src.readerIndex();
+		int dstIndex = dst.writerIndex();
+
+		if (src.hasArray() && dst.hasArray())
+		{
+			byte[] srcArray = src.array();
+			byte[] dstArray = dst.array();
+			int srcOffset = src.arrayOffset() + srcIndex;
+			int dstOffset = dst.arrayOffset() + dstIndex;
+
+			// a plain loop over the arrays is vectorized by the jit
+			for (int i = 0; i < length; ++i)
+			{
+				dstArray[dstOffset + i] = (byte) (srcArray[srcOffset + i] ^ key);
+			}
+		}
+		else
 		{
-			out.writeByte(msg.readByte() ^ key);
+			// otherwise a word at a time
+			long wideKey = (key & 0xFFL) * 0x0101010101010101L;
+
+			int i = 0;
+			for (; i + Long.BYTES <= length; i += Long.BYTES)
+			{
+				dst.setLong(dstIndex + i, src.getLong(srcIndex + i) ^ wideKey);
+			}
+			for (; i < length; ++i)
+			{
+				dst.setByte(dstIndex + i, src.getByte(srcIndex + i) ^ key);
+			}
 		}
-	}
 
+		src.readerIndex(srcIndex + length);
+		dst.writerIndex(dstIndex + length);
+	}
 }
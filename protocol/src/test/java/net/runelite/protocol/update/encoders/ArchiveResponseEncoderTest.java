@@ -58,6 +58,8 @@ public class ArchiveResponseEncoderTest
 		ArchiveResponseEncoder encoder = new ArchiveResponseEncoder();
 		encoder.encode(null, archiveResponse, buf);
 
+		Assert.assertEquals(ArchiveResponseEncoder.encodedSize(compressedData.length), buf.readableBytes());
+
 		ArchiveResponseDecoder decoder = new ArchiveResponseDecoder();
 		List<Object> out = new ArrayList<>();
 		decoder.decode(null, buf, out);
@@ -73,4 +75,34 @@ public class ArchiveResponseEncoderTest
 		Assert.assertArrayEquals(data, decompressedData);
 	}
 
+	@Test
+	public void testEncodedSize()
+	{
+		for (int length : new int[]{1, 508, 509, 510, 1019, 1020, 1021, 100_000})
+		{
+			ByteBuf out = Unpooled.buffer();
+			ArchiveResponseEncoder.encode(2, 3, Unpooled.wrappedBuffer(new byte[length]), out);
+			Assert.assertEquals(ArchiveResponseEncoder.encodedSize(length), out.readableBytes());
+		}
+	}
+
+	@Test
+	public void testEncodeXor()
+	{
+		byte[] data = new byte[2000];
+		new Random(42L).nextBytes(data);
+		byte key = 0x33;
+
+		ByteBuf plain = Unpooled.buffer();
+		ArchiveResponseEncoder.encode(2, 300, Unpooled.wrappedBuffer(data), plain);
+
+		ByteBuf encrypted = Unpooled.buffer();
+		ArchiveResponseEncoder.encode(2, 300, Unpooled.wrappedBuffer(data), encrypted, key);
+
+		Assert.assertEquals(plain.readableBytes(), encrypted.readableBytes());
+		while (plain.isReadable())
+		{
+			Assert.assertEquals((byte) (plain.readByte() ^ key), encrypted.readByte());
+		}
+	}
 }
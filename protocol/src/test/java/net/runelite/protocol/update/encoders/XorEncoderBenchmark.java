@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2018, Adam <Adam@sigterm.info>
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package net.runelite.protocol.update.encoders;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares xor encryption of archive responses one byte at a time, a
+ * word at a time, and fused into the archive response encoder. Not run
+ * by the build, run main() to run it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class XorEncoderBenchmark
+{
+	private static final byte KEY = 0x5a;
+
+	@Param({"512", "65536"})
+	public int size;
+
+	@Param({"true", "false"})
+	public boolean direct;
+
+	private ByteBuf data;
+	private ByteBuf framed;
+	private ByteBuf out;
+
+	@Setup
+	public void setup()
+	{
+		byte[] b = new byte[size];
+		new Random(42L).nextBytes(b);
+
+		int encodedSize = ArchiveResponseEncoder.encodedSize(size);
+		data = allocate(size).writeBytes(b);
+		framed = allocate(encodedSize);
+		out = allocate(encodedSize);
+	}
+
+	@TearDown
+	public void tearDown()
+	{
+		data.release();
+		framed.release();
+		out.release();
+	}
+
+	private ByteBuf allocate(int capacity)
+	{
+		return direct ? Unpooled.directBuffer(capacity) : Unpooled.buffer(capacity);
+	}
+
+	@Benchmark
+	public ByteBuf xorBytes()
+	{
+		data.readerIndex(0);
+		out.clear();
+
+		// how XorEncoder used to encode
+		while (data.isReadable())
+		{
+			out.writeByte(data.readByte() ^ KEY);
+		}
+		return out;
+	}
+
+	@Benchmark
+	public ByteBuf xorWide()
+	{
+		data.readerIndex(0);
+		out.clear();
+
+		XorEncoder.xor(data, out, data.readableBytes(), KEY);
+		return out;
+	}
+
+	@Benchmark
+	public ByteBuf encodeThenXor()
+	{
+		data.readerIndex(0);
+		framed.clear();
+		out.clear();
+
+		ArchiveResponseEncoder.encode(0, 1, data, framed);
+		XorEncoder.xor(framed, out, framed.readableBytes(), KEY);
+		return out;
+	}
+
+	@Benchmark
+	public ByteBuf encodeFused()
+	{
+		data.readerIndex(0);
+		out.clear();
+
+		ArchiveResponseEncoder.encode(0, 1, data, out, KEY);
+		return out;
+	}
+
+	public static void main(String[] args) throws RunnerException
+	{
+		new Runner(new OptionsBuilder()
+			.include(XorEncoderBenchmark.class.getSimpleName())
+			.build()).run();
+	}
+}
@@ -26,6 +26,7 @@ package net.runelite.protocol.update.encoders;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
+import java.util.Random;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -48,4 +49,44 @@ public class XorEncoderTest
 		Assert.assertEquals((Byte) (byte) 0xfe, (Byte) encoded);
 	}
 
+	@Test
+	public void testXor()
+	{
+		byte[] data = new byte[1027];
+		new Random(42L).nextBytes(data);
+		byte key = (byte) 0xa5;
+
+		byte[] expected = new byte[data.length];
+		for (int i = 0; i < data.length; ++i)
+		{
+			expected[i] = (byte) (data[i] ^ key);
+		}
+
+		ByteBuf[] sources = new ByteBuf[]
+		{
+			Unpooled.buffer(), Unpooled.directBuffer()
+		};
+		ByteBuf[] destinations = new ByteBuf[]
+		{
+			Unpooled.buffer(), Unpooled.directBuffer()
+		};
+		for (ByteBuf src : sources)
+		{
+			for (ByteBuf dst : destinations)
+			{
+				src.clear();
+				src.writeByte(0); // start off of a word boundary
+				src.writeBytes(data);
+				src.readByte();
+
+				dst.clear();
+				XorEncoder.xor(src, dst, data.length, key);
+
+				Assert.assertFalse(src.isReadable());
+				byte[] out = new byte[dst.readableBytes()];
+				dst.readBytes(out);
+				Assert.assertArrayEquals(expected, out);
+			}
+		}
+	}
 }
@@ -54,6 +54,7 @@ import net.runelite.api.events.GameStateChanged;
 import net.runelite.client.callback.ClientThread;
 import net.runelite.api.events.PostItemComposition;
 import net.runelite.http.api.item.ItemClient;
+import net.runelite.http.api.item.ItemNameIndex;
 import net.runelite.http.api.item.ItemPrice;
 
 @Singleton
@@ -82,6 +83,7 @@ public class ItemManager
 
 	private final ItemClient itemClient = new ItemClient();
 	private Map<Integer, ItemPrice> itemPrices = Collections.emptyMap();
+	private ItemNameIndex itemNameIndex = new ItemNameIndex(new int[0], new String[0]);
 	private final LoadingCache<ImageKey, AsyncBufferedImage> itemImages;
 	private final LoadingCache<Integer, ItemComposition> itemCompositions;
 	private final LoadingCache<OutlineKey, BufferedImage> itemOutlines;
@@ -203,11 +205,17 @@ public class ItemManager
 			if (prices != null)
 			{
 				ImmutableMap.Builder<Integer, ItemPrice> map = ImmutableMap.builderWithExpectedSize(prices.length);
-				for (ItemPrice price : prices)
+				int[] ids = new int[prices.length];
+				String[] names = new String[prices.length];
+				for (int i = 0; i < prices.length; ++i)
 				{
+					ItemPrice price = prices[i];
 					map.put(price.getId(), price);
+					ids[i] = price.getId();
+					names[i] = price.getName();
 				}
 				itemPrices = map.build();
+				itemNameIndex = new ItemNameIndex(ids, names);
 			}
 
 			log.debug("Loaded {} prices", itemPrices.size());
@@ -267,17 +275,18 @@ public class ItemManager
 	 * Search for tradeable items based on item name
 	 *
 	 * @param itemName item name
-	 * @return
+	 * @return matching items, best match first
 	 */
 	public List<ItemPrice> search(String itemName)
 	{
-		itemName = itemName.toLowerCase();
+		final Map<Integer, ItemPrice> prices = itemPrices;
+		final int[] ids = itemNameIndex.search(itemName, Integer.MAX_VALUE);
 
-		List<ItemPrice> result = new ArrayList<>();
-		for (ItemPrice itemPrice : itemPrices.values())
+		List<ItemPrice> result = new ArrayList<>(ids.length);
+		for (int id : ids)
 		{
-			final String name = itemPrice.getName();
-			if (name.toLowerCase().contains(itemName))
+			ItemPrice itemPrice = prices.get(id);
+			if (itemPrice != null)
 			{
 				result.add(itemPrice);
 			}